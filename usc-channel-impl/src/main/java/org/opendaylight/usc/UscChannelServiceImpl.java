@@ -13,9 +13,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
 import io.netty.channel.local.LocalChannel;
-import io.netty.channel.local.LocalEventLoopGroup;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.util.AttributeKey;
@@ -63,6 +61,11 @@ import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
 /**
  * Implementation of the YANG RPCs defined in module usc. Service provides rpc
  * for viewing the usc topology.
@@ -74,7 +77,6 @@ public class UscChannelServiceImpl implements UscChannelService {
     private UscTopologyService topoService;
     public static final AttributeKey<String> CLIENT_KEY = AttributeKey.valueOf("client_key");
     private ConcurrentMap<String, Channel> connectList = new ConcurrentHashMap<String, Channel>();
-    private ConcurrentMap<String, EventLoopGroup> groupList = new ConcurrentHashMap<String, EventLoopGroup>();
 
     /**
      * Create a UscService and initialize the Shard Service
@@ -95,16 +97,31 @@ public class UscChannelServiceImpl implements UscChannelService {
     public Future<RpcResult<AddChannelOutput>> addChannel(AddChannelInput input) {
     	String hostname = input.getChannel().getHostname();
         int port = input.getChannel().getPort();
-        AddChannelOutputBuilder builder = new AddChannelOutputBuilder();
         boolean isTcp = input.getChannel().isTcp();
-        String result = connectDevice(hostname, port, isTcp, input.getChannel().isRemote());
-        builder.setResult(result);
-        return RpcResultBuilder.success(builder.build()).buildFuture();
+        final SettableFuture<RpcResult<AddChannelOutput>> rpcResult = SettableFuture.create();
+        // the RPC completes once the device is connected, without holding a
+        // thread meanwhile
+        Futures.addCallback(connectDevice(hostname, port, isTcp, input.getChannel().isRemote()),
+                new FutureCallback<String>() {
+                    @Override
+                    public void onSuccess(String result) {
+                        AddChannelOutputBuilder builder = new AddChannelOutputBuilder();
+                        builder.setResult(result);
+                        rpcResult.set(RpcResultBuilder.success(builder.build()).build());
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        rpcResult.setException(t);
+                    }
+                });
+        return rpcResult;
     }
 
-    private String connectDevice(String hostname, int port, boolean isTcp, boolean remote) {
-        Bootstrap clientBootStrap = getNewBootstrap();
+    private ListenableFuture<String> connectDevice(final String hostname, final int port, final boolean isTcp,
+            boolean remote) {
         InetSocketAddress address = new InetSocketAddress(hostname, port);
+        final SettableFuture<String> result = SettableFuture.create();
         try {
         	UscPlugin plugin = null;
         	if(isTcp)
@@ -112,24 +129,34 @@ public class UscChannelServiceImpl implements UscChannelService {
         	else
         		plugin = UscManagerService.getInstance().getPluginUdp();
         	
-            Channel clientChannel = plugin.connect(clientBootStrap, address, remote).sync().channel();
-            clientChannel.attr(CLIENT_KEY).set(hostname + ":" + port + isTcp);
-            connectList.put(hostname + ":" + port + isTcp, clientChannel);
-            groupList.put(hostname + ":" + port + isTcp, clientBootStrap.group());
+            Bootstrap clientBootStrap = getNewBootstrap(plugin);
+            Futures.addCallback(plugin.connectAsync(clientBootStrap, address, remote), new FutureCallback<Channel>() {
+                @Override
+                public void onSuccess(Channel clientChannel) {
+                    clientChannel.attr(CLIENT_KEY).set(hostname + ":" + port + isTcp);
+                    connectList.put(hostname + ":" + port + isTcp, clientChannel);
+                    result.set("Succeed to connect device(" + hostname + ":" + port + ")!");
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    LOG.error("Failed to connect device " + hostname + ":" + port, t);
+                    result.set("Failed to Connect device(" + hostname + ":" + port + ")!error is " + t.getMessage());
+                }
+            });
         } catch (Exception e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
-            return "Failed to Connect device(" + hostname + ":" + port + ")!error is " + e.getMessage();
+            result.set("Failed to Connect device(" + hostname + ":" + port + ")!error is " + e.getMessage());
         }
-        return "Succeed to connect device(" + hostname + ":" + port + ")!";
+        return result;
     }
 
-    private Bootstrap getNewBootstrap() {
+    private Bootstrap getNewBootstrap(UscPlugin plugin) {
         Bootstrap ret = new Bootstrap();
-        EventLoopGroup localGroup = new LocalEventLoopGroup();
 
-        // set up client bootstrap
-        ret.group(localGroup);
+        // set up client bootstrap on the event loops shared with the plugin
+        ret.group(plugin.getEventLoops().getLocalGroup());
         ret.channel(LocalChannel.class);
         ret.handler(new ChannelInitializer<LocalChannel>() {
             @Override
@@ -141,24 +168,12 @@ public class UscChannelServiceImpl implements UscChannelService {
         return ret;
     }
     
-    private void closeConnect(EventLoopGroup localGroup) {
-        localGroup.shutdownGracefully();
-
-        // allow some time for all ports to close;
-        try {
-            Thread.sleep(200);
-        } catch (InterruptedException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-    }
-
     @Override
     public Future<RpcResult<RemoveChannelOutput>> removeChannel(RemoveChannelInput input) {
        String hostname = input.getChannel().getHostname();
        boolean isTcp = input.getChannel().isTcp();
 
-       LOG.debug("Beginning of removeChannel: connectList is " + connectList + "; groupList is " + groupList);
+       LOG.debug("Beginning of removeChannel: connectList is " + connectList);
        Iterator it = connectList.entrySet().iterator();
        while(it.hasNext()) {
     	   Map.Entry<String, Channel> item = (Map.Entry<String, Channel>)it.next();
@@ -170,17 +185,6 @@ public class UscChannelServiceImpl implements UscChannelService {
         	}
        }
         
-        it = groupList.entrySet().iterator();
-        while(it.hasNext()) {
-        	Map.Entry<String, EventLoopGroup> item = (Map.Entry<String, EventLoopGroup>)it.next();
-     	    String groupName = item.getKey();
-        	if(groupName.contains(hostname) && groupName.contains(Boolean.toString(isTcp))) {
-        		EventLoopGroup group = item.getValue();
-        		closeConnect(group);
-        		it.remove();
-        	}
-        }
-    
         UscPlugin plugin = null;
     	if(isTcp)
     		plugin = UscManagerService.getInstance().getPluginTcp();
@@ -189,14 +193,18 @@ public class UscChannelServiceImpl implements UscChannelService {
 
         String result = "Failed to remove channel(" + hostname + ": " + isTcp + ")!";
     	InetSocketAddress address = new InetSocketAddress(hostname, 9999);
-    	UscChannelImpl channelImpl = plugin.retrieveChannelImpl(address);
-    	if(channelImpl != null) {
-    		LOG.info("address is" + address + ", Channel is " + channelImpl.getChannel());
-    		channelImpl.getChannel().close();
+    	// close every agent connection pooled for the device, without
+    	// connecting to the agent or filling up its pool
+    	List<UscChannelImpl> connections = plugin.retrieveChannelImpls(address);
+    	if(!connections.isEmpty()) {
+    		for (UscChannelImpl connection : connections) {
+    			LOG.info("address is" + address + ", Channel is " + connection.getChannel());
+    			connection.getChannel().close();
+    		}
     		result = "Succeed to remove channel(" + hostname + ": " + isTcp + ")!";
     	}
     	
-        LOG.debug("End of removeChannel: connectList is " + connectList + "; groupList is " + groupList);
+        LOG.debug("End of removeChannel: connectList is " + connectList);
 
         RemoveChannelOutputBuilder builder = new RemoveChannelOutputBuilder();
         builder.setResult(result);
@@ -209,9 +217,8 @@ public class UscChannelServiceImpl implements UscChannelService {
         int port = input.getChannel().getPort();
         boolean isTcp = input.getChannel().isTcp();
         
-        LOG.debug("Beginning of removeSession: connectList is " + connectList + "; groupList is " + groupList);
+        LOG.debug("Beginning of removeSession: connectList is " + connectList);
         Channel clientChannel = connectList.get(hostname + ":" + port + isTcp);
-        EventLoopGroup group = groupList.get(hostname + ":" + port + isTcp);
         String result = "";
         LOG.info("connectList number is " + connectList.size());
 
@@ -219,15 +226,13 @@ public class UscChannelServiceImpl implements UscChannelService {
             result = "Failed to remove channel(" + hostname + ":" + port + ")!";
         } else {
             // plugin.closeAgentInternalConnection(clientChannel);
-            closeConnect(group);
             clientChannel.close();
             connectList.remove(hostname + ":" + port + isTcp);
-            groupList.remove(hostname + ":" + port + isTcp);
             
             result = "Succeed to remove session (" + hostname + ":" + port + ")!";
         }
         
-        LOG.debug("End of removeSession: connectList is " + connectList + "; groupList is " + groupList);
+        LOG.debug("End of removeSession: connectList is " + connectList);
         RemoveSessionOutputBuilder builder = new RemoveSessionOutputBuilder();
         builder.setResult(result);
         return RpcResultBuilder.success(builder.build()).buildFuture();
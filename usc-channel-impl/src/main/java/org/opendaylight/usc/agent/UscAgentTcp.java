@@ -14,21 +14,24 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.opendaylight.usc.manager.UscConfigurationServiceImpl;
 import org.opendaylight.usc.manager.api.UscSecureService;
 import org.opendaylight.usc.plugin.UscFrameDecoderTcp;
+import org.opendaylight.usc.plugin.UscEventLoopProvider;
 import org.opendaylight.usc.plugin.UscFrameEncoderTcp;
 import org.opendaylight.usc.plugin.UscPlugin;
 import org.opendaylight.usc.plugin.model.UscSessionImpl;
@@ -44,13 +47,15 @@ public class UscAgentTcp implements Runnable, AutoCloseable {
 			.getLogger(UscAgentTcp.class);
 	static final int PORT = Integer
 			.parseInt(System.getProperty("port", "1068"));
-	final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-	final EventLoopGroup workerGroup = new NioEventLoopGroup();
+	final UscEventLoopProvider eventLoops = UscEventLoopProvider.acquire();
+	// closed with the agent, since the event loops are shared
+	final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 	final ServerBootstrap b = new ServerBootstrap();
 
-	final EventLoopGroup callHomeGroup = new NioEventLoopGroup();
 	final Bootstrap cb = new Bootstrap();
 
+	// with SO_REUSEPORT, one per agent event loop
+	private final int listeners;
 	private Channel agentServerChannel = null;
 	private ConcurrentMap<Integer, SettableFuture<Boolean>> closeFuture = new ConcurrentHashMap<>();
 	private UscSecureService secureService = null;
@@ -67,18 +72,20 @@ public class UscAgentTcp implements Runnable, AutoCloseable {
 		final UscAgentTcp agent = this;
         UscConfigurationServiceImpl.setDefaultPropertyFilePath(propertyFile);
         secureService = UscServiceUtils.getService(UscSecureService.class);
-		b.group(bossGroup, workerGroup);
-		b.channel(NioServerSocketChannel.class);
+		b.group(eventLoops.getAgentGroup());
+		b.channel(eventLoops.getServerSocketChannelClass());
+		listeners = eventLoops.setTcpListenerOptions(b);
 		b.handler(new LoggingHandler("UscAgentTcp server handler", LogLevel.TRACE));
-		b.childHandler(new ChannelInitializer<NioSocketChannel>() {
+		b.childHandler(new ChannelInitializer<SocketChannel>() {
 			@Override
-			public void initChannel(NioSocketChannel ch) throws Exception {
+			public void initChannel(SocketChannel ch) throws Exception {
 				if (secureService == null) {
 					LOG.error("UscSecureService is not initialized!");
 					return;
 				}
 				ChannelPipeline p = ch.pipeline();
 				agentServerChannel = ch;
+				channels.add(ch);
 				p.addLast(new LoggingHandler("UscAgentTcp PLUGIN5", LogLevel.TRACE));
 				p.addLast(secureService.getTcpServerHandler(ch));
 				p.addLast(new LoggingHandler("UscAgentTcp PLUGIN4", LogLevel.TRACE));
@@ -92,17 +99,19 @@ public class UscAgentTcp implements Runnable, AutoCloseable {
 		});
 
 		if (callHome) {
-			cb.group(callHomeGroup);
-			cb.channel(NioSocketChannel.class);
-			cb.handler(new ChannelInitializer<NioSocketChannel>() {
+			cb.group(eventLoops.getAgentGroup());
+			cb.channel(eventLoops.getSocketChannelClass());
+			eventLoops.setTcpAgentOptions(cb);
+			cb.handler(new ChannelInitializer<SocketChannel>() {
 				@Override
-				public void initChannel(NioSocketChannel ch) throws Exception {
+				public void initChannel(SocketChannel ch) throws Exception {
 					if (secureService == null) {
 						LOG.error("UscSecureService is not initialized!");
 						return;
 					}
 					ChannelPipeline p = ch.pipeline();
 					agentServerChannel = ch;
+					channels.add(ch);
 					p.addLast(new LoggingHandler("UscAgentTcp Handler5", LogLevel.TRACE));
 					p.addLast(secureService.getTcpClientHandler(ch));
 					p.addLast(new LoggingHandler("UscAgentTcp Handler4", LogLevel.TRACE));
@@ -158,11 +167,18 @@ public class UscAgentTcp implements Runnable, AutoCloseable {
 	public void run() {
 		// Start the server.
 		try {
-			ChannelFuture f = b.bind(PORT).sync();
-			LOG.trace("UscAgentTcp initialized");
+			final List<Channel> listenerChannels = new ArrayList<>(listeners);
+			for (int i = 0; i < listeners; i++) {
+				ChannelFuture f = b.bind(PORT).sync();
+				channels.add(f.channel());
+				listenerChannels.add(f.channel());
+			}
+			LOG.trace("UscAgentTcp initialized with " + listeners + " listeners");
 			
-			// Wait until the server socket is closed.
-			f.channel().closeFuture().sync();
+			// Wait until the server sockets are closed.
+			for (Channel listener : listenerChannels) {
+				listener.closeFuture().sync();
+			}
 		} catch (InterruptedException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -171,10 +187,8 @@ public class UscAgentTcp implements Runnable, AutoCloseable {
 
 	@Override
 	public void close() throws Exception {
-		bossGroup.shutdownGracefully();
-		workerGroup.shutdownGracefully();
-
-		callHomeGroup.shutdownGracefully();
+		channels.close().awaitUninterruptibly();
+		eventLoops.release();
 	}
 
 	public static void main(String[] args) throws Exception {
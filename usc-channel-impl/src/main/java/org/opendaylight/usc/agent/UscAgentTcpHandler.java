@@ -11,14 +11,13 @@ package org.opendaylight.usc.agent;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.util.AttributeKey;
@@ -26,8 +25,13 @@ import io.netty.util.AttributeKey;
 import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.PortUnreachableException;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 
+import org.opendaylight.usc.plugin.UscPlugin;
+import org.opendaylight.usc.plugin.UscSessionWindow;
+import org.opendaylight.usc.protocol.UscCapabilities;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
 import org.opendaylight.usc.protocol.UscControl;
 import org.opendaylight.usc.protocol.UscData;
 import org.opendaylight.usc.protocol.UscError;
@@ -48,9 +52,14 @@ public class UscAgentTcpHandler extends SimpleChannelInboundHandler<UscFrame> {
 
     public static final AttributeKey<Integer> SESSION_ID = AttributeKey.valueOf("agentTcpSessionId");
     public static final AttributeKey<Integer> PORT = AttributeKey.valueOf("agentTcpPort");
+    public static final AttributeKey<UscSessionWindow> WINDOW = AttributeKey.valueOf("agentTcpWindow");
+    /**
+     * the data received for a device channel while it connects, null once it
+     * has connected
+     */
+    public static final AttributeKey<ArrayDeque<ByteBuf>> PENDING = AttributeKey.valueOf("agentTcpPending");
     public static final int MAX_PAYLOAD_SIZE = 64512;// 63K
 
-    final EventLoopGroup clientGroup = new NioEventLoopGroup();
     final Bootstrap cb = new Bootstrap();
 
     final HashMap<Integer, Channel> clients = new HashMap<>();
@@ -65,15 +74,8 @@ public class UscAgentTcpHandler extends SimpleChannelInboundHandler<UscFrame> {
             Channel ch = ctx.channel();
             int sessionId = ch.attr(SESSION_ID).get();
             int port = ch.attr(PORT).get();
-            if (e instanceof ConnectException) {
-                UscError reply = new UscError(port, sessionId, UscError.ErrorCode.ECONNREFUSED.getCode());
-                plugin.writeAndFlush(reply);
-            } else if (e instanceof PortUnreachableException) {
-                UscError reply = new UscError(port, sessionId, UscError.ErrorCode.ENETUNREACH.getCode());
-                plugin.writeAndFlush(reply);
-            } else {
-                UscError reply = new UscError(port, sessionId, UscError.ErrorCode.E_OTHER.getCode());
-                plugin.writeAndFlush(reply);
+            plugin.writeAndFlush(new UscError(port, sessionId, getErrorCode(e)));
+            if (!(e instanceof ConnectException) && !(e instanceof PortUnreachableException)) {
                 super.exceptionCaught(ctx, e);
             }
         }
@@ -87,34 +89,40 @@ public class UscAgentTcpHandler extends SimpleChannelInboundHandler<UscFrame> {
             int sessionId = ch.attr(SESSION_ID).get();
             int port = ch.attr(PORT).get();
 
-            UscData reply = null;
-            ByteBuf subPayload = null;
-            int length = payload.readableBytes();
-            int index = 0;
-            int realLength = 0;
-            while (length > 0) {
-                realLength = (length > MAX_PAYLOAD_SIZE) ? MAX_PAYLOAD_SIZE : length;
-                subPayload = payload.copy(index, realLength);
-                index += realLength;
-                length -= realLength;
-
-                reply = new UscData(port, sessionId, subPayload);
+            // segments hold their own references to payload, which is
+            // released when this method returns
+            int maxPayloadSize = Math.min(UscPlugin.getMaxPayloadSize(plugin), getCapabilities().getMaxPayloadSize());
+            for (UscData reply : UscData.segment(port, sessionId, payload, maxPayloadSize)) {
                 LOG.trace("Send to plugin " + reply);
                 System.out.println("Send to plugin " + reply);
-                plugin.writeAndFlush(reply);
+                plugin.write(reply);
+            }
+            final UscSessionWindow window = ch.attr(WINDOW).get();
+            if (getCapabilities().hasFeature(Feature.FLOW_CONTROL)) {
+                window.consume(payload.readableBytes());
             }
+            // stops reading from the device until the plugin returns credits
+            // and the plugin channel drains
+            window.update(ch, plugin);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+            plugin.flush();
+            super.channelReadComplete(ctx);
         }
     }
 
     public UscAgentTcpHandler(UscAgentTcp agent, SocketChannel ch) {
         this.agent = agent;
         this.plugin = ch;
-        cb.group(clientGroup);
-        cb.channel(NioSocketChannel.class);
-        cb.handler(new ChannelInitializer<NioSocketChannel>() {
+        UscPlugin.setWriteBufferWaterMark(ch);
+        cb.group(agent.eventLoops.getDeviceGroup());
+        cb.channel(agent.eventLoops.getSocketChannelClass());
+        cb.handler(new ChannelInitializer<SocketChannel>() {
 
             @Override
-            protected void initChannel(NioSocketChannel ch) throws Exception {
+            protected void initChannel(SocketChannel ch) throws Exception {
                 ChannelPipeline p = ch.pipeline();
                 p.addLast(new LoggingHandler("UscAgentTcpHandler", LogLevel.TRACE));
                 p.addLast(new ClientHandler());
@@ -135,27 +143,14 @@ public class UscAgentTcpHandler extends SimpleChannelInboundHandler<UscFrame> {
             LOG.trace("UscAgentTcpHandler: read uscData " + frame.toString());
             System.out.println("UscAgentTcpHandler: read uscData " + frame.toString());
             if (client == null) {
-                try {
-                    client = cb.connect(InetAddress.getLoopbackAddress(), port).sync().channel();
-                    client.attr(SESSION_ID).set(sessionId);
-                    client.attr(PORT).set(port);
-                    clients.put(sessionId, client);
-                } catch (Exception e) {
-                    if (e instanceof ConnectException) {
-                        UscError reply = new UscError(port, sessionId, UscError.ErrorCode.ECONNREFUSED.getCode());
-                        plugin.writeAndFlush(reply);
-                    } else if (e instanceof PortUnreachableException) {
-                        UscError reply = new UscError(port, sessionId, UscError.ErrorCode.ENETUNREACH.getCode());
-                        plugin.writeAndFlush(reply);
-                    } else {
-                        UscError reply = new UscError(port, sessionId, UscError.ErrorCode.E_OTHER.getCode());
-                        plugin.writeAndFlush(reply);
-                        throw e;
-                    }
-                }
+                client = connect(port, sessionId);
             }
-            if (client != null) {
-                client.writeAndFlush(frame.getPayload());
+            // the frame is released when this method returns
+            final ArrayDeque<ByteBuf> pending = client.attr(PENDING).get();
+            if (pending != null) {
+                pending.add(frame.getPayload().retain());
+            } else {
+                write(client, frame.getPayload().retain());
             }
         } else if (frame instanceof UscControl) {
             UscControl control = (UscControl) frame;
@@ -192,8 +187,135 @@ public class UscAgentTcpHandler extends SimpleChannelInboundHandler<UscFrame> {
                 UscControl data = new UscControl(port, sessionId, UscControl.ControlCode.ECHO.getCode());
                 plugin.writeAndFlush(data);
                 LOG.trace("UscAgentUdpHandler send ECHO back.");
+            } else if (control.getControlCode() == UscControl.ControlCode.WINDOW_UPDATE) {
+                if (client != null) {
+                    client.attr(WINDOW).get().replenish(control.getWindowIncrement());
+                    client.attr(WINDOW).get().update(client, plugin);
+                }
+            } else if (control.getControlCode() == UscControl.ControlCode.HELLO_REQUEST
+                    && control.getCapabilities() != null) {
+                UscCapabilities local = UscPlugin.getLocalCapabilities(plugin);
+                plugin.writeAndFlush(new UscControl(port, sessionId, UscControl.ControlCode.HELLO_RESPONSE.getCode(),
+                        local));
+                UscPlugin.setCapabilities(plugin, local.negotiate(control.getCapabilities()));
+                LOG.trace("UscAgentTcpHandler negotiated " + getCapabilities());
+            }
+        }
+    }
+
+    /**
+     * Connects to the device service of a session without blocking the event
+     * loop, which the plugin channel shares with other channels. The data of
+     * the session is held until the connect completes.
+     */
+    private Channel connect(final int port, final int sessionId) {
+        final ChannelFuture connect = cb.connect(InetAddress.getLoopbackAddress(), port);
+        final Channel client = connect.channel();
+        client.attr(SESSION_ID).set(sessionId);
+        client.attr(PORT).set(port);
+        client.attr(WINDOW).set(new UscSessionWindow());
+        client.attr(PENDING).set(new ArrayDeque<ByteBuf>());
+        clients.put(sessionId, client);
+        connect.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(final ChannelFuture future) throws Exception {
+                // the clients and their pending data belong to the plugin
+                // event loop
+                plugin.eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        connected(future, port, sessionId);
+                    }
+                });
+            }
+        });
+        return client;
+    }
+
+    private void connected(ChannelFuture future, int port, int sessionId) {
+        final Channel client = future.channel();
+        final ArrayDeque<ByteBuf> pending = client.attr(PENDING).getAndSet(null);
+        if (future.isSuccess()) {
+            for (ByteBuf payload : pending) {
+                write(client, payload);
             }
+            return;
         }
+        for (ByteBuf payload : pending) {
+            payload.release();
+        }
+        // a session terminated while connecting needs no error
+        if (clients.get(sessionId) == client) {
+            clients.remove(sessionId);
+            final Throwable cause = future.cause();
+            if (!(cause instanceof ConnectException) && !(cause instanceof PortUnreachableException)) {
+                LOG.warn("UscAgentTcpHandler failed to connect to port " + port + " for session " + sessionId,
+                        cause);
+            }
+            plugin.writeAndFlush(new UscError(port, sessionId, getErrorCode(cause)));
+        }
+    }
+
+    /**
+     * Writes data of the plugin to a connected device channel, returning the
+     * credits once the device has it
+     */
+    private void write(Channel client, ByteBuf payload) {
+        final int port = client.attr(PORT).get();
+        final int sessionId = client.attr(SESSION_ID).get();
+        final int bytesIn = payload.readableBytes();
+        final ChannelFuture future = client.writeAndFlush(payload);
+        if (getCapabilities().hasFeature(Feature.FLOW_CONTROL)) {
+            final UscSessionWindow window = client.attr(WINDOW).get();
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    // return the credits once the device has the data
+                    final int increment = window.received(bytesIn);
+                    if (increment > 0) {
+                        plugin.writeAndFlush(UscControl.windowUpdate(port, sessionId, increment));
+                    }
+                }
+            });
+        }
+    }
+
+    private static int getErrorCode(Throwable cause) {
+        if (cause instanceof ConnectException) {
+            return UscError.ErrorCode.ECONNREFUSED.getCode();
+        } else if (cause instanceof PortUnreachableException) {
+            return UscError.ErrorCode.ENETUNREACH.getCode();
+        }
+        return UscError.ErrorCode.E_OTHER.getCode();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // stop reading from all devices while the plugin channel is backed up
+        for (Channel client : clients.values()) {
+            client.attr(WINDOW).get().update(client, plugin);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // the device channels run on shared event loops which outlive the
+        // plugin channel
+        for (Channel client : clients.values()) {
+            client.close();
+        }
+        clients.clear();
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * The capabilities negotiated with the plugin.
+     * 
+     * @return capabilities
+     */
+    public UscCapabilities getCapabilities() {
+        return UscPlugin.getCapabilities(plugin);
     }
 
 }
@@ -15,12 +15,13 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
-import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -29,10 +30,14 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.opendaylight.usc.manager.UscConfigurationServiceImpl;
+import org.opendaylight.usc.manager.api.UscConfigurationService;
 import org.opendaylight.usc.manager.api.UscSecureService;
+import org.opendaylight.usc.plugin.UscEventLoopProvider;
+import org.opendaylight.usc.plugin.UscFrameBundler;
 import org.opendaylight.usc.plugin.UscFrameDecoderUdp;
 import org.opendaylight.usc.plugin.UscFrameEncoderUdp;
 import org.opendaylight.usc.plugin.UscPlugin;
+import org.opendaylight.usc.plugin.UscPluginUdp;
 import org.opendaylight.usc.plugin.model.UscSessionImpl;
 import org.opendaylight.usc.protocol.UscControl;
 import org.opendaylight.usc.util.UscServiceUtils;
@@ -46,14 +51,16 @@ public class UscAgentUdp implements Runnable, AutoCloseable {
 			.getLogger(UscAgentUdp.class);
 	static final int PORT = Integer
 			.parseInt(System.getProperty("port", "1068"));
-	final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+	final UscEventLoopProvider eventLoops = UscEventLoopProvider.acquire();
+	// closed with the agent, since the event loops are shared
+	final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 	final Bootstrap b = new Bootstrap();
-	final EventLoopGroup callHomeGroup = new NioEventLoopGroup();
 	final Bootstrap cb = new Bootstrap();
 
 	private Channel agentServerChannel = null;
 	private ConcurrentMap<Integer, SettableFuture<Boolean>> closeFuture = new ConcurrentHashMap<>();
 	private UscSecureService secureService = null;
+	private UscConfigurationService configService = null;
 
 	public UscAgentUdp(boolean callHome) {
 		this(callHome,InetAddress.getLoopbackAddress());
@@ -67,13 +74,15 @@ public class UscAgentUdp implements Runnable, AutoCloseable {
 		final UscAgentUdp agent = this;
         UscConfigurationServiceImpl.setDefaultPropertyFilePath(propertyFile);
         secureService = UscServiceUtils.getService(UscSecureService.class);
-		b.group(bossGroup);
-		b.channel(NioDatagramChannel.class);
-		b.handler(new ChannelInitializer<NioDatagramChannel>() {
+        configService = UscServiceUtils.getService(UscConfigurationService.class);
+		b.group(eventLoops.getAgentGroup());
+		b.channel(eventLoops.getDatagramChannelClass());
+		b.handler(new ChannelInitializer<DatagramChannel>() {
 			@Override
-			public void initChannel(NioDatagramChannel ch) throws Exception {
+			public void initChannel(DatagramChannel ch) throws Exception {
 				ChannelPipeline p = ch.pipeline();
 				agentServerChannel = ch;
+				channels.add(ch);
 				p.addLast(new ChannelInboundHandlerAdapter() {
 
 					@Override
@@ -101,8 +110,13 @@ public class UscAgentUdp implements Runnable, AutoCloseable {
 				p.addLast(secureService.getUdpServerHandler(ch));
 				p.addLast(new LoggingHandler("UscAgnet Handler 4", LogLevel.TRACE));
 				p.addLast(new UscFrameEncoderUdp());
+				final UscFrameBundler bundler = UscPluginUdp.newFrameBundler(configService);
+				if (bundler != null) {
+					p.addLast(bundler);
+				}
 				p.addLast(new LoggingHandler("UscAgnet Handler 3", LogLevel.TRACE));
 				p.addLast(new UscFrameDecoderUdp());
+				p.addLast(UscPluginUdp.newFrameFragmenter(configService));
 				p.addLast(new LoggingHandler("UscAgnet Handler 2", LogLevel.TRACE));
 				p.addLast(new UscAgentUdpHandler(agent, ch));
 				p.addLast(new LoggingHandler("UscAgnet Handler 1", LogLevel.TRACE));
@@ -111,13 +125,14 @@ public class UscAgentUdp implements Runnable, AutoCloseable {
 		});
 
 		if (callHome) {
-			cb.group(callHomeGroup);
-			cb.channel(NioDatagramChannel.class);
-			cb.handler(new ChannelInitializer<NioDatagramChannel>() {
+			cb.group(eventLoops.getAgentGroup());
+			cb.channel(eventLoops.getDatagramChannelClass());
+			cb.handler(new ChannelInitializer<DatagramChannel>() {
 				@Override
-				public void initChannel(NioDatagramChannel ch) throws Exception {
+				public void initChannel(DatagramChannel ch) throws Exception {
 					ChannelPipeline p = ch.pipeline();
 					agentServerChannel = ch;
+					channels.add(ch);
 					p.addLast(new ChannelInboundHandlerAdapter() {
 
 						@Override
@@ -145,8 +160,13 @@ public class UscAgentUdp implements Runnable, AutoCloseable {
 					p.addLast(secureService.getUdpClientHandler(ch));
 					p.addLast(new LoggingHandler("LOG2-4", LogLevel.TRACE));
 					p.addLast(new UscFrameEncoderUdp());
+					final UscFrameBundler bundler = UscPluginUdp.newFrameBundler(configService);
+				if (bundler != null) {
+					p.addLast(bundler);
+				}
 					p.addLast(new LoggingHandler("LOG2-3", LogLevel.TRACE));
 					p.addLast(new UscFrameDecoderUdp());
+					p.addLast(UscPluginUdp.newFrameFragmenter(configService));
 					p.addLast(new LoggingHandler("LOG2-2", LogLevel.TRACE));
 					p.addLast(new UscAgentUdpHandler(agent, ch));
 					p.addLast(new LoggingHandler("LOG2-1", LogLevel.TRACE));
@@ -212,9 +232,8 @@ public class UscAgentUdp implements Runnable, AutoCloseable {
 
 	@Override
 	public void close() throws Exception {
-		bossGroup.shutdownGracefully();
-
-		callHomeGroup.shutdownGracefully();
+		channels.close().awaitUninterruptibly();
+		eventLoops.release();
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -13,12 +13,9 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
-import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.util.AttributeKey;
@@ -28,6 +25,8 @@ import java.net.InetAddress;
 import java.net.PortUnreachableException;
 import java.util.HashMap;
 
+import org.opendaylight.usc.plugin.UscPlugin;
+import org.opendaylight.usc.protocol.UscCapabilities;
 import org.opendaylight.usc.protocol.UscControl;
 import org.opendaylight.usc.protocol.UscData;
 import org.opendaylight.usc.protocol.UscError;
@@ -49,7 +48,6 @@ public class UscAgentUdpHandler extends SimpleChannelInboundHandler<UscFrame> {
     public static final AttributeKey<Integer> SESSION_ID = AttributeKey.valueOf("agentUdpSessionId");
     public static final AttributeKey<Integer> PORT = AttributeKey.valueOf("agentUdpPort");
 
-    final EventLoopGroup clientGroup = new NioEventLoopGroup();
     final Bootstrap cb = new Bootstrap();
 
     final HashMap<Integer, Channel> clients = new HashMap<>();
@@ -88,20 +86,36 @@ public class UscAgentUdpHandler extends SimpleChannelInboundHandler<UscFrame> {
             int port = ch.attr(PORT).get();
             UscData reply = new UscData(port, sessionId, payload.copy());
             LOG.trace("Send to plugin " + reply);
-            plugin.writeAndFlush(reply);
+            // replies read in one batch are bundled and flushed together
+            plugin.write(reply);
+            if (!plugin.isWritable()) {
+                // channelWritabilityChanged resumes reading once the plugin
+                // channel drains
+                ch.config().setAutoRead(false);
+                if (plugin.isWritable()) {
+                    ch.config().setAutoRead(true);
+                }
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+            plugin.flush();
+            super.channelReadComplete(ctx);
         }
 
     };
 
-    public UscAgentUdpHandler(UscAgentUdp agent, NioDatagramChannel ch) {
+    public UscAgentUdpHandler(UscAgentUdp agent, DatagramChannel ch) {
     	this.agent = agent;
         this.plugin = ch;
-        cb.group(clientGroup);
-        cb.channel(NioDatagramChannel.class);
-        cb.handler(new ChannelInitializer<NioDatagramChannel>() {
+        UscPlugin.setWriteBufferWaterMark(ch);
+        cb.group(agent.eventLoops.getDeviceGroup());
+        cb.channel(agent.eventLoops.getDatagramChannelClass());
+        cb.handler(new ChannelInitializer<DatagramChannel>() {
 
             @Override
-            protected void initChannel(NioDatagramChannel ch) throws Exception {
+            protected void initChannel(DatagramChannel ch) throws Exception {
             	LOG.trace("initChannel: clientHandler connects to EchoServer.");
                 ChannelPipeline p = ch.pipeline();
                 p.addLast(new LoggingHandler("UscAgentUdpHandler 2", LogLevel.TRACE));
@@ -142,7 +156,8 @@ public class UscAgentUdpHandler extends SimpleChannelInboundHandler<UscFrame> {
                 }
             }
             if (client != null) {
-                client.writeAndFlush(frame.getPayload());
+                // the frame is released when this method returns
+                client.writeAndFlush(frame.getPayload().retain());
             }
         }
         else if(frame instanceof UscControl) {
@@ -178,8 +193,43 @@ public class UscAgentUdpHandler extends SimpleChannelInboundHandler<UscFrame> {
             	plugin.writeAndFlush(data);
             	LOG.trace("UscAgentUdpHandler send ECHO back.");
         	}
+        	else if(control.getControlCode() == UscControl.ControlCode.HELLO_REQUEST && control.getCapabilities() != null) {
+        		UscCapabilities local = UscPlugin.getLocalCapabilities(plugin);
+        		plugin.writeAndFlush(new UscControl(port, sessionId, UscControl.ControlCode.HELLO_RESPONSE.getCode(), local));
+        		UscPlugin.setCapabilities(plugin, local.negotiate(control.getCapabilities()));
+        		LOG.trace("UscAgentUdpHandler negotiated " + getCapabilities());
+        	}
+        }
+
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // stop reading from all devices while the plugin channel is backed up
+        for (Channel client : clients.values()) {
+            client.config().setAutoRead(plugin.isWritable());
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // the device channels run on shared event loops which outlive the
+        // plugin channel
+        for (Channel client : clients.values()) {
+            client.close();
         }
+        clients.clear();
+        super.channelInactive(ctx);
+    }
 
+    /**
+     * The capabilities negotiated with the plugin.
+     * 
+     * @return capabilities
+     */
+    public UscCapabilities getCapabilities() {
+        return UscPlugin.getCapabilities(plugin);
     }
 
 }
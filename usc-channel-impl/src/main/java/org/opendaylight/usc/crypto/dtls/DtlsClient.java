@@ -11,6 +11,7 @@ package org.opendaylight.usc.crypto.dtls;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.net.InetSocketAddress;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -39,22 +40,51 @@ public class DtlsClient extends DefaultTlsClient {
     private static final Logger log = LoggerFactory.getLogger(DtlsClient.class);
 
     protected TlsSession session;
-    private final File root;
-    private final File cert;
-    private final File key;
+    private final DtlsCredentials credentials;
+    private final DtlsSessionCache sessionCache;
+    private InetSocketAddress peer;
 
     public DtlsClient(TlsSession session, File root, File cert, File key) {
+        this(session, new DtlsCredentials(root, cert, key), null);
+    }
+
+    /**
+     * Constructs a new DtlsClient
+     *
+     * @param session
+     *            the session to resume, or null to take it from the cache
+     * @param credentials
+     *            the shared client credentials
+     * @param sessionCache
+     *            the cache of the sessions by peer, or null
+     */
+    public DtlsClient(TlsSession session, DtlsCredentials credentials, DtlsSessionCache sessionCache) {
         this.session = session;
-        this.root = root;
-        this.cert = cert;
-        this.key = key;
+        this.credentials = credentials;
+        this.sessionCache = sessionCache;
+    }
+
+    /**
+     * Sets the address of the server, under which the session is cached
+     *
+     * @param peer
+     *            the server address
+     */
+    public void setPeer(InetSocketAddress peer) {
+        this.peer = peer;
     }
 
     public TlsSession getSessionToResume() {
+        if (this.session == null && sessionCache != null && peer != null) {
+            this.session = sessionCache.get(peer);
+        }
         return this.session;
     }
 
     public void notifyAlertRaised(short alertLevel, short alertDescription, String message, Throwable cause) {
+        if (alertLevel == AlertLevel.fatal && sessionCache != null && peer != null) {
+            sessionCache.invalidate(peer);
+        }
         PrintStream out = (alertLevel == AlertLevel.fatal) ? System.err : System.out;
         out.println("DTLS client raised alert: " + AlertLevel.getText(alertLevel) + ", "
                 + AlertDescription.getText(alertDescription));
@@ -67,6 +97,9 @@ public class DtlsClient extends DefaultTlsClient {
     }
 
     public void notifyAlertReceived(short alertLevel, short alertDescription) {
+        if (alertLevel == AlertLevel.fatal && sessionCache != null && peer != null) {
+            sessionCache.invalidate(peer);
+        }
         PrintStream out = (alertLevel == AlertLevel.fatal) ? System.err : System.out;
         out.println("DTLS client received alert: " + AlertLevel.getText(alertLevel) + ", "
                 + AlertDescription.getText(alertDescription));
@@ -138,9 +171,7 @@ public class DtlsClient extends DefaultTlsClient {
                     }
                 }
 
-                return DtlsUtils.loadSignerCredentials(context,
-                        new String[] { cert.getAbsolutePath(), root.getAbsolutePath() }, key.getAbsolutePath(),
-                        signatureAndHashAlgorithm);
+                return credentials.getSignerCredentials(context, signatureAndHashAlgorithm);
             }
         };
     }
@@ -149,17 +180,22 @@ public class DtlsClient extends DefaultTlsClient {
         super.notifyHandshakeComplete();
 
         TlsSession newSession = context.getResumableSession();
+        boolean resumed = false;
         if (newSession != null) {
             byte[] newSessionID = newSession.getSessionID();
             String hex = Hex.toHexString(newSessionID);
 
             if (this.session != null && Arrays.areEqual(this.session.getSessionID(), newSessionID)) {
                 log.trace("Resumed session: " + hex);
+                resumed = true;
             } else {
                 log.trace("Established session: " + hex);
             }
 
             this.session = newSession;
         }
+        if (sessionCache != null && peer != null) {
+            sessionCache.put(peer, newSession, resumed);
+        }
     }
 }
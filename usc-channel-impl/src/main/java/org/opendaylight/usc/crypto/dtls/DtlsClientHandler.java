@@ -33,6 +33,12 @@ public class DtlsClientHandler extends DtlsHandler {
         this.secureRandom = secureRandom;
     }
 
+    public DtlsClientHandler(DtlsClient dtlsClient, SecureRandom secureRandom, DtlsHandshakeExecutor handshakeExecutor) {
+        super(handshakeExecutor);
+        this.mclient = dtlsClient;
+        this.secureRandom = secureRandom;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -48,6 +54,8 @@ public class DtlsClientHandler extends DtlsHandler {
     public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress,
             ChannelPromise future) throws Exception {
         rawTransport.setRemoteAddress((InetSocketAddress) remoteAddress);
+        mclient.setPeer((InetSocketAddress) remoteAddress);
+        startHandshakeTimeout(ctx);
 
         super.connect(ctx, remoteAddress, localAddress, future);
     }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.usc.crypto.dtls;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.crypto.tls.Certificate;
+import org.bouncycastle.crypto.tls.DefaultTlsEncryptionCredentials;
+import org.bouncycastle.crypto.tls.DefaultTlsSignerCredentials;
+import org.bouncycastle.crypto.tls.SignatureAndHashAlgorithm;
+import org.bouncycastle.crypto.tls.TlsContext;
+import org.bouncycastle.crypto.tls.TlsEncryptionCredentials;
+import org.bouncycastle.crypto.tls.TlsSignerCredentials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The key and certificates of the DTLS client and server, parsed from the PEM
+ * files once and shared by all handshakes instead of on every handshake.
+ *
+ * Like the TLS contexts, the files are checked for changes at most once per
+ * check interval and reloaded when they change; if the new files can't be
+ * parsed, the previous credentials are kept.
+ */
+public class DtlsCredentials {
+
+    private static final Logger log = LoggerFactory.getLogger(DtlsCredentials.class);
+
+    /**
+     * Default time in milliseconds between checks of the files for changes
+     */
+    public static final long DEFAULT_CHECK_INTERVAL = 1000;
+
+    private final File root;
+    private final File cert;
+    private final File key;
+    private final long checkIntervalNanos;
+    private volatile Parsed parsed;
+    private volatile long nextCheck;
+
+    /**
+     * One version of the files
+     */
+    private static final class Parsed {
+        private final Certificate certificateChain;
+        private final AsymmetricKeyParameter privateKey;
+        private final X500Name rootSubject;
+        private final long[] stamp;
+
+        private Parsed(Certificate certificateChain, AsymmetricKeyParameter privateKey, X500Name rootSubject,
+                long[] stamp) {
+            this.certificateChain = certificateChain;
+            this.privateKey = privateKey;
+            this.rootSubject = rootSubject;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Constructs a new DtlsCredentials checking for changes once a second
+     *
+     * @param root
+     *            the trusted root certificate
+     * @param cert
+     *            the certificate of the key
+     * @param key
+     *            the private key
+     */
+    public DtlsCredentials(File root, File cert, File key) {
+        this(root, cert, key, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Constructs a new DtlsCredentials
+     *
+     * @param root
+     *            the trusted root certificate
+     * @param cert
+     *            the certificate of the key
+     * @param key
+     *            the private key
+     * @param checkInterval
+     *            the time in milliseconds between checks of the files for
+     *            changes, 0 to check before each use
+     */
+    public DtlsCredentials(File root, File cert, File key, long checkInterval) {
+        this.root = root;
+        this.cert = cert;
+        this.key = key;
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkInterval);
+    }
+
+    /**
+     * Returns the credentials for signing the handshake
+     *
+     * @param context
+     *            the context of the handshake
+     * @param signatureAndHashAlgorithm
+     *            the negotiated algorithm, or null before TLS 1.2
+     * @return signer credentials
+     * @throws IOException
+     *             if the files have never been parsed successfully
+     */
+    public TlsSignerCredentials getSignerCredentials(TlsContext context,
+            SignatureAndHashAlgorithm signatureAndHashAlgorithm) throws IOException {
+        final Parsed current = current();
+        return new DefaultTlsSignerCredentials(context, current.certificateChain, current.privateKey,
+                signatureAndHashAlgorithm);
+    }
+
+    /**
+     * Returns the credentials for RSA key exchange
+     *
+     * @param context
+     *            the context of the handshake
+     * @return encryption credentials
+     * @throws IOException
+     *             if the files have never been parsed successfully
+     */
+    public TlsEncryptionCredentials getEncryptionCredentials(TlsContext context) throws IOException {
+        final Parsed current = current();
+        return new DefaultTlsEncryptionCredentials(context, current.certificateChain, current.privateKey);
+    }
+
+    /**
+     * Returns the subject of the trusted root certificate
+     *
+     * @return subject
+     * @throws IOException
+     *             if the files have never been parsed successfully
+     */
+    public X500Name getRootSubject() throws IOException {
+        return current().rootSubject;
+    }
+
+    private Parsed current() throws IOException {
+        Parsed current = parsed;
+        if (current != null && System.nanoTime() - nextCheck < 0) {
+            return current;
+        }
+        synchronized (this) {
+            current = parsed;
+            final long now = System.nanoTime();
+            if (current != null && now - nextCheck < 0) {
+                return current;
+            }
+            nextCheck = now + checkIntervalNanos;
+            final long[] stamp = new long[] { root.lastModified(), root.length(), cert.lastModified(),
+                    cert.length(), key.lastModified(), key.length() };
+            if (current != null && Arrays.equals(current.stamp, stamp)) {
+                return current;
+            }
+            try {
+                final Certificate certificateChain = DtlsUtils.loadCertificateChain(new String[] {
+                        cert.getAbsolutePath(), root.getAbsolutePath() });
+                final Parsed loaded = new Parsed(certificateChain, DtlsUtils.loadPrivateKeyResource(key
+                        .getAbsolutePath()), certificateChain.getCertificateAt(1).getSubject(), stamp);
+                if (current != null) {
+                    log.info("Reloaded DTLS credentials from " + key.getParentFile());
+                }
+                parsed = loaded;
+                return loaded;
+            } catch (IOException | RuntimeException e) {
+                if (current == null) {
+                    throw e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+                log.error("Unable to reload DTLS credentials, keeping the previous ones", e);
+                return current;
+            }
+        }
+    }
+
+}
@@ -9,33 +9,45 @@
 package org.opendaylight.usc.crypto.dtls;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.FastThreadLocal;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.bouncycastle.crypto.tls.DTLSTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * The record layer of a DTLS channel once the handshake is done. It is driven
+ * by the datagrams read from the channel: each read decrypts the records
+ * queued so far and returns without waiting for more, so it never blocks the
+ * event loop. All methods are called on the event loop of the channel.
+ *
+ * Decrypted records are written straight into pooled buffers sized by the
+ * datagram they came in, and plaintext is passed to the record layer from the
+ * array of its buffer where it has one, so the engine itself only allocates
+ * the buffers it hands on.
+ */
 public class DtlsEngine {
 
     private static final Logger log = LoggerFactory.getLogger(DtlsEngine.class);
 
+    /**
+     * Scratch arrays for plaintext in direct buffers, one per event loop
+     */
+    private static final FastThreadLocal<byte[]> SEND_BUFFER = new FastThreadLocal<>();
+
     private DTLSTransport encTransport = null;
     private final DtlsHandlerTransport rawTransport;
-
-    private final LinkedBlockingQueue<DatagramPacket> writeQueue = new LinkedBlockingQueue<>();
+    private int sendLimit;
 
     public DtlsEngine(DtlsHandlerTransport rawTransport) {
         this.rawTransport = rawTransport;
     }
 
-    public ArrayList<DatagramPacket> read(DatagramPacket msg) throws InterruptedException, ExecutionException,
-            IOException {
+    public ArrayList<DatagramPacket> read(DatagramPacket msg) throws IOException {
 
         log.trace("DtlsEngine read " + msg);
         // add to queue irrespective of whether initialized or not;
@@ -44,46 +56,79 @@ public class DtlsEngine {
 
         ArrayList<DatagramPacket> packets = new ArrayList<>();
         if (encTransport != null) {
-            byte buf[] = new byte[encTransport.getReceiveLimit()];
-            while (rawTransport.hasPackets()) {
-                int bytesRead = encTransport.receive(buf, 0, buf.length, 100);
-                if (bytesRead > 0) {
-                    packets.add(new DatagramPacket(Unpooled.copiedBuffer(buf, 0, bytesRead), rawTransport
-                            .getRemoteAddress()));
-                }
-            }
+            receive(packets);
         }
         return packets;
     }
 
-    private static void write(DTLSTransport encTransport, DatagramPacket packet) throws IOException {
-        ByteBuf byteBuf = packet.content();
-        int readableBytes = byteBuf.readableBytes();
-        log.trace("DtlsEngine write " + packet);
-        byte buf[] = new byte[encTransport.getSendLimit()];
-        byteBuf.readBytes(buf, 0, readableBytes);
-        byteBuf.release();
-        encTransport.send(buf, 0, readableBytes);
-    }
-
-    public void write(DatagramPacket packet) throws IOException, InterruptedException, ExecutionException {
-        if (encTransport != null) {
-            write(encTransport, packet);
-        } else {
-            writeQueue.add(packet);
+    /**
+     * Decrypts the queued records, stopping as soon as the queue is empty
+     */
+    private void receive(ArrayList<DatagramPacket> packets) throws IOException {
+        while (rawTransport.hasPackets()) {
+            // the plaintext of a record is no longer than its datagram, which
+            // also keeps the record layer from allocating its full limit
+            final int size = rawTransport.peekSize();
+            final ByteBuf plaintext = rawTransport.alloc().heapBuffer(size);
+            final int bytesRead;
+            try {
+                // a wait of 0 makes the transport return -1 once the queue is
+                // empty
+                bytesRead = encTransport.receive(plaintext.array(),
+                        plaintext.arrayOffset() + plaintext.writerIndex(), size, 0);
+            } catch (IOException e) {
+                plaintext.release();
+                throw e;
+            }
+            if (bytesRead > 0) {
+                plaintext.writerIndex(plaintext.writerIndex() + bytesRead);
+                packets.add(new DatagramPacket(plaintext, rawTransport.getRemoteAddress()));
+            } else {
+                plaintext.release();
+            }
         }
     }
 
-    public void initialize(DTLSTransport encTransport) throws InterruptedException, ExecutionException, IOException {
-        // first send all queued up messages
-        ArrayList<DatagramPacket> packets = new ArrayList<>();
-        writeQueue.drainTo(packets);
-        for (DatagramPacket packet : packets) {
-            write(encTransport, packet);
+    public void write(DatagramPacket packet) throws IOException {
+        log.trace("DtlsEngine write " + packet);
+        try {
+            final ByteBuf byteBuf = packet.content();
+            final int readableBytes = byteBuf.readableBytes();
+            if (readableBytes > sendLimit) {
+                throw new IOException("DTLS record of " + readableBytes + " bytes exceeds the send limit of "
+                        + sendLimit);
+            }
+            if (byteBuf.hasArray()) {
+                encTransport.send(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), readableBytes);
+            } else {
+                byte[] buf = SEND_BUFFER.get();
+                if (buf == null || buf.length < readableBytes) {
+                    buf = new byte[Math.max(readableBytes, 2048)];
+                    SEND_BUFFER.set(buf);
+                }
+                byteBuf.getBytes(byteBuf.readerIndex(), buf, 0, readableBytes);
+                encTransport.send(buf, 0, readableBytes);
+            }
+        } finally {
+            packet.release();
         }
+    }
 
-        // expose this to the outside world last to avoid race conditions
+    /**
+     * Takes over the transport established by the handshake
+     *
+     * @param encTransport
+     *            the DTLS transport
+     * @return the data of the records which arrived after the handshake
+     * @throws IOException
+     */
+    public ArrayList<DatagramPacket> initialize(DTLSTransport encTransport) throws IOException {
+        sendLimit = encTransport.getSendLimit();
         this.encTransport = encTransport;
+
+        ArrayList<DatagramPacket> packets = new ArrayList<>();
+        receive(packets);
+        return packets;
     }
 
     public boolean isInitialized() {
@@ -14,36 +14,73 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.socket.DatagramPacket;
 
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.bouncycastle.crypto.tls.DTLSTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Encrypts the datagrams of a channel with DTLS. The handshake runs on the
+ * {@link DtlsHandshakeExecutor}, as the BouncyCastle handshake blocks its
+ * thread; once it is done, the {@link DtlsEngine} takes over on the event loop
+ * and decrypts each datagram as it is read, without waiting for more. The
+ * datagrams written during the handshake are queued and sent after it.
+ */
 public abstract class DtlsHandler extends ChannelDuplexHandler {
 
     private static final Logger log = LoggerFactory.getLogger(DtlsHandler.class);
 
-    public static class ChannelContext {
-        public final ChannelHandlerContext ctx;
-        public final ChannelPromise promise;
+    /**
+     * A datagram written before the handshake was done
+     */
+    private static final class PendingWrite {
+        private final DatagramPacket packet;
+        private final ChannelPromise promise;
 
-        public ChannelContext(ChannelHandlerContext ctx, ChannelPromise promise) {
-            super();
-            this.ctx = ctx;
+        private PendingWrite(DatagramPacket packet, ChannelPromise promise) {
+            this.packet = packet;
             this.promise = promise;
         }
     }
 
-    private final LinkedBlockingQueue<ChannelContext> writeCtxQueue = new LinkedBlockingQueue<>();
+    private final ArrayDeque<PendingWrite> pendingWrites = new ArrayDeque<>();
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final DtlsHandshakeExecutor handshakeExecutor;
     protected final DtlsHandlerTransport rawTransport = new DtlsHandlerTransport();
     private final DtlsEngine engine = new DtlsEngine(rawTransport);
+    private Future<?> handshake;
+    private ScheduledFuture<?> handshakeTimeout;
+    // when the peer was first seen, on the event loop
+    private long peerSeen;
+    // when the handshake left the queue of the executor, 0 before
+    private volatile long handshakeStart;
+    // the promise of the datagram being encrypted, for the record it becomes
+    private ChannelPromise recordPromise;
+
+    /**
+     * Constructs a new DtlsHandler running its handshake on the shared
+     * executor
+     */
+    protected DtlsHandler() {
+        this(DtlsHandshakeExecutor.getInstance());
+    }
+
+    /**
+     * Constructs a new DtlsHandler
+     *
+     * @param handshakeExecutor
+     *            the executor running the handshake
+     */
+    protected DtlsHandler(DtlsHandshakeExecutor handshakeExecutor) {
+        this.handshakeExecutor = handshakeExecutor;
+    }
 
     @Override
     public void channelActive(final ChannelHandlerContext ctx) throws Exception {
@@ -51,23 +88,142 @@ public abstract class DtlsHandler extends ChannelDuplexHandler {
 
         rawTransport.setChannel(ctx.channel());
 
-        executor.submit(new Runnable() {
+        handshake = handshakeExecutor.submit(new Callable<Void>() {
             @Override
-            public void run() {
+            public Void call() throws Exception {
+                handshakeStart = System.nanoTime();
                 try {
                     log.trace(getName() + " init start ");
 
                     final DTLSTransport encTransport = getDtlsTransport();
-                    engine.initialize(encTransport);
+                    ctx.executor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            handshakeDone(ctx, encTransport);
+                        }
+                    });
                     log.trace(getName() + " init end ");
-                } catch (IOException | InterruptedException | ExecutionException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
+                    return null;
+                } catch (Exception e) {
+                    if (ctx.channel().isActive()) {
+                        log.warn(getName() + " handshake failed, closing " + ctx.channel(), e);
+                        ctx.close();
+                    }
+                    throw e;
                 }
             }
         });
     }
 
+    /**
+     * Starts the handshake timeout once there is a peer to shake hands with:
+     * when a client connects, or when the first record reaches a server. A
+     * server listening for any peer is never closed while no one talks to it.
+     * Only the time the handshake runs counts; the time it waits for a thread
+     * of the executor doesn't.
+     *
+     * @param ctx
+     *            the context of this handler
+     */
+    protected void startHandshakeTimeout(ChannelHandlerContext ctx) {
+        if (handshakeExecutor.getTimeout() <= 0 || handshakeTimeout != null || engine.isInitialized()) {
+            return;
+        }
+        peerSeen = System.nanoTime();
+        scheduleHandshakeTimeout(ctx, handshakeExecutor.getTimeout());
+    }
+
+    private void scheduleHandshakeTimeout(final ChannelHandlerContext ctx, long delay) {
+        handshakeTimeout = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                handshakeTimeout = null;
+                if (engine.isInitialized() || !ctx.channel().isOpen()) {
+                    return;
+                }
+                final long timeout = handshakeExecutor.getTimeout();
+                final long start = handshakeStart;
+                if (start == 0) {
+                    // still queued
+                    scheduleHandshakeTimeout(ctx, timeout);
+                    return;
+                }
+                final long remaining = TimeUnit.MILLISECONDS.toNanos(timeout)
+                        - (System.nanoTime() - Math.max(start, peerSeen));
+                if (remaining > 0) {
+                    scheduleHandshakeTimeout(ctx, TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+                    return;
+                }
+                log.warn(getName() + " handshake timed out after " + timeout + "ms, closing " + ctx.channel());
+                handshakeExecutor.timedOut();
+                ctx.close();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands the channel over to the engine on the event loop, sends the
+     * datagrams written during the handshake and passes on the datagrams read
+     * since
+     */
+    private void handshakeDone(ChannelHandlerContext ctx, DTLSTransport encTransport) {
+        handshake = null;
+        if (handshakeTimeout != null) {
+            handshakeTimeout.cancel(false);
+            handshakeTimeout = null;
+        }
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        final ArrayList<DatagramPacket> packets;
+        try {
+            packets = engine.initialize(encTransport);
+        } catch (IOException e) {
+            ctx.fireExceptionCaught(e);
+            return;
+        }
+        PendingWrite pending;
+        while ((pending = pendingWrites.poll()) != null) {
+            encrypt(pending.packet, pending.promise);
+        }
+        for (DatagramPacket packet : packets) {
+            ctx.fireChannelRead(packet);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        release();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        release();
+        super.handlerRemoved(ctx);
+    }
+
+    /**
+     * Stops the handshake and releases everything queued by this handler
+     */
+    private void release() {
+        if (handshakeTimeout != null) {
+            handshakeTimeout.cancel(false);
+            handshakeTimeout = null;
+        }
+        if (handshake != null) {
+            handshakeExecutor.cancel(handshake);
+            handshake = null;
+        }
+        // fails a waiting handshake, so its thread is free again
+        rawTransport.abort();
+        PendingWrite pending;
+        while ((pending = pendingWrites.poll()) != null) {
+            pending.packet.release();
+            pending.promise.tryFailure(new ClosedChannelException());
+        }
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object obj) throws Exception {
         if (obj instanceof DatagramPacket) {
@@ -94,21 +250,21 @@ public abstract class DtlsHandler extends ChannelDuplexHandler {
 
             log.trace(getName() + " write " + msg);
 
-            // flush the queue when channel initialized
             if (engine.isInitialized()) {
-                // assume messages are one-to-one between raw and encrypted
-                writeCtxQueue.add(new ChannelContext(ctx, promise));
+                encrypt(msg, promise);
+            } else {
+                pendingWrites.add(new PendingWrite(msg, promise));
             }
-            engine.write(msg);
         } else if (obj instanceof DtlsPacket) {
             // used to passthrough the data for handshake packets
 
             // this is the underlying traffic written by this handler
             DtlsPacket msg = (DtlsPacket) obj;
 
-            ChannelContext context = writeCtxQueue.poll();
-            if (context != null) {
-                super.write(context.ctx, msg.packet, context.promise);
+            if (recordPromise != null) {
+                final ChannelPromise recordPromise = this.recordPromise;
+                this.recordPromise = null;
+                super.write(ctx, msg.packet, recordPromise);
             } else {
                 super.write(ctx, msg.packet, promise);
             }
@@ -117,6 +273,24 @@ public abstract class DtlsHandler extends ChannelDuplexHandler {
         }
     }
 
+    /**
+     * Encrypts a datagram into one record, which the transport writes back
+     * through this handler before the engine returns
+     */
+    private void encrypt(DatagramPacket msg, ChannelPromise promise) {
+        recordPromise = promise;
+        try {
+            engine.write(msg);
+        } catch (IOException e) {
+            promise.tryFailure(e);
+        } finally {
+            if (recordPromise != null) {
+                recordPromise = null;
+                promise.tryFailure(new IOException("DTLS record not sent"));
+            }
+        }
+    }
+
     protected String getName() {
         return this.getClass().toString();
     }
@@ -9,6 +9,7 @@
 package org.opendaylight.usc.crypto.dtls;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.socket.DatagramPacket;
@@ -29,6 +30,11 @@ class DtlsHandlerTransport implements DatagramTransport {
     public final static int RECV_BUFFER_SIZE = 65536;
     public final static int SEND_BUFFER_SIZE = 65536;
 
+    /**
+     * queued by {@link #abort()} to wake up a waiting handshake
+     */
+    private static final DatagramPacket CLOSED = new DatagramPacket(Unpooled.EMPTY_BUFFER, new InetSocketAddress(0));
+
     /**
      * 
      */
@@ -36,11 +42,18 @@ class DtlsHandlerTransport implements DatagramTransport {
 
     private Channel channel = null;
     private InetSocketAddress remoteAddress = null;
+    private volatile boolean closed = false;
 
     @Override
     public void send(byte[] buf, int off, int len) throws IOException {
         log.trace(" send " + len + " bytes");
-        DatagramPacket packet = new DatagramPacket(Unpooled.copiedBuffer(buf, off, len), remoteAddress);
+        if (closed) {
+            throw new IOException("DTLS channel closed");
+        }
+        // the record layer reuses buf, so the record is copied once into a
+        // pooled buffer
+        DatagramPacket packet = new DatagramPacket(channel.alloc().buffer(len).writeBytes(buf, off, len),
+                remoteAddress);
         channel.writeAndFlush(new DtlsPacket(packet));
     }
 
@@ -48,16 +61,27 @@ class DtlsHandlerTransport implements DatagramTransport {
     public int receive(byte[] buf, int off, int len, int waitMillis) throws IOException {
         log.trace(" receive ");
         try {
-            DatagramPacket packet = readQueue.poll(waitMillis, TimeUnit.MILLISECONDS);
+            // only the handshake thread waits; the event loop never does
+            DatagramPacket packet = waitMillis > 0 ? readQueue.poll(waitMillis, TimeUnit.MILLISECONDS) : readQueue
+                    .poll();
             log.trace(" receive polled " + packet);
-            if (packet != null) {                
+            if (packet == CLOSED) {
+                // leave it for the next receive; BouncyCastle takes an
+                // IOException here for a read timeout and waits again, so
+                // only an unchecked exception ends the handshake
+                readQueue.add(CLOSED);
+                throw new IllegalStateException("DTLS channel closed");
+            }
+            if (packet != null) {
                 ByteBuf byteBuf = packet.content();
                 int bytesToRead = Math.min(byteBuf.readableBytes(), len);
                 byteBuf.readBytes(buf, off, bytesToRead);
                 byteBuf.release();
                 return bytesToRead;
             } else {
-                return 0;
+                // nothing arrived in time, which lets the handshake
+                // retransmit and the engine return to the event loop
+                return -1;
             }
         } catch (InterruptedException e) {
             e.printStackTrace();
@@ -81,11 +105,47 @@ class DtlsHandlerTransport implements DatagramTransport {
     }
 
     public void enqueue(DatagramPacket msg) {
+        if (closed) {
+            msg.release();
+            return;
+        }
         readQueue.add(msg);
     }
 
     public boolean hasPackets() {
-        return !readQueue.isEmpty();
+        return !closed && !readQueue.isEmpty();
+    }
+
+    /**
+     * Returns the size of the next queued datagram
+     *
+     * @return bytes, 0 if none is queued
+     */
+    public int peekSize() {
+        final DatagramPacket packet = readQueue.peek();
+        return packet == null ? 0 : packet.content().readableBytes();
+    }
+
+    /**
+     * Returns the allocator of the channel
+     *
+     * @return allocator
+     */
+    public ByteBufAllocator alloc() {
+        return channel.alloc();
+    }
+
+    /**
+     * Fails the handshake and all further receives and releases the queued
+     * packets, once the channel has closed
+     */
+    public void abort() {
+        closed = true;
+        DatagramPacket packet;
+        while ((packet = readQueue.poll()) != null) {
+            packet.release();
+        }
+        readQueue.add(CLOSED);
     }
 
     public InetSocketAddress getRemoteAddress() {
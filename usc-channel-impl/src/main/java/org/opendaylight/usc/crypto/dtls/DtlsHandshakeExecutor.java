@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.usc.crypto.dtls;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opendaylight.usc.manager.api.UscConfigurationService;
+import org.opendaylight.usc.util.UscServiceUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the DTLS handshakes of all channels on a bounded number of threads.
+ * The BouncyCastle handshake blocks its thread until the handshake is done,
+ * so handshakes beyond the number of threads wait in a queue. The threads
+ * stop when they have been idle for a minute, so no shutdown is needed.
+ *
+ * The handshake timeout is enforced by {@link DtlsHandler}, which closes the
+ * channel; the time a handshake waits in the queue doesn't count. Queued and
+ * waiting handshakes of closed channels are dropped.
+ */
+public final class DtlsHandshakeExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DtlsHandshakeExecutor.class);
+
+    /**
+     * Default handshake timeout in milliseconds
+     */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    private static DtlsHandshakeExecutor instance;
+
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong totalDuration = new AtomicLong();
+    private final AtomicLong maxDuration = new AtomicLong();
+
+    /**
+     * Constructs a new DtlsHandshakeExecutor
+     *
+     * @param threads
+     *            the maximum number of concurrent handshakes
+     * @param timeout
+     *            the time in milliseconds a handshake may run, from when its
+     *            client connects or its server reads the first record, before
+     *            its channel is closed, 0 for no timeout
+     */
+    public DtlsHandshakeExecutor(int threads, long timeout) {
+        this.timeout = timeout;
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("usc-dtls-handshake", true));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the executor shared by all DTLS channels, creating it from the
+     * configuration on first use
+     *
+     * @return the shared executor
+     */
+    public static synchronized DtlsHandshakeExecutor getInstance() {
+        if (instance == null) {
+            UscConfigurationService configService = UscServiceUtils.getService(UscConfigurationService.class);
+            final int threads = configService != null ? configService
+                    .getConfigIntValue(UscConfigurationService.USC_DTLS_HANDSHAKE_THREADS) : 0;
+            final int timeout = configService != null ? configService
+                    .getConfigIntValue(UscConfigurationService.USC_DTLS_HANDSHAKE_TIMEOUT) : Integer.MIN_VALUE;
+            instance = new DtlsHandshakeExecutor(threads > 0 ? threads : 2 * Runtime.getRuntime()
+                    .availableProcessors(), timeout >= 0 ? timeout : DEFAULT_TIMEOUT);
+            LOG.info("DtlsHandshakeExecutor runs up to " + instance.getThreadCount() + " handshakes at a time");
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a handshake
+     *
+     * @param handshake
+     *            the handshake, which fails by throwing an exception
+     * @return the future of the handshake, to be passed to
+     *         {@link #cancel(Future)} when the channel closes
+     */
+    public Future<?> submit(Callable<?> handshake) {
+        final Handshake task = new Handshake(handshake);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Drops a queued handshake. A running handshake isn't interrupted; it
+     * fails once its transport is closed.
+     *
+     * @param handshake
+     *            the future returned by {@link #submit(Callable)}
+     */
+    public void cancel(Future<?> handshake) {
+        if (handshake.cancel(false) && handshake instanceof Runnable) {
+            executor.remove((Runnable) handshake);
+        }
+    }
+
+    /**
+     * Counts a handshake closed by its timeout
+     */
+    public void timedOut() {
+        timedOut.incrementAndGet();
+    }
+
+    /**
+     * Returns the handshake timeout
+     *
+     * @return the timeout in milliseconds, 0 for none
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the maximum number of concurrent handshakes
+     *
+     * @return thread count
+     */
+    public int getThreadCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Returns the number of handshakes running now
+     *
+     * @return active handshakes
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of handshakes waiting for a thread
+     *
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of successful handshakes
+     *
+     * @return completed handshakes
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of failed handshakes, including those ended by a
+     * timeout or by closing the channel
+     *
+     * @return failed handshakes
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of channels closed by the handshake timeout
+     *
+     * @return timed out handshakes
+     */
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    /**
+     * Returns the mean time a finished handshake ran, not counting the time
+     * it waited in the queue
+     *
+     * @return mean duration in milliseconds
+     */
+    public long getAverageDuration() {
+        final long finished = completed.get() + failed.get();
+        return finished == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalDuration.get() / finished);
+    }
+
+    /**
+     * Returns the longest time a finished handshake ran
+     *
+     * @return maximum duration in milliseconds
+     */
+    public long getMaxDuration() {
+        return TimeUnit.NANOSECONDS.toMillis(maxDuration.get());
+    }
+
+    @Override
+    public String toString() {
+        return "DtlsHandshakeExecutor [threads=" + getThreadCount() + ", active=" + getActiveCount()
+                + ", queueDepth=" + getQueueDepth() + ", completed=" + getCompletedCount() + ", failed="
+                + getFailedCount() + ", timedOut=" + getTimedOutCount() + ", averageDuration="
+                + getAverageDuration() + "ms, maxDuration=" + getMaxDuration() + "ms]";
+    }
+
+    /**
+     * A handshake which records its outcome and duration
+     */
+    private final class Handshake extends FutureTask<Object> {
+
+        private long start;
+
+        @SuppressWarnings("unchecked")
+        Handshake(Callable<?> handshake) {
+            super((Callable<Object>) handshake);
+        }
+
+        @Override
+        public void run() {
+            start = System.nanoTime();
+            super.run();
+        }
+
+        @Override
+        protected void set(Object result) {
+            // counted before waiters see the outcome
+            completed.incrementAndGet();
+            record();
+            super.set(result);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failed.incrementAndGet();
+            record();
+            super.setException(t);
+        }
+
+        private void record() {
+            final long duration = System.nanoTime() - start;
+            totalDuration.addAndGet(duration);
+            long max;
+            while (duration > (max = maxDuration.get()) && !maxDuration.compareAndSet(max, duration)) {
+                // retry
+            }
+        }
+    }
+
+}
@@ -36,15 +36,21 @@ public class DtlsServer extends DefaultTlsServer {
 
     private static final Logger log = LoggerFactory.getLogger(DtlsServer.class);
 
-    private final File root;
-    private final File cert;
-    private final File key;
+    private final DtlsCredentials credentials;
 
     public DtlsServer(File root, File cert, File key) {
+        this(new DtlsCredentials(root, cert, key));
+    }
+
+    /**
+     * Constructs a new DtlsServer
+     *
+     * @param credentials
+     *            the shared server credentials
+     */
+    public DtlsServer(DtlsCredentials credentials) {
         super();
-        this.root = root;
-        this.cert = cert;
-        this.key = key;
+        this.credentials = credentials;
     }
 
     public void notifyAlertRaised(short alertLevel, short alertDescription, String message, Throwable cause) {
@@ -88,7 +94,7 @@ public class DtlsServer extends DefaultTlsServer {
         }
 
         Vector<X500Name> certificateAuthorities = new Vector<X500Name>();
-        certificateAuthorities.add(DtlsUtils.loadCertificateResource(root.getAbsolutePath()).getSubject());
+        certificateAuthorities.add(credentials.getRootSubject());
 
         return new CertificateRequest(new short[] { ClientCertificateType.rsa_sign }, serverSigAlgs,
                 certificateAuthorities);
@@ -113,8 +119,7 @@ public class DtlsServer extends DefaultTlsServer {
     }
 
     protected TlsEncryptionCredentials getRSAEncryptionCredentials() throws IOException {
-        return DtlsUtils.loadEncryptionCredentials(context,
-                new String[] { cert.getAbsolutePath(), root.getAbsolutePath() }, key.getAbsolutePath());
+        return credentials.getEncryptionCredentials(context);
     }
 
     protected TlsSignerCredentials getRSASignerCredentials() throws IOException {
@@ -137,8 +142,6 @@ public class DtlsServer extends DefaultTlsServer {
                 return null;
             }
         }
-        return DtlsUtils.loadSignerCredentials(context,
-                new String[] { cert.getAbsolutePath(), root.getAbsolutePath() }, key.getAbsolutePath(),
-                signatureAndHashAlgorithm);
+        return credentials.getSignerCredentials(context, signatureAndHashAlgorithm);
     }
 }
@@ -31,6 +31,12 @@ public class DtlsServerHandler extends DtlsHandler {
         this.secureRandom = secureRandom;
     }
 
+    public DtlsServerHandler(DtlsServer dtlsServer, SecureRandom secureRandom, DtlsHandshakeExecutor handshakeExecutor) {
+        super(handshakeExecutor);
+        this.mserver = dtlsServer;
+        this.secureRandom = secureRandom;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -47,6 +53,8 @@ public class DtlsServerHandler extends DtlsHandler {
         if (obj instanceof DatagramPacket) {
             DatagramPacket msg = (DatagramPacket) obj;
             rawTransport.setRemoteAddress(msg.sender());
+            // a listener waits for its first peer without a timeout
+            startHandshakeTimeout(ctx);
         }
 
         super.channelRead(ctx, obj);
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package org.opendaylight.usc.crypto.dtls;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.crypto.tls.TlsSession;
+import org.opendaylight.usc.manager.api.UscConfigurationService;
+import org.opendaylight.usc.util.UscServiceUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The DTLS sessions established by {@link DtlsClient}, by peer address. A
+ * client reconnecting to a peer offers the cached session, so that a peer
+ * which still knows it completes an abbreviated handshake without
+ * certificates, signatures or key exchange. Sessions are dropped after a
+ * fatal alert, when the peer declines them, and when they expire.
+ */
+public final class DtlsSessionCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DtlsSessionCache.class);
+
+    /**
+     * Default number of cached sessions
+     */
+    public static final int DEFAULT_SIZE = 10000;
+
+    /**
+     * Default lifetime of a cached session in seconds
+     */
+    public static final long DEFAULT_TIMEOUT = 3600;
+
+    private static DtlsSessionCache instance;
+
+    private final Cache<InetSocketAddress, TlsSession> sessions;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+
+    /**
+     * Constructs a new DtlsSessionCache
+     *
+     * @param maximumSize
+     *            the number of sessions kept, 0 to disable resumption
+     * @param timeout
+     *            the time in seconds a session is kept after it was
+     *            established
+     */
+    public DtlsSessionCache(int maximumSize, long timeout) {
+        sessions = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(timeout, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Returns the cache shared by all DTLS clients, creating it from the
+     * configuration on first use
+     *
+     * @return the shared cache
+     */
+    public static synchronized DtlsSessionCache getInstance() {
+        if (instance == null) {
+            UscConfigurationService configService = UscServiceUtils.getService(UscConfigurationService.class);
+            final int size = configService != null ? configService
+                    .getConfigIntValue(UscConfigurationService.USC_DTLS_SESSION_CACHE_SIZE) : Integer.MIN_VALUE;
+            final int timeout = configService != null ? configService
+                    .getConfigIntValue(UscConfigurationService.USC_DTLS_SESSION_TIMEOUT) : Integer.MIN_VALUE;
+            instance = new DtlsSessionCache(size >= 0 ? size : DEFAULT_SIZE, timeout > 0 ? timeout
+                    : DEFAULT_TIMEOUT);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the session to offer to a peer
+     *
+     * @param peer
+     *            the address of the peer
+     * @return the cached session, or null for a full handshake
+     */
+    public TlsSession get(InetSocketAddress peer) {
+        requests.incrementAndGet();
+        final TlsSession session = sessions.getIfPresent(peer);
+        if (session == null) {
+            return null;
+        }
+        if (!session.isResumable()) {
+            sessions.invalidate(peer);
+            return null;
+        }
+        hits.incrementAndGet();
+        return session;
+    }
+
+    /**
+     * Records the session of a completed handshake
+     *
+     * @param peer
+     *            the address of the peer
+     * @param session
+     *            the session, or null if it can't be resumed
+     * @param resumedSession
+     *            true if the handshake resumed the offered session
+     */
+    public void put(InetSocketAddress peer, TlsSession session, boolean resumedSession) {
+        if (resumedSession) {
+            resumed.incrementAndGet();
+        }
+        if (session != null) {
+            sessions.put(peer, session);
+        } else {
+            sessions.invalidate(peer);
+        }
+    }
+
+    /**
+     * Drops the session of a peer
+     *
+     * @param peer
+     *            the address of the peer
+     */
+    public void invalidate(InetSocketAddress peer) {
+        final TlsSession session = sessions.getIfPresent(peer);
+        if (session != null) {
+            log.trace("Dropping DTLS session with " + peer);
+            session.invalidate();
+            sessions.invalidate(peer);
+        }
+    }
+
+    /**
+     * Returns the number of cached sessions
+     *
+     * @return size
+     */
+    public long size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of handshakes which looked for a session
+     *
+     * @return requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of handshakes which offered a cached session
+     *
+     * @return hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of handshakes in which the peer resumed the offered
+     * session
+     *
+     * @return abbreviated handshakes
+     */
+    public long getResumedCount() {
+        return resumed.get();
+    }
+
+    /**
+     * Returns the share of handshakes which offered a cached session
+     *
+     * @return hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        final long count = requests.get();
+        return count == 0 ? 0 : (double) hits.get() / count;
+    }
+
+    /**
+     * Returns the share of handshakes which were abbreviated
+     *
+     * @return resumption rate between 0 and 1
+     */
+    public double getResumptionRate() {
+        final long count = requests.get();
+        return count == 0 ? 0 : (double) resumed.get() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "DtlsSessionCache [size=" + size() + ", requests=" + getRequestCount() + ", hitRate=" + getHitRate()
+                + ", resumptionRate=" + getResumptionRate() + "]";
+    }
+
+}
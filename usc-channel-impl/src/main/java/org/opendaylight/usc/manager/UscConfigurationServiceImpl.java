@@ -73,8 +73,54 @@ public class UscConfigurationServiceImpl implements UscConfigurationService {
                         UscConfigurationService.USC_MAX_ERROR_NUMER, true);
                 setIntPropertyFromFile(prop,
                         UscConfigurationService.USC_MAX_THREAD_NUMBER, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_PROTOCOL_VERSION, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_BUNDLE_MTU, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_BUNDLE_FLUSH_DELAY, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_PATH_MTU, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_REASSEMBLY_BUFFER_SIZE, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_REASSEMBLY_TIMEOUT, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_SCHEDULER_QUANTUM, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_WRITE_BUFFER_HIGH_WATER_MARK, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_WRITE_BUFFER_LOW_WATER_MARK, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_EVENT_LOOP_AGENT_THREADS, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_EVENT_LOOP_DEVICE_THREADS, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_EVENT_LOOP_LOCAL_THREADS, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_TCP_NOTSENT_LOWAT, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_AGENT_CONNECTIONS, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_DTLS_HANDSHAKE_THREADS, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_DTLS_HANDSHAKE_TIMEOUT, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_DTLS_SESSION_CACHE_SIZE, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_DTLS_SESSION_TIMEOUT, true);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_TLS_SESSION_CACHE_SIZE, false);
+                setIntPropertyFromFile(prop,
+                        UscConfigurationService.USC_TLS_SESSION_TIMEOUT, false);
                 setBooleanPropertyFromFile(prop,
                         UscConfigurationService.USC_LOG_ERROR_EVENT);
+                setBooleanPropertyFromFile(prop,
+                        UscConfigurationService.USC_ZERO_COPY_DECODE);
+                setBooleanPropertyFromFile(prop,
+                        UscConfigurationService.USC_NATIVE_TRANSPORT);
+                setBooleanPropertyFromFile(prop,
+                        UscConfigurationService.USC_SESSION_EVENT_LOOP_AFFINITY);
                 setStringPropertyFromFile(prop,
                         UscConfigurationService.SECURITY_FILES_ROOT);
                 setStringPropertyFromFile(prop,
@@ -85,6 +131,12 @@ public class UscConfigurationServiceImpl implements UscConfigurationService {
                         UscConfigurationService.TRUST_CERTIFICATE_CHAIN_FILE);
                 setStringPropertyFromFile(prop,
                         UscConfigurationService.AKKA_CLUSTER_FILE);
+                setStringPropertyFromFile(prop,
+                        UscConfigurationService.USC_SESSION_WEIGHTS);
+                setStringPropertyFromFile(prop,
+                        UscConfigurationService.USC_AGENT_CONNECTION_SELECTION);
+                setStringPropertyFromFile(prop,
+                        UscConfigurationService.USC_TLS_PROVIDER);
             } catch (IOException e) {
                 LOG.warn("Failed to load properties from USC properties file, using the default data. Error message is "
                         + e.getMessage());
@@ -9,8 +9,6 @@ package org.opendaylight.usc.manager;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOutboundHandler;
-import io.netty.handler.ssl.IdentityCipherSuiteFilter;
-import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
 
 import java.io.File;
@@ -21,8 +19,10 @@ import javax.net.ssl.SSLException;
 
 import org.opendaylight.usc.crypto.dtls.DtlsClient;
 import org.opendaylight.usc.crypto.dtls.DtlsClientHandler;
+import org.opendaylight.usc.crypto.dtls.DtlsCredentials;
 import org.opendaylight.usc.crypto.dtls.DtlsServer;
 import org.opendaylight.usc.crypto.dtls.DtlsServerHandler;
+import org.opendaylight.usc.crypto.dtls.DtlsSessionCache;
 import org.opendaylight.usc.manager.api.UscConfigurationService;
 import org.opendaylight.usc.manager.api.UscSecureService;
 import org.opendaylight.usc.util.UscServiceUtils;
@@ -41,6 +41,8 @@ public class UscSecureServiceImpl implements UscSecureService {
     private final File privateKeyFile;
     private final File publicCertChainFile;
     private final File trustCertChainFile;
+    private final UscSslContextCache sslContexts;
+    private final DtlsCredentials dtlsCredentials;
 
     /**
      * create a security manager class using UscManager
@@ -57,6 +59,9 @@ public class UscSecureServiceImpl implements UscSecureService {
             privateKeyFile = new File(rootPath, "client.key.pem");
             publicCertChainFile = new File(rootPath, "client.pem");
             trustCertChainFile = new File(rootPath, "rootCA.pem");
+            sslContexts = new UscSslContextCache(privateKeyFile, publicCertChainFile, trustCertChainFile,
+                    UscSslContextCache.DEFAULT_CHECK_INTERVAL);
+            dtlsCredentials = new DtlsCredentials(trustCertChainFile, publicCertChainFile, privateKeyFile);
             return;
         }
         File rootPath = new File(configService.getConfigStringValue(UscConfigurationService.SECURITY_FILES_ROOT));
@@ -78,6 +83,16 @@ public class UscSecureServiceImpl implements UscSecureService {
         if (!trustCertChainFile.canRead()) {
             LOG.error("Unable to read trust cert " + trustCertChainFile.getAbsolutePath());
         }
+        final int sessionCacheSize = configService
+                .getConfigIntValue(UscConfigurationService.USC_TLS_SESSION_CACHE_SIZE);
+        final int sessionTimeout = configService
+                .getConfigIntValue(UscConfigurationService.USC_TLS_SESSION_TIMEOUT);
+        sslContexts = new UscSslContextCache(privateKeyFile, publicCertChainFile, trustCertChainFile,
+                UscSslContextCache.DEFAULT_CHECK_INTERVAL, UscSslContextCache.parseProvider(configService
+                        .getConfigStringValue(UscConfigurationService.USC_TLS_PROVIDER)), Math.max(0,
+                        sessionCacheSize), Math.max(0, sessionTimeout));
+        LOG.info("TLS agent channels use the " + sslContexts.getProvider() + " provider");
+        dtlsCredentials = new DtlsCredentials(trustCertChainFile, publicCertChainFile, privateKeyFile);
     }
 
     /**
@@ -92,12 +107,8 @@ public class UscSecureServiceImpl implements UscSecureService {
     @Override
     public ChannelOutboundHandler getTcpServerHandler(Channel ch)
             throws SSLException {
-        SslContext sslServerCtx = SslContext.newServerContext(null,
-                trustCertChainFile, null, publicCertChainFile, privateKeyFile,
-                null, null, null, IdentityCipherSuiteFilter.INSTANCE, null, 0,
-                0);
         // mutual authentication as server
-        SSLEngine sslServerEngine = sslServerCtx.newEngine(ch.alloc());
+        SSLEngine sslServerEngine = sslContexts.getServerContext().newEngine(ch.alloc());
         // require client (mutual) authentication
         sslServerEngine.setNeedClientAuth(true);
         return new SslHandler(sslServerEngine);
@@ -106,25 +117,20 @@ public class UscSecureServiceImpl implements UscSecureService {
     @Override
     public ChannelOutboundHandler getTcpClientHandler(Channel ch)
             throws SSLException {
-        SslContext sslClientCtx = SslContext.newClientContext(null,
-                trustCertChainFile, null, publicCertChainFile, privateKeyFile,
-                null, null, null, IdentityCipherSuiteFilter.INSTANCE, null, 0,
-                0);
         // mutual authentication as client
-        return sslClientCtx.newHandler(ch.alloc());
+        return sslContexts.getClientContext().newHandler(ch.alloc());
     }
 
     @Override
     public ChannelOutboundHandler getUdpServerHandler(Channel ch) {
-        final DtlsServer dtlsServer = new DtlsServer(trustCertChainFile,
-                publicCertChainFile, privateKeyFile);
+        final DtlsServer dtlsServer = new DtlsServer(dtlsCredentials);
         return new DtlsServerHandler(dtlsServer, secureRandom);
     }
 
     @Override
     public ChannelOutboundHandler getUdpClientHandler(Channel ch) {
-        final DtlsClient dtlsClient = new DtlsClient(null, trustCertChainFile,
-                publicCertChainFile, privateKeyFile);
+        final DtlsClient dtlsClient = new DtlsClient(null, dtlsCredentials,
+                DtlsSessionCache.getInstance());
         return new DtlsClientHandler(dtlsClient, secureRandom);
     }
 
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.manager;
+
+import io.netty.handler.ssl.IdentityCipherSuiteFilter;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslProvider;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The TLS server and client contexts built from the key and certificate
+ * files. Building a context parses the PEM files, which takes longer than the
+ * handshake itself, so the contexts are built once and shared by all channels.
+ *
+ * The files are checked for changes at most once per check interval; changed
+ * files are loaded into new contexts, which replace both contexts at once.
+ * Channels set up before keep the contexts they were set up with. If the new
+ * files can't be loaded, for example while they are being replaced, the
+ * previous contexts are kept and loading is tried again after the next check
+ * interval.
+ *
+ * The contexts use the JDK SSLEngine or, if configured and netty-tcnative is
+ * on the class path, OpenSSL. As all channels share the contexts, they share
+ * their session caches too, so peers reconnecting with a session ID or ticket
+ * complete an abbreviated handshake.
+ */
+public class UscSslContextCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UscSslContextCache.class);
+
+    /**
+     * Default time in milliseconds between checks of the files for changes
+     */
+    public static final long DEFAULT_CHECK_INTERVAL = 1000;
+
+    private final File privateKeyFile;
+    private final File publicCertChainFile;
+    private final File trustCertChainFile;
+    private final long checkIntervalNanos;
+    private final SslProvider provider;
+    private final long sessionCacheSize;
+    private final long sessionTimeout;
+    private volatile Contexts contexts;
+    private volatile long nextCheck;
+
+    /**
+     * The contexts built from one version of the files
+     */
+    private static final class Contexts {
+        private final SslContext server;
+        private final SslContext client;
+        private final long[] stamp;
+
+        private Contexts(SslContext server, SslContext client, long[] stamp) {
+            this.server = server;
+            this.client = client;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Constructs a new UscSslContextCache
+     *
+     * @param privateKeyFile
+     *            the PKCS#8 private key file in PEM format
+     * @param publicCertChainFile
+     *            the X.509 certificate chain file of the key in PEM format
+     * @param trustCertChainFile
+     *            the X.509 certificates trusted for the peer in PEM format
+     * @param checkInterval
+     *            the time in milliseconds between checks of the files for
+     *            changes, 0 to check before each use
+     */
+    public UscSslContextCache(File privateKeyFile, File publicCertChainFile, File trustCertChainFile,
+            long checkInterval) {
+        this(privateKeyFile, publicCertChainFile, trustCertChainFile, checkInterval, SslProvider.JDK, 0, 0);
+    }
+
+    /**
+     * Constructs a new UscSslContextCache
+     *
+     * @param privateKeyFile
+     *            the PKCS#8 private key file in PEM format
+     * @param publicCertChainFile
+     *            the X.509 certificate chain file of the key in PEM format
+     * @param trustCertChainFile
+     *            the X.509 certificates trusted for the peer in PEM format
+     * @param checkInterval
+     *            the time in milliseconds between checks of the files for
+     *            changes, 0 to check before each use
+     * @param provider
+     *            the TLS implementation
+     * @param sessionCacheSize
+     *            the number of sessions kept for resumption, 0 for the
+     *            default of the provider
+     * @param sessionTimeout
+     *            the time in seconds a session is kept for resumption, 0 for
+     *            the default of the provider
+     */
+    public UscSslContextCache(File privateKeyFile, File publicCertChainFile, File trustCertChainFile,
+            long checkInterval, SslProvider provider, long sessionCacheSize, long sessionTimeout) {
+        this.privateKeyFile = privateKeyFile;
+        this.publicCertChainFile = publicCertChainFile;
+        this.trustCertChainFile = trustCertChainFile;
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkInterval);
+        this.provider = provider;
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    /**
+     * Parses the configured TLS implementation
+     *
+     * @param value
+     *            "jdk" or "openssl"; OpenSSL falls back to the JDK if
+     *            netty-tcnative is not available
+     * @return provider
+     */
+    public static SslProvider parseProvider(String value) {
+        if ("openssl".equalsIgnoreCase(value)) {
+            if (OpenSsl.isAvailable()) {
+                return SslProvider.OPENSSL;
+            }
+            LOG.warn("OpenSSL is not available, using the JDK TLS provider", OpenSsl.unavailabilityCause());
+        }
+        return SslProvider.JDK;
+    }
+
+    /**
+     * Returns the TLS implementation of the contexts
+     *
+     * @return provider
+     */
+    public SslProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Returns the context for channels accepted from a peer
+     *
+     * @return server context
+     * @throws SSLException
+     *             if the files have never been loaded successfully
+     */
+    public SslContext getServerContext() throws SSLException {
+        return current().server;
+    }
+
+    /**
+     * Returns the context for channels connected to a peer
+     *
+     * @return client context
+     * @throws SSLException
+     *             if the files have never been loaded successfully
+     */
+    public SslContext getClientContext() throws SSLException {
+        return current().client;
+    }
+
+    private Contexts current() throws SSLException {
+        Contexts current = contexts;
+        if (current != null && System.nanoTime() - nextCheck < 0) {
+            return current;
+        }
+        synchronized (this) {
+            current = contexts;
+            final long now = System.nanoTime();
+            if (current != null && now - nextCheck < 0) {
+                return current;
+            }
+            nextCheck = now + checkIntervalNanos;
+            final long[] stamp = stamp();
+            if (current != null && Arrays.equals(current.stamp, stamp)) {
+                return current;
+            }
+            try {
+                final Contexts loaded = load(stamp);
+                if (current != null) {
+                    LOG.info("Reloaded TLS contexts from " + privateKeyFile.getParentFile());
+                }
+                contexts = loaded;
+                return loaded;
+            } catch (SSLException e) {
+                if (current == null) {
+                    throw e;
+                }
+                LOG.error("Unable to reload TLS contexts, keeping the previous ones", e);
+                return current;
+            }
+        }
+    }
+
+    private long[] stamp() {
+        return new long[] { privateKeyFile.lastModified(), privateKeyFile.length(),
+                publicCertChainFile.lastModified(), publicCertChainFile.length(), trustCertChainFile.lastModified(),
+                trustCertChainFile.length() };
+    }
+
+    private Contexts load(long[] stamp) throws SSLException {
+        final SslContext server = SslContext.newServerContext(provider, trustCertChainFile, null,
+                publicCertChainFile, privateKeyFile, null, null, null, IdentityCipherSuiteFilter.INSTANCE, null,
+                sessionCacheSize, sessionTimeout);
+        final SslContext client = SslContext.newClientContext(provider, trustCertChainFile, null,
+                publicCertChainFile, privateKeyFile, null, null, null, IdentityCipherSuiteFilter.INSTANCE, null,
+                sessionCacheSize, sessionTimeout);
+        return new Contexts(server, client, stamp);
+    }
+
+}
@@ -84,6 +84,8 @@ public class UscTopologyService {
     private List<Channel> localChannelList = new CopyOnWriteArrayList<Channel>();
     private List<Node> localNodeList = new CopyOnWriteArrayList<Node>();
     private Hashtable<String, Integer> nodeReferList = new Hashtable<String, Integer>();
+    // number of agent connections behind each channel, by device and type
+    private Hashtable<String, Integer> channelReferList = new Hashtable<String, Integer>();
     private boolean logError = true;
 
     private UscTopologyService() {
@@ -358,18 +360,49 @@ public class UscTopologyService {
     }
 
     /**
-     * add a channel to topology channel list
+     * add a channel to topology channel list, when a channel of the same
+     * device and type exists, another agent connection of the device is
+     * pooled with it, then only update the refer number of the channel
      *
      * @param channel
      *            the adding channel
      */
     public synchronized void addChannel(Channel channel) {
         if (channel != null) {
+            String referKey = getChannelReferKey(channel.getDestination().getDestNode().getValue(),
+                    channel.getChannelType());
+            Integer num = channelReferList.get(referKey);
+            if (num != null && getChannel(channel.getDestination().getDestNode().getValue(),
+                    channel.getChannelType()) != null) {
+                // exsits,only add refer number
+                channelReferList.put(referKey, num + 1);
+                return;
+            }
+            channelReferList.put(referKey, 1);
             addChannelWithoutUpdateShard(channel);
             updateShard();
         }
     }
 
+    /**
+     * get the number of agent connections behind the channel of the specified
+     * destination id and type
+     *
+     * @param destinationId
+     *            destination node id
+     * @param type
+     *            the type of channel
+     * @return the number of connections, 0 if there is no channel
+     */
+    public synchronized int getChannelConnectionCount(String destinationId, String type) {
+        Integer num = channelReferList.get(getChannelReferKey(destinationId, type));
+        return num == null ? 0 : num;
+    }
+
+    private static String getChannelReferKey(String destinationId, String type) {
+        return destinationId + "-" + type;
+    }
+
     /**
      * add a channel to topology channel list without update shard
      *
@@ -396,6 +429,14 @@ public class UscTopologyService {
      */
     public synchronized Channel removeChannel(String destinationId, String type) {
         if (destinationId != null) {
+            String referKey = getChannelReferKey(destinationId, type);
+            Integer num = channelReferList.get(referKey);
+            if (num != null && num > 1) {
+                // other agent connections remain, only minus refer number
+                channelReferList.put(referKey, num - 1);
+                return getChannel(destinationId, type);
+            }
+            channelReferList.remove(referKey);
             Channel channel = removeChannelWithoutUpdateShard(destinationId, type);
             if(channel != null){
                 updateShard();
@@ -54,6 +54,137 @@ public interface UscConfigurationService {
      * PEM format
      */
     public final static String PRIVATE_KEY_FILE = "org.opendaylight.usc.PrivateKeyFile";
+    /**
+     * the configuration key of the flag if the payload of received USC DATA
+     * frames is passed on as a slice of the inbound buffer instead of a copy
+     */
+    public final static String USC_ZERO_COPY_DECODE = "org.opendaylight.usc.ZeroCopyDecode";
+    /**
+     * the configuration key of the USC protocol version sent on new agent
+     * channels before the agent is seen to speak a newer one
+     */
+    public final static String USC_PROTOCOL_VERSION = "org.opendaylight.usc.ProtocolVersion";
+    /**
+     * the configuration key of the largest datagram in bytes into which
+     * frames to UDP and DTLS agents are bundled, 0 to switch bundling off
+     */
+    public final static String USC_BUNDLE_MTU = "org.opendaylight.usc.BundleMtu";
+    /**
+     * the configuration key of the delay in milliseconds after which a bundle
+     * which wasn't flushed is sent
+     */
+    public final static String USC_BUNDLE_FLUSH_DELAY = "org.opendaylight.usc.BundleFlushDelay";
+    /**
+     * the configuration key of the path MTU in bytes above which frames to
+     * UDP and DTLS agents are fragmented
+     */
+    public final static String USC_PATH_MTU = "org.opendaylight.usc.PathMtu";
+    /**
+     * the configuration key of the limit in bytes of the fragments buffered
+     * for reassembly per UDP or DTLS channel
+     */
+    public final static String USC_REASSEMBLY_BUFFER_SIZE = "org.opendaylight.usc.ReassemblyBufferSize";
+    /**
+     * the configuration key of the time in milliseconds within which all
+     * fragments of a frame must be received
+     */
+    public final static String USC_REASSEMBLY_TIMEOUT = "org.opendaylight.usc.ReassemblyTimeout";
+    /**
+     * the configuration key of the number of bytes a session of weight 1 may
+     * send per scheduling round on a shared agent channel
+     */
+    public final static String USC_SCHEDULER_QUANTUM = "org.opendaylight.usc.SchedulerQuantum";
+    /**
+     * the configuration key of the scheduling weights of sessions by
+     * application port, in the form port:weight,port:weight
+     */
+    public final static String USC_SESSION_WEIGHTS = "org.opendaylight.usc.SessionWeights";
+    /**
+     * the configuration key of the number of bytes waiting to be written to
+     * an agent or device channel above which sessions stop reading
+     */
+    public final static String USC_WRITE_BUFFER_HIGH_WATER_MARK = "org.opendaylight.usc.WriteBufferHighWaterMark";
+    /**
+     * the configuration key of the number of bytes waiting to be written to
+     * an agent or device channel below which sessions resume reading
+     */
+    public final static String USC_WRITE_BUFFER_LOW_WATER_MARK = "org.opendaylight.usc.WriteBufferLowWaterMark";
+    /**
+     * the configuration key of the number of event loops shared by the
+     * channels between plugins and agents, 0 for one per processor
+     */
+    public final static String USC_EVENT_LOOP_AGENT_THREADS = "org.opendaylight.usc.EventLoopAgentThreads";
+    /**
+     * the configuration key of the number of event loops shared by the
+     * channels to device services, 0 for one per processor
+     */
+    public final static String USC_EVENT_LOOP_DEVICE_THREADS = "org.opendaylight.usc.EventLoopDeviceThreads";
+    /**
+     * the configuration key of the number of event loops shared by the local
+     * channels between clients and plugins, 0 for one per processor
+     */
+    public final static String USC_EVENT_LOOP_LOCAL_THREADS = "org.opendaylight.usc.EventLoopLocalThreads";
+    /**
+     * the configuration key of the flag if agent and device channels use the
+     * native epoll transport where it is available
+     */
+    public final static String USC_NATIVE_TRANSPORT = "org.opendaylight.usc.NativeTransport";
+    /**
+     * the configuration key of the TCP_NOTSENT_LOWAT of TCP agent channels on
+     * the native transport, in bytes
+     */
+    public final static String USC_TCP_NOTSENT_LOWAT = "org.opendaylight.usc.TcpNotSentLowat";
+    /**
+     * the configuration key of the flag if the local channels of a session run
+     * on the event loop of the agent channel carrying it
+     */
+    public final static String USC_SESSION_EVENT_LOOP_AFFINITY = "org.opendaylight.usc.SessionEventLoopAffinity";
+    /**
+     * the configuration key of the number of TCP or TLS agent channels opened
+     * to each device
+     */
+    public final static String USC_AGENT_CONNECTIONS = "org.opendaylight.usc.AgentConnections";
+    /**
+     * the configuration key of how the agent channel of a new session is
+     * chosen: least-loaded or hash
+     */
+    public final static String USC_AGENT_CONNECTION_SELECTION = "org.opendaylight.usc.AgentConnectionSelection";
+    /**
+     * the configuration key of the number of threads running DTLS handshakes,
+     * shared by all DTLS channels, 0 for two per processor
+     */
+    public final static String USC_DTLS_HANDSHAKE_THREADS = "org.opendaylight.usc.DtlsHandshakeThreads";
+    /**
+     * the configuration key of the time in milliseconds a DTLS handshake may
+     * run, from the connect of a client or the first record read by a server,
+     * before its channel is closed, 0 for no timeout
+     */
+    public final static String USC_DTLS_HANDSHAKE_TIMEOUT = "org.opendaylight.usc.DtlsHandshakeTimeout";
+    /**
+     * the configuration key of the number of DTLS sessions kept for
+     * resumption, 0 to always run a full handshake
+     */
+    public final static String USC_DTLS_SESSION_CACHE_SIZE = "org.opendaylight.usc.DtlsSessionCacheSize";
+    /**
+     * the configuration key of the time in seconds a DTLS session is kept for
+     * resumption
+     */
+    public final static String USC_DTLS_SESSION_TIMEOUT = "org.opendaylight.usc.DtlsSessionTimeout";
+    /**
+     * the configuration key of the TLS implementation of agent channels: jdk,
+     * or openssl if netty-tcnative is available
+     */
+    public final static String USC_TLS_PROVIDER = "org.opendaylight.usc.TlsProvider";
+    /**
+     * the configuration key of the number of TLS sessions kept for
+     * resumption, 0 for the default of the provider
+     */
+    public final static String USC_TLS_SESSION_CACHE_SIZE = "org.opendaylight.usc.TlsSessionCacheSize";
+    /**
+     * the configuration key of the time in seconds a TLS session is kept for
+     * resumption, 0 for the default of the provider
+     */
+    public final static String USC_TLS_SESSION_TIMEOUT = "org.opendaylight.usc.TlsSessionTimeout";
     /**
      * the configuration key of the configuration file path of akka cluster
      */
@@ -43,6 +43,16 @@ public class Demultiplexer extends SimpleChannelInboundHandler<Object> {
         }
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // stop reading from the session while the device channel is backed up
+        Channel serverChannel = ctx.channel().attr(UscPlugin.LOCAL_SERVER_CHANNEL).get();
+        if (serverChannel != null) {
+            serverChannel.config().setAutoRead(ctx.channel().isWritable());
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         cause.printStackTrace();
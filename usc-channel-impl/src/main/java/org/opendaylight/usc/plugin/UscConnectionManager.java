@@ -11,9 +11,15 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import org.opendaylight.usc.manager.UscRouteBrokerService;
+import org.opendaylight.usc.manager.api.UscConfigurationService;
 import org.opendaylight.usc.manager.cluster.UscRemoteChannelIdentifier;
 import org.opendaylight.usc.manager.cluster.message.UscRemoteChannelEventMessage;
 import org.opendaylight.usc.manager.monitor.evt.UscChannelCloseEvent;
@@ -26,6 +32,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * This class manages the collection of connections (channels) that are
@@ -39,86 +49,256 @@ public class UscConnectionManager {
     private UscRouteBrokerService brokerService = null;
 
     /**
-     * Map from host name to agentChannel
+     * Map from host name to the pool of its agentChannels
      */
-    private final ConcurrentHashMap<UscDevice, UscChannelImpl> connections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UscDevice, UscConnectionPool> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Map from device and channel type to the connect attempt in flight, which
+     * all callers for the same device share
+     */
+    private final ConcurrentHashMap<Map.Entry<UscDevice, UscChannel.ChannelType>, SettableFuture<UscChannelImpl>> pendingConnections =
+            new ConcurrentHashMap<>();
+
+    private final int poolSize;
+    private final UscConnectionPool.Selection selection;
 
     protected UscConnectionManager(UscPlugin plugin) {
         this.plugin = plugin;
         brokerService = UscServiceUtils.getService(UscRouteBrokerService.class);
+        UscConfigurationService configService = UscServiceUtils.getService(UscConfigurationService.class);
+        if (configService != null) {
+            poolSize = Math.max(1, configService.getConfigIntValue(UscConfigurationService.USC_AGENT_CONNECTIONS));
+            selection = UscConnectionPool.Selection.parse(configService
+                    .getConfigStringValue(UscConfigurationService.USC_AGENT_CONNECTION_SELECTION));
+        } else {
+            poolSize = 1;
+            selection = UscConnectionPool.Selection.LEAST_LOADED;
+        }
     }
 
+    /**
+     * Returns a connection to the agent of a device, connecting to the agent
+     * if there is none. Unlike {@link #getConnectionAsync}, this doesn't fill
+     * up the pool of the device, as it is used to look up connections rather
+     * than to open sessions.
+     * 
+     * @param device
+     *            the device
+     * @param type
+     *            the channel type
+     * @return the connection
+     * @throws Exception
+     *             if connecting to the agent failed
+     */
     public UscChannelImpl getConnection(UscDevice device, UscChannel.ChannelType type) throws Exception {
-        UscChannelImpl connection = connections.get(device);
-        log.trace("device is" + device + ",type is " + type + ",Connections is " + connections);
-        if (connection == null) {
-            /*
-             * Channel channel = null; try { channel =
-             * plugin.connectToAgent(device); }catch(Exception e) {
-             * log.warn(e.getMessage()); channel =
-             * plugin.connectToDeviceDirectly(device); }
-             * 
-             * return addConnection(device, channel, false, type);
-             */
-            return addConnection(device, plugin.connectToAgent(device), false, type);
-        } else {
-            return connection;
+        try {
+            final UscChannelImpl connection = select(device);
+            return connection != null ? connection : connect(device, type).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         }
     }
 
-    protected UscChannelImpl addConnection(final UscDevice device, final Channel channel, final boolean isCallHome,
+    /**
+     * Returns the connection to the agent of a device for a new session,
+     * connecting to the agent if there is none. At most one connect attempt
+     * per device is in flight; concurrent callers share its result.
+     * 
+     * With more than one TCP or TLS connection per device configured, the
+     * connection is chosen from the pool of the device, and the pool is
+     * filled up in the background while the existing connections are used.
+     * 
+     * @param device
+     *            the device, with the port of the device service if the
+     *            connections are chosen by hash
+     * @param type
+     *            the channel type
+     * @return the future connection
+     */
+    public ListenableFuture<UscChannelImpl> getConnectionAsync(final UscDevice device,
             final UscChannel.ChannelType type) {
-        // standard idiom for double-checked locking
-        UscChannelImpl connection = connections.get(device);
-        if (connection == null) {
-            final UscChannelImpl newConnection = new UscChannelImpl(plugin, device, channel, isCallHome, type);
-            connection = connections.putIfAbsent(device, newConnection);
-            if (connection == null) {
-                channel.closeFuture().addListener(new ChannelFutureListener() {
+        final UscChannelImpl connection = select(device);
+        log.trace("device is" + device + ",type is " + type + ",Connections is " + connections);
+        if (connection != null) {
+            if (canGrow(device, type)) {
+                final ListenableFuture<UscChannelImpl> growth = connect(device, type);
+                Futures.addCallback(growth, new FutureCallback<UscChannelImpl>() {
+                    @Override
+                    public void onSuccess(UscChannelImpl result) {
+                        log.trace("added connection to the pool of " + device);
+                    }
+
                     @Override
-                    public void operationComplete(ChannelFuture future) throws Exception {
-                        removeConnection(newConnection);
-                        log.trace("agentChannel for device " + device + " closed");
+                    public void onFailure(Throwable t) {
+                        log.debug("Failed to add a connection to the pool of " + device + ": " + t);
                     }
                 });
-                if (brokerService != null) {
-                    UscRemoteChannelIdentifier remoteChannel = new UscRemoteChannelIdentifier(newConnection.getDevice()
-                            .getInetAddress(), newConnection.getType());
-                    brokerService.broadcastMessage(new UscRemoteChannelEventMessage(remoteChannel,
-                            UscRemoteChannelEventMessage.ChannelEventType.CREATE));
+            }
+            return Futures.immediateFuture(connection);
+        }
+        return connect(device, type);
+    }
+
+    private UscChannelImpl select(UscDevice device) {
+        final UscConnectionPool pool = connections.get(device);
+        return pool == null ? null : pool.select(device.getPort());
+    }
+
+    private boolean canGrow(UscDevice device, UscChannel.ChannelType type) {
+        // datagram agents tell their clients apart by address only
+        if (poolSize <= 1 || (type != UscChannel.ChannelType.TCP && type != UscChannel.ChannelType.TLS)) {
+            return false;
+        }
+        final UscConnectionPool pool = connections.get(device);
+        return pool != null && pool.canGrow();
+    }
+
+    private ListenableFuture<UscChannelImpl> connect(final UscDevice device, final UscChannel.ChannelType type) {
+        final Map.Entry<UscDevice, UscChannel.ChannelType> key = new SimpleImmutableEntry<>(device, type);
+        final SettableFuture<UscChannelImpl> promise = SettableFuture.create();
+        final SettableFuture<UscChannelImpl> inFlight = pendingConnections.putIfAbsent(key, promise);
+        if (inFlight != null) {
+            // another caller is connecting to the device already
+            log.trace("wait for the connect attempt in flight to " + device);
+            return inFlight;
+        }
+        // the previous attempt may have completed since the lookup
+        final UscChannelImpl connection = select(device);
+        if (connection != null && !canGrow(device, type)) {
+            pendingConnections.remove(key, promise);
+            promise.set(connection);
+            return promise;
+        }
+        final ChannelFuture connectFuture;
+        try {
+            connectFuture = plugin.connectToAgentAsync(device);
+        } catch (Exception e) {
+            pendingConnections.remove(key, promise);
+            promise.setException(e);
+            return promise;
+        }
+        connectFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                // the connection is registered before the attempt is removed,
+                // so later callers find one or the other
+                if (future.isSuccess()) {
+                    final UscChannelImpl connection;
+                    try {
+                        connection = addConnection(device, future.channel(), false, type);
+                    } catch (RuntimeException e) {
+                        // later callers must not wait for this attempt
+                        pendingConnections.remove(key, promise);
+                        future.channel().close();
+                        promise.setException(e);
+                        return;
+                    }
+                    pendingConnections.remove(key, promise);
+                    promise.set(connection);
                 } else {
-                    log.warn("Broker service is null, can't send broadcast for adding channel message("
-                            + newConnection.getDevice().getInetAddress() + ")!");
+                    pendingConnections.remove(key, promise);
+                    promise.setException(future.cause());
                 }
-                plugin.sendEvent(new UscChannelCreateEvent(newConnection));
-                connection = newConnection;
+            }
+        });
+        return promise;
+    }
+
+    protected UscChannelImpl addConnection(final UscDevice device, final Channel channel, final boolean isCallHome,
+            final UscChannel.ChannelType type) {
+        final UscChannelImpl[] added = new UscChannelImpl[1];
+        final boolean[] first = new boolean[1];
+        // the pool of the device is only changed under the lock of its entry
+        final UscConnectionPool pool = connections.compute(device, (key, current) -> {
+            final UscConnectionPool result = current != null ? current : new UscConnectionPool(poolSize, selection);
+            if (result.isFull()) {
+                // the new channel must not be bound to a connection
+                return result;
+            }
+            final UscChannelImpl newConnection = new UscChannelImpl(plugin, device, channel, isCallHome, type,
+                    result.getSessionIds());
+            if (result.add(newConnection)) {
+                added[0] = newConnection;
+                first[0] = current == null;
+            }
+            return result;
+        });
+        final UscChannelImpl newConnection = added[0];
+        if (newConnection == null) {
+            // the pool is full; close the new channel
+            channel.close();
+            return pool.select(device.getPort());
+        }
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                removeConnection(newConnection);
+                log.trace("agentChannel for device " + device + " closed");
+            }
+        });
+        if (first[0]) {
+            // the other cluster members only need to know the device is
+            // reachable from here
+            if (brokerService != null) {
+                UscRemoteChannelIdentifier remoteChannel = new UscRemoteChannelIdentifier(newConnection.getDevice()
+                        .getInetAddress(), newConnection.getType());
+                brokerService.broadcastMessage(new UscRemoteChannelEventMessage(remoteChannel,
+                        UscRemoteChannelEventMessage.ChannelEventType.CREATE));
             } else {
-                // previous entry exists; put failed; close the new channel
-                channel.close();
+                log.warn("Broker service is null, can't send broadcast for adding channel message("
+                        + newConnection.getDevice().getInetAddress() + ")!");
             }
         }
-        return connection;
+        plugin.sendEvent(new UscChannelCreateEvent(newConnection));
+        // a call home channel is registered before its pipeline is
+        // initialized, so the HELLO is sent from a later event loop
+        // task
+        channel.eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+                newConnection.sendHelloRequest();
+            }
+        });
+        return newConnection;
     }
 
-    public boolean removeConnection(UscChannelImpl connection) {
+    public boolean removeConnection(final UscChannelImpl connection) {
         // don't re-close the connection here since we should only reach this
         // point after the connection has been closed
-        boolean isRemoved = connections.remove(connection.getDevice(), connection);
-        if (isRemoved) {
+        final boolean[] removed = new boolean[1];
+        connections.computeIfPresent(connection.getDevice(), (key, pool) -> {
+            removed[0] = pool.remove(connection);
+            // new sessions fail over to the remaining connections
+            return pool.isEmpty() ? null : pool;
+        });
+        if (removed[0]) {
             connection.removeAllSessions();
             plugin.sendEvent(new UscChannelCloseEvent(connection));
         }
-        return isRemoved;
+        return removed[0];
+    }
+
+    /**
+     * Returns the connections to a device
+     * 
+     * @param device
+     *            the device
+     * @return the connections, empty if there are none
+     */
+    public List<UscChannelImpl> getConnections(UscDevice device) {
+        final UscConnectionPool pool = connections.get(device);
+        return pool == null ? Collections.<UscChannelImpl> emptyList() : pool.getConnections();
     }
 
     @VisibleForTesting
     public int getConnectionCount() {
-        return connections.size();
+        return connections.values().stream().mapToInt(pool -> pool.getConnections().size()).sum();
     }
 
     @VisibleForTesting
     public int getSessionCount() {
-        return connections.values().stream().mapToInt(UscChannelImpl::getSessionCount).sum();
+        return connections.values().stream().mapToInt(UscConnectionPool::getSessionCount).sum();
     }
 
     @Override
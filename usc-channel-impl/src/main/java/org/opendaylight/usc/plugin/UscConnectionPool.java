@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.opendaylight.usc.plugin.model.UscChannelImpl;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * The agent channels to one device. New sessions are spread over the
+ * channels, so that one slow channel doesn't stall all sessions of the device
+ * and the throughput of a device isn't limited to one TCP connection. The
+ * channels share their session IDs, so a session ID identifies a session of
+ * the device like with a single channel.
+ *
+ * The pool is only changed by UscConnectionManager, which keeps it under the
+ * lock of its map entry.
+ */
+public class UscConnectionPool {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    /**
+     * How a channel is chosen for a new session
+     */
+    public enum Selection {
+        /**
+         * the channel with the fewest sessions
+         */
+        LEAST_LOADED,
+        /**
+         * a channel by rendezvous hash of the port of the device service and
+         * the ID of each channel, so the sessions of one service share a
+         * channel. A new channel takes over a part of the services, and only
+         * the services of a closed channel move to the remaining ones.
+         */
+        HASH;
+
+        /**
+         * Parses the configured selection
+         *
+         * @param value
+         *            "least-loaded" or "hash"; anything else selects the
+         *            least loaded channel
+         * @return selection
+         */
+        public static Selection parse(String value) {
+            return "hash".equalsIgnoreCase(value) ? HASH : LEAST_LOADED;
+        }
+    }
+
+    private final int maxSize;
+    private final Selection selection;
+    private final List<UscChannelImpl> connections = new CopyOnWriteArrayList<>();
+    private final UscSessionIdAllocator sessionIds = new UscSessionIdAllocator();
+
+    /**
+     * Constructs a new UscConnectionPool
+     *
+     * @param maxSize
+     *            the number of channels to open to the device
+     * @param selection
+     *            how to choose a channel for a new session
+     */
+    public UscConnectionPool(int maxSize, Selection selection) {
+        this.maxSize = Math.max(1, maxSize);
+        this.selection = selection;
+    }
+
+    /**
+     * Chooses the channel for a new session
+     *
+     * @param port
+     *            the port of the device service
+     * @return the channel, or null if the pool is empty
+     */
+    public UscChannelImpl select(int port) {
+        final Object[] snapshot = connections.toArray();
+        if (snapshot.length == 0) {
+            return null;
+        }
+        if (selection == Selection.HASH) {
+            return selectByHash(port, snapshot);
+        }
+        UscChannelImpl selected = null;
+        for (Object element : snapshot) {
+            final UscChannelImpl connection = (UscChannelImpl) element;
+            if (selected == null || connection.getSessionCount() < selected.getSessionCount()) {
+                selected = connection;
+            }
+        }
+        return selected;
+    }
+
+    private static UscChannelImpl selectByHash(int port, Object[] snapshot) {
+        // the weights don't depend on the position of a channel in the list,
+        // which changes when an earlier channel is removed
+        UscChannelImpl selected = null;
+        long selectedWeight = 0;
+        for (Object element : snapshot) {
+            final UscChannelImpl connection = (UscChannelImpl) element;
+            final long weight = HASH.newHasher().putInt(port)
+                    .putString(connection.getChannel().id().asLongText(), StandardCharsets.US_ASCII).hash().asLong();
+            if (selected == null || weight > selectedWeight) {
+                selected = connection;
+                selectedWeight = weight;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Adds a channel unless the pool is full
+     *
+     * @param connection
+     *            the channel
+     * @return true if added
+     */
+    public boolean add(UscChannelImpl connection) {
+        if (isFull()) {
+            return false;
+        }
+        return connections.add(connection);
+    }
+
+    /**
+     * Removes a channel
+     *
+     * @param connection
+     *            the channel
+     * @return true if removed
+     */
+    public boolean remove(UscChannelImpl connection) {
+        return connections.remove(connection);
+    }
+
+    /**
+     * Returns whether the pool has as many channels as configured
+     *
+     * @return true if no channel should be added
+     */
+    public boolean isFull() {
+        return connections.size() >= maxSize;
+    }
+
+    /**
+     * Returns whether the pool has no channel
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return connections.isEmpty();
+    }
+
+    /**
+     * Returns whether the pool may open more channels itself, which it can't
+     * to an agent calling home
+     *
+     * @return true if more channels should be opened
+     */
+    public boolean canGrow() {
+        if (isFull()) {
+            return false;
+        }
+        for (UscChannelImpl connection : connections) {
+            if (connection.isCallHome()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the channels
+     *
+     * @return the channels in the order they were added
+     */
+    public List<UscChannelImpl> getConnections() {
+        return connections;
+    }
+
+    /**
+     * Returns the session IDs shared by the channels
+     *
+     * @return session ID allocator
+     */
+    public UscSessionIdAllocator getSessionIds() {
+        return sessionIds;
+    }
+
+    /**
+     * Returns the number of sessions on all channels
+     *
+     * @return session count
+     */
+    public int getSessionCount() {
+        return connections.stream().mapToInt(UscChannelImpl::getSessionCount).sum();
+    }
+
+    @Override
+    public String toString() {
+        return connections.toString();
+    }
+
+}
@@ -26,6 +26,7 @@ import org.opendaylight.usc.plugin.exception.UscConnectionException;
 import org.opendaylight.usc.plugin.exception.UscSessionException;
 import org.opendaylight.usc.plugin.model.UscChannelImpl;
 import org.opendaylight.usc.plugin.model.UscSessionImpl;
+import org.opendaylight.usc.protocol.UscCapabilities;
 import org.opendaylight.usc.protocol.UscControl;
 import org.opendaylight.usc.protocol.UscData;
 import org.opendaylight.usc.protocol.UscError;
@@ -70,6 +71,15 @@ public class UscDemultiplexer extends SimpleChannelInboundHandler<UscFrame> {
             	LOG.trace("channelRead0: promiseMap = " + promiseMap);
         		return;
         	}
+        	if (controlMsg.getControlCode() == UscControl.ControlCode.HELLO_REQUEST
+        			|| controlMsg.getControlCode() == UscControl.ControlCode.HELLO_RESPONSE) {
+        		handleHello(ctx.channel(), controlMsg);
+        		return;
+        	}
+        	if (controlMsg.getControlCode() == UscControl.ControlCode.WINDOW_UPDATE) {
+        		handleWindowUpdate(ctx.channel(), controlMsg);
+        		return;
+        	}
         }
     	
         final UscHeader header = frame.getHeader();
@@ -77,6 +87,16 @@ public class UscDemultiplexer extends SimpleChannelInboundHandler<UscFrame> {
         final UscChannelImpl connection = ctx.channel().attr(UscPlugin.CHANNEL).get();
 
         final UscSessionImpl session = connection.getSession(sessionId);
+        if (session == null && frame instanceof UscControl) {
+            // a direct session is removed before the agent confirms its
+            // termination
+            LOG.trace("UscDemultiplexer ignores " + frame + " for unknown session");
+            return;
+        }
+        if (session instanceof UscDirectSession) {
+            handleDirectSession(ctx.channel(), (UscDirectSession) session, frame);
+            return;
+        }
         final LocalChannel serverChannel = session.getServerChannel();
         if (frame instanceof UscError) {
             // propagate exception to the client channel
@@ -93,7 +113,11 @@ public class UscDemultiplexer extends SimpleChannelInboundHandler<UscFrame> {
 
                 plugin.sendEvent(new UscSessionTransactionEvent(session, payload.readableBytes(), 0));
 
-                serverChannel.writeAndFlush(payload);
+                // the frame is released when this method returns, so the
+                // write keeps its own reference to the payload; the credits
+                // are returned by the UscSessionCreditHandler of the client
+                // channel once the client has read the data
+                serverChannel.writeAndFlush(payload.retain());
             } else {
                 UscChannelException ex = new UscChannelException("write unknown session " + sessionId + "; discard");
                 plugin.sendEvent(new UscChannelErrorEvent(session.getChannel(), ex));
@@ -129,6 +153,77 @@ public class UscDemultiplexer extends SimpleChannelInboundHandler<UscFrame> {
         }
     }
 
+	private void handleDirectSession(Channel channel, UscDirectSession session, UscFrame frame) {
+		if (frame instanceof UscError) {
+			UscSessionException ex = new UscSessionException(((UscError) frame).getErrorCode());
+			session.error(ex);
+			plugin.sendEvent(new UscSessionErrorEvent(session, ex));
+			session.getChannel().removeSession(session.getSessionId());
+		} else if (frame instanceof UscData) {
+			final ByteBuf payload = frame.getPayload();
+			plugin.sendEvent(new UscSessionTransactionEvent(session, payload.readableBytes(), 0));
+			// the listener reads the payload before the frame is released
+			session.receive(payload);
+		} else if (frame instanceof UscControl) {
+			if (((UscControl) frame).getControlCode() == UscControl.ControlCode.TERMINATION_REQUEST) {
+				LOG.trace("UscDemultiplexer received control message TERMINATION_REQUEST for " + session);
+				channel.writeAndFlush(new UscControl(session.getPort(), session.getSessionId(),
+						UscControl.ControlCode.TERMINATION_RESPONSE.getCode()));
+				session.getChannel().removeSession(session.getSessionId());
+			}
+		}
+	}
+
+	private void handleHello(Channel channel, UscControl controlMsg) {
+		final UscChannelImpl connection = channel.attr(UscPlugin.CHANNEL).get();
+		final UscCapabilities remote = controlMsg.getCapabilities();
+		if (connection == null || remote == null) {
+			LOG.warn("UscDemultiplexer ignores " + controlMsg + " on unregistered channel " + channel);
+			return;
+		}
+		final UscCapabilities local = UscPlugin.getLocalCapabilities(channel);
+		if (controlMsg.getControlCode() == UscControl.ControlCode.HELLO_REQUEST) {
+			channel.writeAndFlush(new UscControl(0, 0, UscControl.ControlCode.HELLO_RESPONSE.getCode(), local));
+		}
+		connection.setCapabilities(local.negotiate(remote));
+		LOG.trace("UscDemultiplexer negotiated " + connection.getCapabilities() + " with " + connection.getDevice());
+	}
+
+	private void handleWindowUpdate(Channel channel, UscControl controlMsg) {
+		final UscChannelImpl connection = channel.attr(UscPlugin.CHANNEL).get();
+		final UscSessionImpl session = connection == null ? null : connection.getSession(controlMsg.getHeader()
+				.getSessionId());
+		if (session == null) {
+			// the session has been closed meanwhile
+			LOG.trace("UscDemultiplexer ignores " + controlMsg + " for unknown session");
+			return;
+		}
+		session.getWindow().replenish(controlMsg.getWindowIncrement());
+		if (session instanceof UscDirectSession) {
+			((UscDirectSession) session).writabilityChanged();
+		} else {
+			session.getWindow().update(session.getServerChannel(), channel);
+		}
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		final UscChannelImpl connection = ctx.channel().attr(UscPlugin.CHANNEL).get();
+		if (connection != null) {
+			LOG.trace("UscDemultiplexer channelWritabilityChanged: " + ctx.channel().isWritable());
+			// stop reading from all sessions while the agent channel is
+			// backed up
+			for (UscSessionImpl session : connection.getAllSessions()) {
+				if (session.getServerChannel() != null) {
+					session.getWindow().update(session.getServerChannel(), ctx.channel());
+				} else if (session instanceof UscDirectSession) {
+					((UscDirectSession) session).writabilityChanged();
+				}
+			}
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+
 	@Override
 	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
 		LOG.trace("UscDemultiplexer channelInactive()");
@@ -142,7 +237,11 @@ public class UscDemultiplexer extends SimpleChannelInboundHandler<UscFrame> {
 	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
 			throws Exception {
 		SocketAddress remoteAddress = ctx.channel().remoteAddress();
-    	promiseMap.get(remoteAddress).set(cause);
+		// a call home or UDP server channel has no pending request
+		final SettableFuture<Throwable> promise = promiseMap.get(remoteAddress);
+		if (promise != null) {
+			promise.set(cause);
+		}
     	LOG.trace("exceptionCaught: promiseMap = " + promiseMap);
 		
 		if (cause instanceof UscChannelException) {
@@ -156,6 +255,8 @@ public class UscDemultiplexer extends SimpleChannelInboundHandler<UscFrame> {
 					LOG.trace("UscDemultiplexer exceptionCaught() and write to the server channel.");
 
 					serverChannel.writeAndFlush(cause);
+				} else if (session instanceof UscDirectSession) {
+					((UscDirectSession) session).error(cause);
 				}
 			}
 		}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.opendaylight.usc.plugin.model.UscChannelImpl;
+import org.opendaylight.usc.plugin.model.UscSessionImpl;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A session for a consumer in the same VM, which writes to and reads from the
+ * agent channel of its UscChannelImpl directly, without the pair of local
+ * channels of a session opened by {@link UscPlugin#connect}. Sessions are
+ * opened by {@link UscPlugin#openSession}.
+ *
+ * The write methods may be called from any thread; frames are written to the
+ * agent channel in the order of the calls.
+ */
+public class UscDirectSession extends UscSessionImpl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UscDirectSession.class);
+
+    private final UscPlugin plugin;
+    private final UscSessionListener listener;
+    private final AtomicBoolean open = new AtomicBoolean(true);
+    private volatile boolean manualCredits;
+
+    /**
+     * Constructs a new UscDirectSession
+     *
+     * @param plugin
+     * @param connection
+     * @param sessionId
+     * @param port
+     * @param listener
+     */
+    public UscDirectSession(UscPlugin plugin, UscChannelImpl connection, int sessionId, int port,
+            UscSessionListener listener) {
+        super(connection, sessionId, port, null);
+        this.plugin = plugin;
+        this.listener = listener;
+    }
+
+    /**
+     * Writes data to the device service without flushing it
+     *
+     * @param data
+     *            the data, which is released
+     * @return the future of the write
+     */
+    public ChannelFuture write(ByteBuf data) {
+        if (!isOpen()) {
+            data.release();
+            return getAgentChannel().newFailedFuture(new ClosedChannelException());
+        }
+        return plugin.writeSession(this, data);
+    }
+
+    /**
+     * Flushes the data written to the agent channel
+     */
+    public void flush() {
+        getAgentChannel().flush();
+    }
+
+    /**
+     * Writes and flushes data to the device service
+     *
+     * @param data
+     *            the data, which is released
+     * @return the future of the write
+     */
+    public ChannelFuture writeAndFlush(ByteBuf data) {
+        final ChannelFuture future = write(data);
+        flush();
+        return future;
+    }
+
+    /**
+     * Returns whether data should be written now: the agent has credits left
+     * for this session and the agent channel is not backed up. Writes are
+     * still accepted otherwise, so the listener is told when this changes.
+     *
+     * @return true if writable
+     */
+    public boolean isWritable() {
+        if (!isOpen() || !getAgentChannel().isWritable()) {
+            return false;
+        }
+        return !getChannel().getCapabilities().hasFeature(Feature.FLOW_CONTROL) || getWindow().getSendCredits() > 0;
+    }
+
+    /**
+     * Returns whether the session is open
+     *
+     * @return true until the session is closed
+     */
+    public boolean isOpen() {
+        return open.get();
+    }
+
+    /**
+     * Closes the session and asks the agent to close its connection to the
+     * device service
+     */
+    public void close() {
+        if (isOpen()) {
+            getAgentChannel().writeAndFlush(
+                    new UscControl(getPort(), getSessionId(), UscControl.ControlCode.TERMINATION_REQUEST.getCode()));
+            getChannel().removeSession(getSessionId());
+        }
+    }
+
+    /**
+     * Makes the consumer return the flow control credits for received data by
+     * calling {@link #consumed(int)} once it has processed the data, instead
+     * of when {@link UscSessionListener#onData} returns, so that the agent
+     * stops sending while the consumer lags behind.
+     *
+     * @param manualCredits
+     *            true to return credits by calling consumed
+     */
+    public void setManualCredits(boolean manualCredits) {
+        this.manualCredits = manualCredits;
+    }
+
+    /**
+     * Returns the credits for received data which the consumer has processed
+     *
+     * @param bytes
+     *            the number of payload bytes processed
+     */
+    public void consumed(int bytes) {
+        if (getChannel().getCapabilities().hasFeature(Feature.FLOW_CONTROL)) {
+            final int increment = getWindow().received(bytes);
+            if (increment > 0) {
+                getAgentChannel().writeAndFlush(UscControl.windowUpdate(getPort(), getSessionId(), increment));
+            }
+        }
+    }
+
+    /**
+     * Returns the agent channel of the session, whose event loop runs the
+     * listener
+     *
+     * @return agent channel
+     */
+    public Channel getAgentChannel() {
+        return getChannel().getChannel();
+    }
+
+    /**
+     * Hands received data to the listener and returns the credits for it,
+     * unless the consumer returns them itself
+     */
+    void receive(ByteBuf data) {
+        final int bytesIn = data.readableBytes();
+        try {
+            listener.onData(this, data);
+        } catch (RuntimeException e) {
+            LOG.warn("UscSessionListener failed on data of " + this, e);
+        }
+        if (!manualCredits) {
+            consumed(bytesIn);
+        }
+    }
+
+    void error(Throwable cause) {
+        listener.onError(this, cause);
+    }
+
+    void writabilityChanged() {
+        listener.onWritabilityChanged(this);
+    }
+
+    /**
+     * Called once the session has been removed from its UscChannelImpl
+     */
+    void removed() {
+        if (open.compareAndSet(true, false)) {
+            listener.onClose(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UscDirectSession [device=" + getChannel().getDevice() + ", port=" + getPort() + ", sessionId="
+                + getSessionId() + "]";
+    }
+
+}
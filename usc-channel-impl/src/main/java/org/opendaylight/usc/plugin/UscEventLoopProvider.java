@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.opendaylight.usc.manager.api.UscConfigurationService;
+import org.opendaylight.usc.util.UscServiceUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class owns the event loops shared by all plugins, agents and local
+ * client bootstraps in the process, instead of each of them starting its own
+ * threads. The groups are started by the first {@link #acquire()} and shut
+ * down when the last user calls {@link #release()}.
+ *
+ * Agent channels and device channels run on separate groups, so that an agent
+ * channel handler may wait for a device channel to connect.
+ *
+ * The network groups use the native epoll transport of Netty if it is
+ * configured and available, and NIO otherwise; bootstraps take their channel
+ * classes from here to match.
+ */
+public final class UscEventLoopProvider {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UscEventLoopProvider.class);
+
+    private static UscEventLoopProvider instance;
+
+    private final EventLoopGroup agentGroup;
+    private final EventLoopGroup deviceGroup;
+    private final EventLoopGroup localGroup;
+    private final int agentThreads;
+    private final int threads;
+    private final boolean nativeTransport;
+    private final int notSentLowWaterMark;
+    private int references;
+
+    private UscEventLoopProvider(int agentThreads, int deviceThreads, int localThreads, boolean nativeTransport,
+            int notSentLowWaterMark) {
+        this.agentThreads = agentThreads;
+        this.threads = agentThreads + deviceThreads + localThreads;
+        this.nativeTransport = nativeTransport;
+        this.notSentLowWaterMark = notSentLowWaterMark;
+        agentGroup = newEventLoopGroup(agentThreads, "usc-agent");
+        deviceGroup = newEventLoopGroup(deviceThreads, "usc-device");
+        localGroup = new LocalEventLoopGroup(localThreads, new DefaultThreadFactory("usc-local"));
+        LOG.info("UscEventLoopProvider started " + getThreadCount() + " event loops using "
+                + (nativeTransport ? "epoll" : "NIO"));
+    }
+
+    private EventLoopGroup newEventLoopGroup(int threads, String name) {
+        if (nativeTransport) {
+            return UscNativeTransport.newEventLoopGroup(threads, new DefaultThreadFactory(name));
+        }
+        return new NioEventLoopGroup(threads, new DefaultThreadFactory(name));
+    }
+
+    /**
+     * Returns the shared event loops, starting them if this is the first user.
+     * Every call must be paired with a call to {@link #release()}.
+     *
+     * @return the event loop provider
+     */
+    public static synchronized UscEventLoopProvider acquire() {
+        if (instance == null) {
+            UscConfigurationService configService = UscServiceUtils.getService(UscConfigurationService.class);
+            final boolean nativeTransport = configService != null
+                    && configService.isConfigAsTure(UscConfigurationService.USC_NATIVE_TRANSPORT)
+                    && UscNativeTransport.isAvailable();
+            instance = new UscEventLoopProvider(
+                    getThreads(configService, UscConfigurationService.USC_EVENT_LOOP_AGENT_THREADS),
+                    getThreads(configService, UscConfigurationService.USC_EVENT_LOOP_DEVICE_THREADS),
+                    getThreads(configService, UscConfigurationService.USC_EVENT_LOOP_LOCAL_THREADS),
+                    nativeTransport, configService != null ? configService
+                            .getConfigIntValue(UscConfigurationService.USC_TCP_NOTSENT_LOWAT) : 0);
+        }
+        instance.references++;
+        return instance;
+    }
+
+    private static int getThreads(UscConfigurationService configService, String key) {
+        final int threads = configService != null ? configService.getConfigIntValue(key) : 0;
+        // 0 uses one event loop per processor
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Releases the shared event loops, shutting them down if this was the
+     * last user.
+     */
+    public void release() {
+        synchronized (UscEventLoopProvider.class) {
+            if (references == 0) {
+                LOG.warn("UscEventLoopProvider released more often than acquired");
+                return;
+            }
+            if (--references > 0) {
+                return;
+            }
+            if (instance == this) {
+                instance = null;
+            }
+        }
+        agentGroup.shutdownGracefully();
+        deviceGroup.shutdownGracefully();
+        localGroup.shutdownGracefully();
+        LOG.info("UscEventLoopProvider shut down");
+    }
+
+    /**
+     * Returns the group of the channels between plugins and agents, including
+     * the call home listeners and the channels accepted by agents
+     *
+     * @return the agent event loop group
+     */
+    public EventLoopGroup getAgentGroup() {
+        return agentGroup;
+    }
+
+    /**
+     * Returns the group of the channels to device services, whether opened by
+     * a plugin directly or by an agent
+     *
+     * @return the device event loop group
+     */
+    public EventLoopGroup getDeviceGroup() {
+        return deviceGroup;
+    }
+
+    /**
+     * Returns the group of the local channels between the clients and the
+     * plugins
+     *
+     * @return the local event loop group
+     */
+    public EventLoopGroup getLocalGroup() {
+        return localGroup;
+    }
+
+    /**
+     * Returns whether the network groups use the native epoll transport
+     *
+     * @return true for epoll, false for NIO
+     */
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    /**
+     * Returns the number of event loops of the agent group
+     *
+     * @return agent event loop count
+     */
+    public int getAgentThreadCount() {
+        return agentThreads;
+    }
+
+    /**
+     * Returns the class of the TCP channels for the agent and device groups
+     *
+     * @return the socket channel class
+     */
+    public Class<? extends SocketChannel> getSocketChannelClass() {
+        return nativeTransport ? UscNativeTransport.getSocketChannelClass() : NioSocketChannel.class;
+    }
+
+    /**
+     * Returns the class of the TCP listeners for the agent group
+     *
+     * @return the server socket channel class
+     */
+    public Class<? extends ServerSocketChannel> getServerSocketChannelClass() {
+        return nativeTransport ? UscNativeTransport.getServerSocketChannelClass() : NioServerSocketChannel.class;
+    }
+
+    /**
+     * Returns the class of the UDP channels for the agent and device groups
+     *
+     * @return the datagram channel class
+     */
+    public Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return nativeTransport ? UscNativeTransport.getDatagramChannelClass() : NioDatagramChannel.class;
+    }
+
+    /**
+     * Sets the options of the native transport on a bootstrap of TCP agent
+     * channels: with TCP_NOTSENT_LOWAT the kernel keeps less unsent data, so
+     * the channel turns unwritable earlier and the session scheduler decides
+     * the order of more frames.
+     *
+     * @param b
+     *            the bootstrap
+     */
+    public void setTcpAgentOptions(Bootstrap b) {
+        if (nativeTransport && notSentLowWaterMark > 0) {
+            UscNativeTransport.setNotSentLowWaterMark(b, notSentLowWaterMark);
+        }
+    }
+
+    /**
+     * Sets the options of the native transport on a TCP agent listener. With
+     * SO_REUSEPORT one listener can be bound per agent event loop, and the
+     * kernel spreads incoming connections between them. The accepted channels
+     * get the TCP_NOTSENT_LOWAT of {@link #setTcpAgentOptions(Bootstrap)}.
+     *
+     * @param b
+     *            the server bootstrap
+     * @return the number of listeners to bind to the port
+     */
+    public int setTcpListenerOptions(ServerBootstrap b) {
+        if (!nativeTransport) {
+            return 1;
+        }
+        UscNativeTransport.setReusePort(b);
+        if (notSentLowWaterMark > 0) {
+            UscNativeTransport.setNotSentLowWaterMark(b, notSentLowWaterMark);
+        }
+        return agentThreads;
+    }
+
+    /**
+     * Returns the number of event loops, each of which runs on its own thread
+     * once it has a channel
+     *
+     * @return event loop count
+     */
+    public int getThreadCount() {
+        return threads;
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue of each event loop
+     *
+     * @return queued tasks by event loop name
+     */
+    public Map<String, Integer> getPendingTasks() {
+        final Map<String, Integer> pendingTasks = new LinkedHashMap<>();
+        addPendingTasks(pendingTasks, "usc-agent", agentGroup);
+        addPendingTasks(pendingTasks, "usc-device", deviceGroup);
+        addPendingTasks(pendingTasks, "usc-local", localGroup);
+        return pendingTasks;
+    }
+
+    private static void addPendingTasks(Map<String, Integer> pendingTasks, String name, EventLoopGroup group) {
+        int index = 0;
+        for (EventExecutor executor : group) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                pendingTasks.put(name + "-" + index, ((SingleThreadEventExecutor) executor).pendingTasks());
+            }
+            index++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UscEventLoopProvider [threads=" + getThreadCount() + ", pendingTasks=" + getPendingTasks() + "]";
+    }
+
+}
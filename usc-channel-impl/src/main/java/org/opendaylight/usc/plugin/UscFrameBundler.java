@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.usc.protocol.UscBundle;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscFrame;
+import org.opendaylight.usc.protocol.UscHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class packs the UscFrame packets written to a datagram channel into
+ * UscBundle packets of at most one MTU, so that many small frames share one
+ * datagram. The pending bundle is written on flush, or after a short delay if
+ * nobody flushes. Frames are passed through unchanged until the peer has
+ * advertised the bundling capability.
+ */
+public class UscFrameBundler extends ChannelOutboundHandlerAdapter {
+
+    private static final Logger log = LoggerFactory.getLogger(UscFrameBundler.class);
+
+    /**
+     * Default size of a bundle in bytes, including its header.
+     */
+    public static final int DEFAULT_MTU = UscFrameEncoderUdp.DEFAULT_DATAGRAM_SIZE;
+
+    /**
+     * Default delay in milliseconds after which a bundle is written if it
+     * wasn't flushed.
+     */
+    public static final int DEFAULT_FLUSH_DELAY = 1;
+
+    private final int mtu;
+    private final long flushDelay;
+    private final List<UscFrame> frames = new ArrayList<>();
+    private final List<ChannelPromise> promises = new ArrayList<>();
+    private int bundleLength = UscHeader.HEADER_LENGTH;
+    private ScheduledFuture<?> flushTimer;
+
+    /**
+     * Constructs a new UscFrameBundler with the default MTU and flush delay
+     */
+    public UscFrameBundler() {
+        this(DEFAULT_MTU, DEFAULT_FLUSH_DELAY);
+    }
+
+    /**
+     * Constructs a new UscFrameBundler
+     *
+     * @param mtu
+     *            the largest bundle in bytes, including its header
+     * @param flushDelay
+     *            the delay in milliseconds after which an unflushed bundle is
+     *            written
+     */
+    public UscFrameBundler(int mtu, long flushDelay) {
+        this.mtu = mtu;
+        this.flushDelay = flushDelay;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof UscFrame) || !UscPlugin.getCapabilities(ctx.channel()).hasFeature(Feature.BUNDLING)) {
+            writeBundle(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+        final UscFrame frame = (UscFrame) msg;
+        if (UscHeader.HEADER_LENGTH + frame.length() > mtu) {
+            // too large to share a datagram; keep the order of frames
+            writeBundle(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+        if (bundleLength + frame.length() > mtu) {
+            writeBundle(ctx);
+        }
+        frames.add(frame);
+        promises.add(promise);
+        bundleLength += frame.length();
+        if (flushTimer == null) {
+            flushTimer = ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushTimer = null;
+                    writeBundle(ctx);
+                    ctx.flush();
+                }
+            }, flushDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        writeBundle(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        writeBundle(ctx);
+        ctx.flush();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        cancelFlushTimer();
+        final ClosedChannelException cause = new ClosedChannelException();
+        for (int i = 0; i < frames.size(); i++) {
+            ReferenceCountUtil.release(frames.get(i));
+            promises.get(i).tryFailure(cause);
+        }
+        frames.clear();
+        promises.clear();
+        bundleLength = UscHeader.HEADER_LENGTH;
+    }
+
+    private void cancelFlushTimer() {
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+            flushTimer = null;
+        }
+    }
+
+    private void writeBundle(ChannelHandlerContext ctx) {
+        cancelFlushTimer();
+        if (frames.isEmpty()) {
+            return;
+        }
+        if (frames.size() == 1) {
+            // a bundle of one frame would only add a header
+            ctx.write(frames.get(0), promises.get(0));
+        } else {
+            final UscBundle bundle = UscBundle.create(ctx.alloc(), frames,
+                    UscPlugin.getPeerVersion(ctx.channel()));
+            log.trace("UscFrameBundler packed " + frames.size() + " frames into " + bundle);
+            final List<ChannelPromise> bundled = new ArrayList<>(promises);
+            ctx.write(bundle).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    for (ChannelPromise promise : bundled) {
+                        if (future.isSuccess()) {
+                            promise.trySuccess();
+                        } else {
+                            promise.tryFailure(future.cause());
+                        }
+                    }
+                }
+            });
+        }
+        frames.clear();
+        promises.clear();
+        bundleLength = UscHeader.HEADER_LENGTH;
+    }
+
+}
@@ -19,18 +19,35 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class decodes the an raw TCP byte stream into UscFrame packets.
+ * This class decodes the an raw TCP byte stream into UscFrame packets. Version
+ * 1 and version 2 frames may be mixed on the same stream.
  */
 public class UscFrameDecoderTcp extends LengthFieldBasedFrameDecoder {
 
     private static final Logger log = LoggerFactory.getLogger(UscFrameDecoderTcp.class);
 
+    private final boolean zeroCopy;
+
     /**
-     * Constructs a new UscFrameDecoderTcp
+     * Constructs a new UscFrameDecoderTcp which copies the payload of each
+     * decoded frame
      */
     public UscFrameDecoderTcp() {
-        super(ByteOrder.BIG_ENDIAN, UscHeader.HEADER_LENGTH + Character.MAX_VALUE, UscHeader.PAYLOAD_LENGTH_OFFSET,
+        this(false);
+    }
+
+    /**
+     * Constructs a new UscFrameDecoderTcp
+     * 
+     * @param zeroCopy
+     *            if true, the payload of decoded DATA frames is a retained
+     *            slice of the inbound buffer instead of a copy
+     */
+    public UscFrameDecoderTcp(boolean zeroCopy) {
+        super(ByteOrder.BIG_ENDIAN, UscHeader.HEADER_LENGTH + UscHeader.MAX_PAYLOAD_LENGTH_V2,
+                UscHeader.PAYLOAD_LENGTH_OFFSET,
                 UscHeader.PAYLOAD_LENGTH_SIZE, 0, 0, false);
+        this.zeroCopy = zeroCopy;
     }
 
     @Override
@@ -43,13 +60,28 @@ public class UscFrameDecoderTcp extends LengthFieldBasedFrameDecoder {
             return null;
         }
 
-        return UscFrame.getFromByteBuf(buf);
+        // in zero copy mode the payload retains the cumulation buffer, which
+        // stays valid until the UscData is released
+        UscFrame frame = UscFrame.getFromByteBuf(buf, zeroCopy);
+        UscPlugin.updatePeerVersion(ctx.channel(), frame.getHeader().getUscVersion());
+        return frame;
+    }
+
+    @Override
+    protected long getUnadjustedFrameLength(ByteBuf buf, int offset, int length, ByteOrder order) {
+        long frameLength = super.getUnadjustedFrameLength(buf, offset, length, order);
+        int headerOffset = offset - UscHeader.PAYLOAD_LENGTH_OFFSET;
+        // version 2 carries bits [16, 24) of the length in the reserved byte
+        if ((buf.getUnsignedByte(headerOffset) & 0x0F) >= UscHeader.USC_VERSION_2) {
+            frameLength |= buf.getUnsignedByte(headerOffset + UscHeader.EXTENDED_LENGTH_OFFSET) << 16;
+        }
+        return frameLength;
     }
 
     @Override
     protected ByteBuf extractFrame(ChannelHandlerContext ctx, ByteBuf buffer, int index, int length) {
-        // we avoid making a copy here since UscFrameDecoder already makes a
-        // copy of the data
+        // we avoid making a copy here since UscFrame either makes a copy of
+        // the payload or retains its own slice of it
         return buffer.slice(index, length);
     }
 
@@ -15,12 +15,14 @@ import io.netty.handler.codec.MessageToMessageDecoder;
 
 import java.util.List;
 
+import org.opendaylight.usc.protocol.UscBundle;
 import org.opendaylight.usc.protocol.UscFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class decodes the raw UDP USC packets into UscFrame packets.
+ * This class decodes the raw UDP USC packets into UscFrame packets. A bundle
+ * packet is unpacked into the frames it carries.
  */
 @Sharable
 public class UscFrameDecoderUdp extends MessageToMessageDecoder<DatagramPacket> {
@@ -29,6 +31,29 @@ public class UscFrameDecoderUdp extends MessageToMessageDecoder<DatagramPacket>
 
     private static final UscFrameDecoderUdp INSTANCE = new UscFrameDecoderUdp();
 
+    private static final UscFrameDecoderUdp ZERO_COPY_INSTANCE = new UscFrameDecoderUdp(true);
+
+    private final boolean zeroCopy;
+
+    /**
+     * Constructs a new UscFrameDecoderUdp which copies the payload of each
+     * decoded frame
+     */
+    public UscFrameDecoderUdp() {
+        this(false);
+    }
+
+    /**
+     * Constructs a new UscFrameDecoderUdp
+     * 
+     * @param zeroCopy
+     *            if true, the payload of decoded DATA frames is a retained
+     *            slice of the datagram content instead of a copy
+     */
+    public UscFrameDecoderUdp(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
     /**
      * Returns the singleton instance.
      * 
@@ -38,6 +63,17 @@ public class UscFrameDecoderUdp extends MessageToMessageDecoder<DatagramPacket>
         return INSTANCE;
     }
 
+    /**
+     * Returns the singleton instance for the given decode mode.
+     * 
+     * @param zeroCopy
+     *            whether DATA payloads are retained slices instead of copies
+     * @return the singleton instance
+     */
+    public static UscFrameDecoderUdp getInstance(boolean zeroCopy) {
+        return zeroCopy ? ZERO_COPY_INSTANCE : INSTANCE;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext ctx, DatagramPacket msg, List<Object> out) throws Exception {
 
@@ -48,7 +84,19 @@ public class UscFrameDecoderUdp extends MessageToMessageDecoder<DatagramPacket>
             return;
         }
 
-        out.add(UscFrame.getFromByteBuf(buf));
+        // the datagram is released after decoding, so in zero copy mode the
+        // payload holds its own reference to the content
+        UscFrame frame = UscFrame.getFromByteBuf(buf, zeroCopy);
+        if (frame instanceof UscBundle) {
+            UscBundle bundle = (UscBundle) frame;
+            try {
+                out.addAll(bundle.getFrames(zeroCopy));
+            } finally {
+                bundle.release();
+            }
+        } else {
+            out.add(frame);
+        }
     }
 
 }
@@ -7,10 +7,11 @@
  */
 package org.opendaylight.usc.plugin;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
 
 import org.opendaylight.usc.protocol.UscFrame;
 
@@ -19,7 +20,7 @@ import org.opendaylight.usc.protocol.UscFrame;
  * for transmission.
  */
 @Sharable
-public class UscFrameEncoderTcp extends MessageToByteEncoder<UscFrame> {
+public class UscFrameEncoderTcp extends MessageToMessageEncoder<UscFrame> {
 
     private static UscFrameEncoderTcp INSTANCE = new UscFrameEncoderTcp();
 
@@ -33,10 +34,12 @@ public class UscFrameEncoderTcp extends MessageToByteEncoder<UscFrame> {
     }
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, UscFrame msg, ByteBuf out) throws Exception {
-        out.writeBytes(msg.getHeader().toByteBuffer());
-        out.writeBytes(msg.getPayload());
-        msg.getPayload().release();
+    protected void encode(ChannelHandlerContext ctx, UscFrame msg, List<Object> out) throws Exception {
+        // header and small payloads go into one pooled buffer, large payloads
+        // are passed through as a composite component;
+        // MessageToMessageEncoder releases msg, and a UscData releases its
+        // payload along with it
+        out.add(msg.encode(ctx.alloc(), UscPlugin.getPeerVersion(ctx.channel())));
     }
 
 }
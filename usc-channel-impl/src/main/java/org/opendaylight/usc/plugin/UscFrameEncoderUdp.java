@@ -8,7 +8,6 @@
 package org.opendaylight.usc.plugin;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.DatagramPacket;
@@ -29,6 +28,12 @@ public class UscFrameEncoderUdp extends MessageToMessageEncoder<UscFrame> {
 
     private static final Logger log = LoggerFactory.getLogger(UscFrameEncoderUdp.class);
 
+    /**
+     * Default size of a datagram in bytes, including the USC headers, which
+     * fits a typical Ethernet MTU together with the IP, UDP and DTLS headers.
+     */
+    public static final int DEFAULT_DATAGRAM_SIZE = 1400;
+
     private static UscFrameEncoderUdp INSTANCE = new UscFrameEncoderUdp();
 
     /**
@@ -42,10 +47,9 @@ public class UscFrameEncoderUdp extends MessageToMessageEncoder<UscFrame> {
 
     @Override
     protected void encode(ChannelHandlerContext ctx, UscFrame msg, List<Object> out) throws Exception {
-        ByteBuf buf = Unpooled.buffer();
-        buf.writeBytes(msg.getHeader().toByteBuffer());
-        buf.writeBytes(msg.getPayload());
-        msg.getPayload().release();
+        ByteBuf buf = msg.encode(ctx.alloc(), UscPlugin.getPeerVersion(ctx.channel()));
+        // MessageToMessageEncoder releases msg, and a UscData releases its
+        // payload along with it
         log.trace("Encode to " + ctx.channel().remoteAddress());
         DatagramPacket packet = new DatagramPacket(buf, (InetSocketAddress) ctx.channel().remoteAddress());
         out.add(packet);
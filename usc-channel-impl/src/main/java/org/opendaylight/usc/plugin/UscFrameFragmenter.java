@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscData;
+import org.opendaylight.usc.protocol.UscFragment;
+import org.opendaylight.usc.protocol.UscHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class splits the UscData packets written to a datagram channel which
+ * don't fit the path MTU into UscFragment packets, and reassembles received
+ * UscFragment packets into UscData packets. Payloads are only fragmented once
+ * the peer has advertised the fragmentation capability.
+ *
+ * Partially received payloads are buffered up to a limit on the total number
+ * of bytes, evicting the oldest payload first, and dropped if they aren't
+ * complete within a timeout. A payload is only complete once its fragments
+ * cover every byte of it; a fragment overlapping the received ones with other
+ * bytes belongs to a newer payload reusing the message ID, which replaces the
+ * stale one.
+ */
+public class UscFrameFragmenter extends ChannelDuplexHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(UscFrameFragmenter.class);
+
+    /**
+     * Default size of a fragment in bytes, including its headers.
+     */
+    public static final int DEFAULT_MTU = UscFrameEncoderUdp.DEFAULT_DATAGRAM_SIZE;
+
+    /**
+     * Default limit of the bytes buffered for reassembly.
+     */
+    public static final int DEFAULT_REASSEMBLY_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Default time in milliseconds within which all fragments of a payload
+     * must be received.
+     */
+    public static final int DEFAULT_REASSEMBLY_TIMEOUT = 5000;
+
+    private final int mtu;
+    private final int reassemblyBufferSize;
+    private final long reassemblyTimeout;
+
+    private static final int NEW = 0;
+    private static final int DUPLICATE = 1;
+    private static final int CONFLICT = 2;
+
+    private int nextMessageId;
+
+    /**
+     * Payloads being reassembled in order of their first fragment
+     */
+    private final LinkedHashMap<Long, Reassembly> reassemblies = new LinkedHashMap<>();
+    private int bufferedBytes;
+
+    private class Reassembly implements Runnable {
+        private final long key;
+        private final int port;
+        private final int sessionId;
+        private final ByteBuf payload;
+        /**
+         * The received fragments by offset, mapped to their end, which never
+         * overlap
+         */
+        private final TreeMap<Integer, Integer> ranges = new TreeMap<>();
+        private final ScheduledFuture<?> timer;
+        private int receivedBytes;
+
+        Reassembly(ChannelHandlerContext ctx, long key, UscFragment fragment) {
+            this.key = key;
+            this.port = fragment.getHeader().getApplicationPort();
+            this.sessionId = fragment.getHeader().getSessionId();
+            this.payload = ctx.alloc().buffer(fragment.getTotalLength(), fragment.getTotalLength());
+            this.timer = ctx.executor().schedule(this, reassemblyTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Checks a fragment against the fragments received before
+         *
+         * @return {@link #NEW} if it covers none of the received bytes,
+         *         {@link #DUPLICATE} if it repeats a received fragment, else
+         *         {@link #CONFLICT}
+         */
+        int check(int offset, ByteBuf data) {
+            final int end = offset + data.readableBytes();
+            final Map.Entry<Integer, Integer> before = ranges.floorEntry(offset);
+            if (before != null && before.getValue() > offset) {
+                return before.getKey() == offset && before.getValue() == end
+                        && payload.slice(offset, data.readableBytes()).equals(data) ? DUPLICATE : CONFLICT;
+            }
+            final Integer after = ranges.higherKey(offset);
+            return after != null && after < end ? CONFLICT : NEW;
+        }
+
+        @Override
+        public void run() {
+            log.warn("UscFrameFragmenter dropped " + receivedBytes + "/" + payload.capacity()
+                    + " bytes of an incomplete payload for session " + sessionId);
+            remove(this);
+        }
+    }
+
+    /**
+     * Constructs a new UscFrameFragmenter with the default settings
+     */
+    public UscFrameFragmenter() {
+        this(DEFAULT_MTU, DEFAULT_REASSEMBLY_BUFFER_SIZE, DEFAULT_REASSEMBLY_TIMEOUT);
+    }
+
+    /**
+     * Constructs a new UscFrameFragmenter
+     *
+     * @param mtu
+     *            the largest fragment in bytes, including its headers
+     * @param reassemblyBufferSize
+     *            the limit of the bytes buffered for reassembly
+     * @param reassemblyTimeout
+     *            the time in milliseconds within which all fragments of a
+     *            payload must be received
+     */
+    public UscFrameFragmenter(int mtu, int reassemblyBufferSize, long reassemblyTimeout) {
+        this.mtu = mtu;
+        this.reassemblyBufferSize = reassemblyBufferSize;
+        this.reassemblyTimeout = reassemblyTimeout;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof UscData) || ((UscData) msg).length() <= mtu
+                || !UscPlugin.getCapabilities(ctx.channel()).hasFeature(Feature.FRAGMENTATION)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        final UscData data = (UscData) msg;
+        final int maxDataSize = mtu - UscHeader.HEADER_LENGTH - UscFragment.FRAGMENT_HEADER_LENGTH;
+        final List<UscFragment> fragments;
+        try {
+            fragments = UscFragment.fragment(data, nextMessageId, maxDataSize);
+        } finally {
+            data.release();
+        }
+        nextMessageId = (nextMessageId + 1) & 0xFFFF;
+
+        // the promise fails with the first fragment that fails and succeeds
+        // with the last one, since writes complete in order
+        for (int i = 0; i < fragments.size(); i++) {
+            final boolean last = i == fragments.size() - 1;
+            ctx.write(fragments.get(i)).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        promise.tryFailure(future.cause());
+                    } else if (last) {
+                        promise.trySuccess();
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof UscFragment)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        final UscFragment fragment = (UscFragment) msg;
+        try {
+            final UscData data = reassemble(ctx, fragment);
+            if (data != null) {
+                ctx.fireChannelRead(data);
+            }
+        } finally {
+            fragment.release();
+        }
+    }
+
+    private UscData reassemble(ChannelHandlerContext ctx, UscFragment fragment) {
+        final UscHeader header = fragment.getHeader();
+        final int totalLength = fragment.getTotalLength();
+        final ByteBuf data = fragment.getPayload();
+        final int offset = fragment.getOffset();
+        if (totalLength <= 0 || totalLength > reassemblyBufferSize || offset < 0 || !data.isReadable()
+                || offset + data.readableBytes() > totalLength) {
+            log.warn("UscFrameFragmenter dropped invalid " + fragment);
+            return null;
+        }
+
+        final long key = ((long) header.getApplicationPort() << 32) | ((long) header.getSessionId() << 16)
+                | fragment.getMessageId();
+        Reassembly reassembly = reassemblies.get(key);
+        if (reassembly != null) {
+            final int check = reassembly.check(offset, data);
+            if (check == DUPLICATE) {
+                // duplicated datagram
+                return null;
+            }
+            if (check == CONFLICT || reassembly.payload.capacity() != totalLength) {
+                // the message ID has wrapped around while the previous
+                // payload was incomplete
+                log.warn("UscFrameFragmenter dropped " + reassembly.receivedBytes + "/"
+                        + reassembly.payload.capacity() + " bytes of a stale payload for session "
+                        + reassembly.sessionId);
+                remove(reassembly);
+                reassembly = null;
+            }
+        }
+        if (reassembly == null) {
+            while (bufferedBytes + totalLength > reassemblyBufferSize) {
+                final Reassembly oldest = reassemblies.values().iterator().next();
+                log.warn("UscFrameFragmenter evicted the incomplete payload of session " + oldest.sessionId);
+                remove(oldest);
+            }
+            reassembly = new Reassembly(ctx, key, fragment);
+            reassemblies.put(key, reassembly);
+            bufferedBytes += totalLength;
+        }
+
+        reassembly.ranges.put(offset, offset + data.readableBytes());
+        reassembly.payload.setBytes(offset, data, data.readerIndex(), data.readableBytes());
+        // the fragments don't overlap, so they cover the whole payload once
+        // they add up to its length
+        reassembly.receivedBytes += data.readableBytes();
+        if (reassembly.receivedBytes < totalLength) {
+            return null;
+        }
+
+        reassembly.timer.cancel(false);
+        reassemblies.remove(key);
+        bufferedBytes -= totalLength;
+        reassembly.payload.writerIndex(totalLength);
+        return new UscData(reassembly.port, reassembly.sessionId, reassembly.payload);
+    }
+
+    private void remove(Reassembly reassembly) {
+        if (reassemblies.remove(reassembly.key) == reassembly) {
+            reassembly.timer.cancel(false);
+            bufferedBytes -= reassembly.payload.capacity();
+            reassembly.payload.release();
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        for (Iterator<Reassembly> i = reassemblies.values().iterator(); i.hasNext();) {
+            final Reassembly reassembly = i.next();
+            i.remove();
+            reassembly.timer.cancel(false);
+            reassembly.payload.release();
+        }
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Returns the number of bytes currently buffered for reassembly
+     *
+     * @return buffered bytes
+     */
+    public int getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+}
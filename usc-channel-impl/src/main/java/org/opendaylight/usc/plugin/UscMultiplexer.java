@@ -9,6 +9,7 @@ package org.opendaylight.usc.plugin;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -19,6 +20,7 @@ import java.net.InetSocketAddress;
 import org.opendaylight.usc.manager.monitor.evt.UscSessionTransactionEvent;
 import org.opendaylight.usc.plugin.model.UscChannel;
 import org.opendaylight.usc.plugin.model.UscSessionImpl;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
 import org.opendaylight.usc.protocol.UscData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +32,7 @@ import org.slf4j.LoggerFactory;
 public class UscMultiplexer extends ChannelInboundHandlerAdapter {
     private static final Logger LOG = LoggerFactory.getLogger(UscMultiplexer.class);
     public static final int MAX_PAYLOAD_SIZE = 64512;// 63K
+    public static final int MAX_PAYLOAD_SIZE_V2 = 4 * 1024 * 1024;// 4M
     private final UscPlugin plugin;
 
     /**
@@ -57,28 +60,51 @@ public class UscMultiplexer extends ChannelInboundHandlerAdapter {
                 outboundChannel.write(packet);
             } else
                 outboundChannel.write(msg);
+            if (!outboundChannel.isWritable()) {
+                // Demultiplexer resumes reading once the device channel drains
+                ch.config().setAutoRead(false);
+                if (outboundChannel.isWritable()) {
+                    ch.config().setAutoRead(true);
+                }
+            }
         } else {
             UscSessionImpl session = ch.attr(UscPlugin.SESSION).get().get();
             outboundChannel = session.getChannel().getChannel();
 
-            UscData reply = null;
-            ByteBuf subPayload = null;
-            int length = payload.readableBytes();
-            int bytesOut = length;
-            int index = 0;
-            int realLength = 0;
-            while (length > 0) {
-                realLength = (length > MAX_PAYLOAD_SIZE) ? MAX_PAYLOAD_SIZE : length;
-                subPayload = payload.copy(index, realLength);
-                index += realLength;
-                length -= realLength;
+            // segments are flushed together in channelReadComplete
+            write(session, payload);
+            // stops reading from the session until the agent returns credits
+            // and the agent channel drains
+            session.getWindow().update(ch, outboundChannel);
+        }
+    }
 
-                reply = new UscData(session.getPort(), session.getSessionId(), subPayload);
-                LOG.trace("Send data to Java Agent " + reply);
-                outboundChannel.writeAndFlush(reply);
-            }
-            plugin.sendEvent(new UscSessionTransactionEvent(session, 0, bytesOut));
+    /**
+     * Writes the payload of a session to its agent channel as DATA frames
+     * without flushing them
+     *
+     * @param session
+     *            the session
+     * @param payload
+     *            the payload, which is released
+     * @return the future of the last frame
+     */
+    ChannelFuture write(UscSessionImpl session, ByteBuf payload) {
+        final Channel outboundChannel = session.getChannel().getChannel();
+        int bytesOut = payload.readableBytes();
+        // segments share the payload
+        ChannelFuture future = null;
+        for (UscData reply : UscData.segment(session.getPort(), session.getSessionId(), payload,
+                session.getChannel().getMaxPayloadSize())) {
+            LOG.trace("Send data to Java Agent " + reply);
+            future = outboundChannel.write(reply);
+        }
+        payload.release();
+        if (session.getChannel().getCapabilities().hasFeature(Feature.FLOW_CONTROL)) {
+            session.getWindow().consume(bytesOut);
         }
+        plugin.sendEvent(new UscSessionTransactionEvent(session, 0, bytesOut));
+        return future != null ? future : outboundChannel.newSucceededFuture();
     }
 
     @Override
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * All references to the native epoll transport of Netty, which is only
+ * loaded once {@link #isAvailable()} returned true, so that the plugin still
+ * runs where the native library is missing.
+ */
+final class UscNativeTransport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UscNativeTransport.class);
+
+    private UscNativeTransport() {
+    }
+
+    /**
+     * Returns whether the native epoll transport can be used on this host
+     *
+     * @return true on Linux with the native library loaded
+     */
+    static boolean isAvailable() {
+        try {
+            if (Epoll.isAvailable()) {
+                return true;
+            }
+            LOG.warn("Native epoll transport is not available, using NIO: " + Epoll.unavailabilityCause());
+        } catch (LinkageError e) {
+            LOG.warn("Native epoll transport is not installed, using NIO: " + e);
+        }
+        return false;
+    }
+
+    static EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        // epoll channels are edge triggered by default
+        return new EpollEventLoopGroup(threads, threadFactory);
+    }
+
+    static Class<? extends SocketChannel> getSocketChannelClass() {
+        return EpollSocketChannel.class;
+    }
+
+    static Class<? extends ServerSocketChannel> getServerSocketChannelClass() {
+        return EpollServerSocketChannel.class;
+    }
+
+    static Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return EpollDatagramChannel.class;
+    }
+
+    static void setNotSentLowWaterMark(Bootstrap b, int bytes) {
+        b.option(EpollChannelOption.TCP_NOTSENT_LOWAT, (long) bytes);
+    }
+
+    static void setNotSentLowWaterMark(ServerBootstrap b, int bytes) {
+        b.childOption(EpollChannelOption.TCP_NOTSENT_LOWAT, (long) bytes);
+    }
+
+    static void setReusePort(ServerBootstrap b) {
+        b.option(EpollChannelOption.SO_REUSEPORT, true);
+    }
+
+}
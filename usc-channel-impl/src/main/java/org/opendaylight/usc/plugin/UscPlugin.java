@@ -9,31 +9,42 @@ package org.opendaylight.usc.plugin;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInboundHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalChannel;
-import io.netty.channel.local.LocalEventLoopGroup;
 import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
 
 import java.net.InetSocketAddress;
 import java.net.PortUnreachableException;
 import java.net.SocketAddress;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opendaylight.usc.manager.UscRouteBrokerService;
+import org.opendaylight.usc.manager.api.UscConfigurationService;
 import org.opendaylight.usc.manager.api.UscEvent;
 import org.opendaylight.usc.manager.api.UscMonitor;
 import org.opendaylight.usc.manager.cluster.UscRemoteChannelIdentifier;
@@ -44,11 +55,17 @@ import org.opendaylight.usc.plugin.model.UscChannel.ChannelType;
 import org.opendaylight.usc.plugin.model.UscChannelImpl;
 import org.opendaylight.usc.plugin.model.UscDevice;
 import org.opendaylight.usc.plugin.model.UscSessionImpl;
+import org.opendaylight.usc.protocol.UscCapabilities;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
 import org.opendaylight.usc.protocol.UscControl;
+import org.opendaylight.usc.protocol.UscHeader;
 import org.opendaylight.usc.util.UscServiceUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 /**
@@ -85,7 +102,24 @@ public abstract class UscPlugin implements AutoCloseable {
     public static final AttributeKey<Channel> DIRECT_CHANNEL = AttributeKey.valueOf("direct_channel");
     public static final AttributeKey<LocalChannel> LOCAL_SERVER_CHANNEL = AttributeKey.valueOf("local_server_channel");
 
+    /**
+     * Constant used for setting the USC protocol version spoken by the peer of
+     * an agent channel
+     */
+    public static final AttributeKey<Integer> PEER_VERSION = AttributeKey.valueOf("peer_version");
+
+    /**
+     * Constant used for setting the capabilities negotiated with the peer of
+     * an agent channel
+     */
+    public static final AttributeKey<UscCapabilities> CAPABILITIES = AttributeKey.valueOf("capabilities");
+
     private static final Logger LOG = LoggerFactory.getLogger(UscPlugin.class);
+
+    /**
+     * Milliseconds to wait for the ECHO reply of a datagram agent
+     */
+    private static final long ECHO_TIMEOUT = 5000;
     private LocalAddress localServerAddr;
     private final UscExceptionHandler uscExceptionHandler = new UscExceptionHandler(this);
 
@@ -95,7 +129,21 @@ public abstract class UscPlugin implements AutoCloseable {
     private final ConcurrentMap<SocketAddress, SettableFuture<LocalChannel>> serverChannels = new ConcurrentHashMap<>();
     private final ConcurrentMap<Channel, SettableFuture<Boolean>> closeFuture = new ConcurrentHashMap<>();
     private final UscConnectionManager connectionManager = new UscConnectionManager(this);
-    private final EventLoopGroup localGroup = new LocalEventLoopGroup();
+    private final UscEventLoopProvider eventLoops = UscEventLoopProvider.acquire();
+
+    /**
+     * The channels which are closed with the plugin, since the event loops
+     * they run on are shared
+     */
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+    /**
+     * The child group of the local server, which runs the server side of a
+     * session on the event loop of its agent channel if sessionAffinity is set
+     */
+    private final UscSessionEventLoopGroup sessionGroup = new UscSessionEventLoopGroup(eventLoops.getLocalGroup());
+    private final boolean sessionAffinity;
+    private final AtomicLong sessionSequence = new AtomicLong();
     private final UscDemultiplexer demuxer = new UscDemultiplexer(this);
     private final Demultiplexer dmpx = new Demultiplexer(this);
     private final UscMultiplexer muxer = new UscMultiplexer(this);
@@ -107,8 +155,12 @@ public abstract class UscPlugin implements AutoCloseable {
         LOG.debug("UscPlugin " + this + "started");
         localServerAddr = localAddr;
 
+        UscConfigurationService configService = UscServiceUtils.getService(UscConfigurationService.class);
+        sessionAffinity = configService != null
+                && configService.isConfigAsTure(UscConfigurationService.USC_SESSION_EVENT_LOOP_AFFINITY);
+
         final ServerBootstrap localServerBootstrap = new ServerBootstrap();
-        localServerBootstrap.group(localGroup);
+        localServerBootstrap.group(eventLoops.getLocalGroup(), sessionGroup);
         localServerBootstrap.channel(LocalServerChannel.class);
         localServerBootstrap.childHandler(new ChannelInitializer<LocalChannel>() {
             @Override
@@ -138,11 +190,173 @@ public abstract class UscPlugin implements AutoCloseable {
 
         // Start the server.
         final ChannelFuture serverChannelFuture = localServerBootstrap.bind(localServerAddr);
+        addChannel(serverChannelFuture.channel());
         LOG.debug("serverChannel: " + serverChannelFuture);
     }
 
+    /**
+     * Returns the event loops shared by the channels of this plugin
+     * 
+     * @return the event loop provider
+     */
+    public UscEventLoopProvider getEventLoops() {
+        return eventLoops;
+    }
+
+    /**
+     * Registers a channel to be closed when this plugin is closed
+     * 
+     * @param ch
+     *            the channel
+     */
+    protected void addChannel(Channel ch) {
+        channels.add(ch);
+    }
+
+    /**
+     * Returns the USC protocol version used for frames written to an agent
+     * channel
+     * 
+     * @param ch
+     *            the agent channel
+     * @return the protocol version spoken by the peer
+     */
+    public static int getPeerVersion(Channel ch) {
+        Integer version = ch.attr(PEER_VERSION).get();
+        return version != null ? version : UscHeader.USC_VERSION;
+    }
+
+    /**
+     * Records the USC protocol version of a frame received on an agent
+     * channel, so that the frames written back use the same version. The
+     * version of a channel is raised but never lowered this way, since frames
+     * sent before a HELLO exchange completed may still be in flight.
+     * 
+     * @param ch
+     *            the agent channel
+     * @param version
+     *            the version in the header of the received frame
+     */
+    public static void updatePeerVersion(Channel ch, int version) {
+        // a newer peer is answered with the newest version we speak
+        version = Math.min(version, UscHeader.USC_VERSION_2);
+        if (getPeerVersion(ch) < version) {
+            ch.attr(PEER_VERSION).set(version);
+        }
+    }
+
+    /**
+     * Sets the USC protocol version of an agent channel as negotiated by a
+     * HELLO exchange
+     * 
+     * @param ch
+     *            the agent channel
+     * @param version
+     *            the negotiated version
+     */
+    public static void setPeerVersion(Channel ch, int version) {
+        ch.attr(PEER_VERSION).set(Math.max(UscHeader.USC_VERSION, Math.min(version, UscHeader.USC_VERSION_2)));
+    }
+
+    /**
+     * Sets the configured write buffer watermarks of an agent or device
+     * channel. Sessions stop reading once more bytes than the high watermark
+     * are waiting to be written to the channel, and resume when they have
+     * drained below the low watermark.
+     * 
+     * @param ch
+     *            the agent or device channel
+     */
+    public static void setWriteBufferWaterMark(Channel ch) {
+        final UscConfigurationService configService = UscServiceUtils.getService(UscConfigurationService.class);
+        if (configService == null) {
+            return;
+        }
+        final int high = configService.getConfigIntValue(UscConfigurationService.USC_WRITE_BUFFER_HIGH_WATER_MARK);
+        final int low = configService.getConfigIntValue(UscConfigurationService.USC_WRITE_BUFFER_LOW_WATER_MARK);
+        if (high > 0 && low > 0 && low <= high) {
+            ch.config().setWriteBufferWaterMark(new WriteBufferWaterMark(low, high));
+        } else if (high != Integer.MIN_VALUE || low != Integer.MIN_VALUE) {
+            LOG.warn("Invalid write buffer watermarks " + low + "/" + high + ", using the defaults");
+        }
+    }
+
+    /**
+     * Returns the capabilities this node advertises in HELLO messages on an
+     * agent channel
+     * 
+     * @param ch
+     *            the agent channel
+     * @return the local capabilities
+     */
+    public static UscCapabilities getLocalCapabilities(Channel ch) {
+        if (ch instanceof DatagramChannel) {
+            // UscFrameDecoderUdp always unpacks bundles, and datagram
+            // channels always reassemble fragments
+            return new UscCapabilities(UscHeader.USC_VERSION_2, 0, UscMultiplexer.MAX_PAYLOAD_SIZE_V2).with(
+                    Feature.BUNDLING).with(Feature.FRAGMENTATION);
+        }
+        // stream channels share one connection between sessions, which keep
+        // their place through per session flow control
+        return new UscCapabilities(UscHeader.USC_VERSION_2, 0, UscHeader.MAX_PAYLOAD_LENGTH_V2)
+                .with(Feature.FLOW_CONTROL);
+    }
+
+    /**
+     * Returns the capabilities negotiated on an agent channel
+     * 
+     * @param ch
+     *            the agent channel
+     * @return the negotiated capabilities, or {@link UscCapabilities#NONE}
+     *         until the peer has answered HELLO
+     */
+    public static UscCapabilities getCapabilities(Channel ch) {
+        UscCapabilities capabilities = ch.attr(CAPABILITIES).get();
+        return capabilities != null ? capabilities : UscCapabilities.NONE;
+    }
+
+    /**
+     * Stores the capabilities negotiated on an agent channel and switches the
+     * channel to the negotiated protocol version
+     * 
+     * @param ch
+     *            the agent channel
+     * @param capabilities
+     *            the negotiated capabilities
+     */
+    public static void setCapabilities(Channel ch, UscCapabilities capabilities) {
+        ch.attr(CAPABILITIES).set(capabilities);
+        setPeerVersion(ch, capabilities.getUscVersion());
+    }
+
+    /**
+     * Returns the largest payload of the USC DATA frames written to an agent
+     * channel
+     * 
+     * @param ch
+     *            the agent channel
+     * @return the largest payload in bytes
+     */
+    public static int getMaxPayloadSize(Channel ch) {
+        if (ch instanceof DatagramChannel) {
+            // a datagram can't carry more than a version 1 frame, unless the
+            // frame is split into fragments
+            return getCapabilities(ch).hasFeature(Feature.FRAGMENTATION) ? UscMultiplexer.MAX_PAYLOAD_SIZE_V2
+                    : UscMultiplexer.MAX_PAYLOAD_SIZE;
+        }
+        return getPeerVersion(ch) < UscHeader.USC_VERSION_2 ? UscMultiplexer.MAX_PAYLOAD_SIZE
+                : UscMultiplexer.MAX_PAYLOAD_SIZE_V2;
+    }
+
     protected void initAgentPipeline(ChannelPipeline p, ChannelHandler securityHandler) {
 
+        UscConfigurationService configService = UscServiceUtils.getService(UscConfigurationService.class);
+        if (configService != null) {
+            updatePeerVersion(p.channel(),
+                    configService.getConfigIntValue(UscConfigurationService.USC_PROTOCOL_VERSION));
+        }
+        setWriteBufferWaterMark(p.channel());
+        addChannel(p.channel());
         p.addLast(new LoggingHandler("UscPlugin Handler 6", LogLevel.TRACE));
 
         // security handler
@@ -154,11 +368,24 @@ public abstract class UscPlugin implements AutoCloseable {
         p.addLast("frameEncoder", getFrameEncoder());
         p.addLast(new LoggingHandler("UscPlugin Handler 4", LogLevel.TRACE));
 
+        // UscFrameBundler keeps per channel state
+        ChannelOutboundHandler frameBundler = getFrameBundler();
+        if (frameBundler != null) {
+            p.addLast("frameBundler", frameBundler);
+        }
+
         // Decoders
         // UscFrameDecoderUdp is Sharable
         p.addLast("frameDecoder", getFrameDecoder());
         p.addLast(new LoggingHandler("UscPlugin Handler 3", LogLevel.TRACE));
 
+        // UscFrameFragmenter sees frames in both directions, and keeps per
+        // channel state
+        ChannelHandler frameFragmenter = getFrameFragmenter();
+        if (frameFragmenter != null) {
+            p.addLast("frameFragmenter", frameFragmenter);
+        }
+
         // add handler for handling response for remote session like a dummy
         // server
         p.addLast(remoteServerHandler);
@@ -167,11 +394,18 @@ public abstract class UscPlugin implements AutoCloseable {
         // UscDemultiplexer
         p.addLast("UscDemultiplexer", getDemultiplexer());
 
+        // UscSessionScheduler sees all frames written to the channel first,
+        // and keeps per channel state
+        p.addLast("sessionScheduler", getSessionScheduler(configService));
+
         p.addLast(new LoggingHandler("UscPlugin Handler 1", LogLevel.TRACE));
     }
 
     protected void initDirectPipeline(ChannelPipeline p, ChannelHandler securityHandler) {
 
+        setWriteBufferWaterMark(p.channel());
+        addChannel(p.channel());
+
         p.addLast(new LoggingHandler("UscPlugin direct handler 4", LogLevel.TRACE));
 
         // security handler
@@ -209,6 +443,44 @@ public abstract class UscPlugin implements AutoCloseable {
 
     protected abstract ChannelInboundHandler getFrameDecoder();
 
+    /**
+     * Returns a new handler which packs outbound frames for an agent channel,
+     * or null if frames are written one by one.
+     * 
+     * @return the bundler, or null
+     */
+    protected ChannelOutboundHandler getFrameBundler() {
+        return null;
+    }
+
+    /**
+     * Returns a new handler which fragments and reassembles large frames for
+     * an agent channel, or null if frames are never fragmented.
+     * 
+     * @return the fragmenter, or null
+     */
+    protected ChannelHandler getFrameFragmenter() {
+        return null;
+    }
+
+    /**
+     * Returns a new handler which schedules the frames of the sessions of an
+     * agent channel according to their configured weights.
+     * 
+     * @param configService
+     *            the configuration service, or null
+     * @return the scheduler
+     */
+    protected UscSessionScheduler getSessionScheduler(UscConfigurationService configService) {
+        if (configService == null) {
+            return new UscSessionScheduler();
+        }
+        final int quantum = configService.getConfigIntValue(UscConfigurationService.USC_SCHEDULER_QUANTUM);
+        return new UscSessionScheduler(quantum > 0 ? quantum : UscSessionScheduler.DEFAULT_QUANTUM,
+                UscSessionScheduler.parseWeights(configService
+                        .getConfigStringValue(UscConfigurationService.USC_SESSION_WEIGHTS)));
+    }
+
     /**
      * Initiates a client session to a device service as specified by the
      * address parameter.
@@ -230,176 +502,425 @@ public abstract class UscPlugin implements AutoCloseable {
 
     public ChannelFuture connect(Bootstrap clientBootstrap, final InetSocketAddress address, boolean remote)
             throws InterruptedException, ExecutionException, Exception {
+        try {
+            return connectAsync(clientBootstrap, address, remote).get().newSucceededFuture();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
 
-        LOG.trace("Attempt to connect to " + address + ",remote is " + remote);
-        boolean remoteDevice = false;
+    /**
+     * Initiates a client session to a device service without blocking the
+     * caller.
+     * 
+     * @param clientBootstrap
+     *            the Netty bootstrap to use to create the session
+     * @param address
+     *            the IP address and port of the device service
+     * @return the future client channel that can be used to communicate with
+     *         the device service
+     */
+    public ListenableFuture<Channel> connectAsync(Bootstrap clientBootstrap, final InetSocketAddress address) {
+        return connectAsync(clientBootstrap, address, false);
+    }
 
-        // Connect to USC Agent to the device if one's not already created
-        UscChannelImpl connection = null;
-        Channel directChannel = null;
-        UscDevice device = new UscDevice(address.getAddress(), address.getPort());
-        UscRouteBrokerService routeBroker = UscServiceUtils.getService(UscRouteBrokerService.class);
-        Exception connectException = null;
+    /**
+     * Initiates a client session to a device service without blocking the
+     * caller. The session is opened through the USC agent of the device if
+     * possible, then through a direct connection to the device, and finally
+     * through the channel of another cluster member.
+     * 
+     * With session event loop affinity configured, the client channel of a
+     * session through an agent is registered on the event loop of the agent
+     * channel instead of the group of the bootstrap, so its handlers must not
+     * block.
+     * 
+     * @param clientBootstrap
+     *            the Netty bootstrap to use to create the session
+     * @param address
+     *            the IP address and port of the device service
+     * @param remote
+     *            true to use the channel of another cluster member if there
+     *            is one
+     * @return the future client channel that can be used to communicate with
+     *         the device service
+     */
+    public ListenableFuture<Channel> connectAsync(Bootstrap clientBootstrap, final InetSocketAddress address,
+            boolean remote) {
+
+        LOG.trace("Attempt to connect to " + address + ",remote is " + remote);
+        final ConnectAttempt attempt = new ConnectAttempt(clientBootstrap, address);
 
         if (remote) {
-            if (routeBroker != null) {
-                if (routeBroker.existRemoteChannel(new UscRemoteChannelIdentifier(device.getInetAddress(),
-                        getChannelType()))) {
-                    remoteDevice = true;
-                    LOG.trace("Find remote channel for device " + device);
-                } else {
-                    remote = false;
-                    LOG.warn("remote channel is not found for device " + device + ", try to connect from local.");
+            if (attempt.routeBroker != null) {
+                if (attempt.existRemoteChannel()) {
+                    LOG.trace("Find remote channel for device " + attempt.device);
+                    attempt.connectLocal(null, null, true);
+                    return attempt.result;
                 }
+                LOG.warn("remote channel is not found for device " + attempt.device + ", try to connect from local.");
             } else {
                 LOG.error("Broker service is null, try to connect from local.");
-                remote = false;
             }
         }
-        if (!remote) {
-            if (getChannelType() == ChannelType.DTLS || getChannelType() == ChannelType.UDP) {
-                try {
-                    connection = connectionManager.getConnection(
-                            new UscDevice(address.getAddress(), address.getPort()), getChannelType());
-                } catch (Exception e) {
-                    LOG.error("Failed to get udp agent connection, try to directly connect.error is " + e.getMessage());
-                    connectException = e;
+        attempt.connectAgent();
+        return attempt.result;
+    }
+
+    /**
+     * Opens a session to a device service through the USC agent of the device
+     * for a consumer in this VM. The session has no local channels: its data
+     * is written to and read from the agent channel directly. Unlike
+     * connectAsync there is no fallback to a direct connection or to the
+     * channel of another cluster member.
+     * 
+     * @param address
+     *            the IP address and port of the device service
+     * @param listener
+     *            the listener receiving the data of the session
+     * @return the future session
+     */
+    public ListenableFuture<UscDirectSession> openSession(final InetSocketAddress address,
+            final UscSessionListener listener) {
+        final SettableFuture<UscDirectSession> result = SettableFuture.create();
+        final UscDevice device = new UscDevice(address.getAddress(), address.getPort());
+        Futures.addCallback(connectionManager.getConnectionAsync(device, getChannelType()),
+                new FutureCallback<UscChannelImpl>() {
+                    @Override
+                    public void onSuccess(UscChannelImpl connection) {
+                        try {
+                            final UscDirectSession session = connection.addDirectSession(address.getPort(), listener);
+                            LOG.info("Opened direct " + session);
+                            result.set(session);
+                        } catch (RuntimeException e) {
+                            result.setException(e);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        result.setException(t);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Opens a session like {@link #openSession} whose data is read and written
+     * through Reactive Streams with backpressure from end to end.
+     * 
+     * @param address
+     *            the IP address and port of the device service
+     * @return the future session
+     */
+    public ListenableFuture<UscReactiveSession> openReactiveSession(final InetSocketAddress address) {
+        final UscReactiveSession reactiveSession = new UscReactiveSession();
+        final SettableFuture<UscReactiveSession> result = SettableFuture.create();
+        Futures.addCallback(openSession(address, reactiveSession), new FutureCallback<UscDirectSession>() {
+            @Override
+            public void onSuccess(UscDirectSession session) {
+                reactiveSession.attach(session);
+                result.set(reactiveSession);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.setException(t);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Writes the data of a direct session to its agent channel
+     */
+    ChannelFuture writeSession(UscDirectSession session, ByteBuf data) {
+        return muxer.write(session, data);
+    }
+
+    /**
+     * The state of one call to connectAsync, which moves on to the next way
+     * of reaching the device whenever a step fails.
+     */
+    private class ConnectAttempt {
+
+        private final Bootstrap clientBootstrap;
+        private final InetSocketAddress address;
+        private final UscDevice device;
+        private final UscRouteBrokerService routeBroker = UscServiceUtils.getService(UscRouteBrokerService.class);
+        private final SettableFuture<Channel> result = SettableFuture.create();
+
+        ConnectAttempt(Bootstrap clientBootstrap, InetSocketAddress address) {
+            this.clientBootstrap = clientBootstrap;
+            this.address = address;
+            this.device = new UscDevice(address.getAddress(), address.getPort());
+        }
+
+        boolean existRemoteChannel() {
+            return routeBroker.existRemoteChannel(new UscRemoteChannelIdentifier(device.getInetAddress(),
+                    getChannelType()));
+        }
+
+        void connectAgent() {
+            Futures.addCallback(connectionManager.getConnectionAsync(device, getChannelType()),
+                    new FutureCallback<UscChannelImpl>() {
+                        @Override
+                        public void onSuccess(UscChannelImpl connection) {
+                            LOG.trace("Returned connection is " + connection);
+                            if (getChannelType() == ChannelType.DTLS || getChannelType() == ChannelType.UDP) {
+                                checkAgentPort(connection);
+                            } else {
+                                connectLocal(connection, null, false);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            LOG.error("Failed to get agent connection, try to directly connect.error is "
+                                    + t.getMessage());
+                            connectDirectly();
+                        }
+                    });
+        }
+
+        /**
+         * A datagram channel to the agent is "connected" even if nothing
+         * listens on the agent port, so send an ECHO to see if the port is
+         * reachable.
+         */
+        void checkAgentPort(final UscChannelImpl connection) {
+            final Channel channel = connection.getChannel();
+            final UscDemultiplexer handler = (UscDemultiplexer) channel.pipeline().get("UscDemultiplexer");
+            final SocketAddress remoteAddress = channel.remoteAddress();
+            final SettableFuture<Throwable> echo = SettableFuture.create();
+            final SettableFuture<Throwable> inFlight = handler.promiseMap.putIfAbsent(remoteAddress, echo);
+            if (inFlight == null) {
+                UscControl echoControl = new UscControl(address.getPort(), 1, UscControl.ControlCode.ECHO.getCode());
+                channel.writeAndFlush(echoControl);
+                LOG.trace("Send a ECHO message to see if the usc agent port is reachable.");
+            }
+
+            // the timeout only fails this attempt, not the ECHO others wait for
+            final SettableFuture<Throwable> reply = SettableFuture.create();
+            final ScheduledFuture<?> timeout = channel.eventLoop().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    reply.setException(new TimeoutException("No ECHO reply from " + remoteAddress));
                 }
-                
-				LOG.trace("Returned connection is " + connection);
-				Channel channel = connection.getChannel();
-				UscDemultiplexer handler = (UscDemultiplexer) channel
-						.pipeline().get("UscDemultiplexer");
-				SocketAddress remoteAddress = channel.remoteAddress();
-				if (!handler.promiseMap.containsKey(remoteAddress)) {
-					handler.promiseMap.putIfAbsent(remoteAddress, SettableFuture.<Throwable> create());
-
-					UscControl echoControl = new UscControl(address.getPort(), 1, UscControl.ControlCode.ECHO.getCode());
-					channel.writeAndFlush(echoControl);
-					LOG.trace("Send a ECHO message to see if the usc agent port is reachable.");
-				}
-
-				Throwable e = null;
-				e = handler.promiseMap.get(remoteAddress).get(5000, TimeUnit.MILLISECONDS);
-
-				if (e != null) {
-					LOG.trace("connect: handler.promise is " + e);
-					if (e != null && e instanceof PortUnreachableException) {
-						LOG.trace("connect: caught exception PortUnreachableException");
-						channel.close();
-						connectionManager.removeConnection(connection);
-						connection = null;
-						LOG.trace("connect: start connecting to "
-								+ address.getAddress() + (":")
-								+ address.getPort() + " directly.");
-						try {
-							directChannel = connectToDeviceDirectly(new UscDevice(
-									address.getAddress(), address.getPort()));
-						} catch (Exception ex) {
-							LOG.error("Failed to get direct connection, try to remote connect.error is "
-									+ e.getMessage());
-							connectException = ex;
-						}
-					}
-				}
-            } else {
-                try {
-                    connection = connectionManager.getConnection(
-                            new UscDevice(address.getAddress(), address.getPort()), getChannelType());
-                } catch (Exception e) {
-                    LOG.error("Failed to get agent connection, try to directly connect.error is " + e.getMessage());
-                    try {
-                        directChannel = connectToDeviceDirectly(new UscDevice(address.getAddress(), address.getPort()));
-                    } catch (Exception ex) {
-                        LOG.error("Failed to get direct connection, try to remote connect.error is " + e.getMessage());
-                        connectException = ex;
+            }, ECHO_TIMEOUT, TimeUnit.MILLISECONDS);
+            Futures.addCallback(inFlight != null ? inFlight : echo, new FutureCallback<Throwable>() {
+                @Override
+                public void onSuccess(Throwable e) {
+                    reply.set(e);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    reply.setException(t);
+                }
+            });
+            Futures.addCallback(reply, new FutureCallback<Throwable>() {
+                @Override
+                public void onSuccess(Throwable e) {
+                    timeout.cancel(false);
+                    LOG.trace("connect: handler.promise is " + e);
+                    if (e instanceof PortUnreachableException) {
+                        LOG.trace("connect: caught exception PortUnreachableException");
+                        channel.close();
+                        connectionManager.removeConnection(connection);
+                        LOG.trace("connect: start connecting to " + address.getAddress() + (":")
+                                + address.getPort() + " directly.");
+                        connectDirectly();
+                    } else {
+                        connectLocal(connection, null, false);
                     }
                 }
-            }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    timeout.cancel(false);
+                    result.setException(t);
+                }
+            });
         }
-        if (connectException != null) {
-            if (routeBroker != null) {
-                if (routeBroker.existRemoteChannel(new UscRemoteChannelIdentifier(device.getInetAddress(),
-                        getChannelType()))) {
-                    remoteDevice = true;
-                    LOG.trace("Found remote channel for device " + device);
-                } else {
-                    LOG.warn("Failed to find remote channel in device table!");
-                    throw connectException;
+
+        void connectDirectly() {
+            final ChannelFuture directFuture;
+            try {
+                directFuture = connectToDeviceDirectlyAsync(device);
+            } catch (Exception e) {
+                connectRemote(e);
+                return;
+            }
+            directFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (future.isSuccess()) {
+                        connectLocal(null, future.channel(), false);
+                    } else {
+                        connectRemote(future.cause());
+                    }
                 }
-            } else {
+            });
+        }
+
+        void connectRemote(Throwable connectException) {
+            LOG.error("Failed to get direct connection, try to remote connect.error is "
+                    + connectException.getMessage());
+            if (routeBroker == null) {
                 LOG.warn("Broker service is null, can't find exist remote channel, throw exception dirctly.");
-                throw connectException;
+                result.setException(connectException);
+            } else if (existRemoteChannel()) {
+                LOG.trace("Found remote channel for device " + device);
+                connectLocal(null, null, true);
+            } else {
+                LOG.warn("Failed to find remote channel in device table!");
+                result.setException(connectException);
             }
         }
-        
-        final ChannelFuture clientChannelFuture = clientBootstrap.connect(localServerAddr);
-        clientChannelFuture.channel().pipeline().addLast(uscExceptionHandler);
-
-        // sync to ensure that localAddress is not null
-        final Channel clientChannel = clientChannelFuture.sync().channel();
-        SocketAddress localAddress = clientChannel.localAddress();
-        serverChannels.putIfAbsent(localAddress, SettableFuture.<LocalChannel> create());
-
-        // wait for the peer to populate
-        LocalChannel serverChannel = serverChannels.get(localAddress).get();
-
-        LOG.trace("connect: serverChannel = " + serverChannel);
-
-        assert serverChannel != null;
-        // remove the entry from the map as its purpose is complete
-        serverChannels.remove(localAddress);
-
-        if (connection != null) {
-            UscSessionImpl session = connection.addSession(address.getPort(), serverChannel);
-
-            LOG.trace("clientChannel set session " + session);
-            // these attributes are used by unit test cases
-            clientChannel.attr(SESSION).setIfAbsent(SettableFuture.<UscSessionImpl> create());
-            clientChannel.attr(SESSION).get().set(session);
-
-            // these attributes are used by UscMultiplexer
-            serverChannel.attr(SESSION).get().set(session);
-
-            // this attribute is used by UscDemultiplexer
-            serverChannel.attr(CLIENT_CHANNEL).set(clientChannel);
-            LOG.info("Connected with channel for " + session);
-        } else if (directChannel != null) {
-            clientChannel.attr(LOCAL_SERVER_CHANNEL).set(serverChannel);
-            serverChannel.attr(DIRECT_CHANNEL).set(directChannel);
-            serverChannel.attr(CLIENT_CHANNEL).set(clientChannel);
-            directChannel.attr(LOCAL_SERVER_CHANNEL).set(serverChannel);
-            LOG.info("Connected channel using direct way for " + device);
+
+        /**
+         * Opens the client channel to the local server, and binds the server
+         * side of it to the way the device was reached.
+         */
+        void connectLocal(final UscChannelImpl connection, final Channel directChannel, final boolean remoteDevice) {
+            final ChannelFuture clientChannelFuture;
+            if (sessionAffinity && connection != null) {
+                // both sides of the session run on the event loop of the agent
+                // channel, so frames are passed on by direct calls
+                final EventLoop eventLoop = connection.getChannel().eventLoop();
+                final LocalAddress clientAddress = new LocalAddress(localServerAddr.id() + "-session-"
+                        + sessionSequence.incrementAndGet());
+                sessionGroup.assign(clientAddress, eventLoop);
+                clientChannelFuture = clientBootstrap.clone(eventLoop).connect(localServerAddr, clientAddress);
+                clientChannelFuture.addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        if (!future.isSuccess()) {
+                            sessionGroup.unassign(clientAddress);
+                        }
+                    }
+                });
+            } else {
+                clientChannelFuture = clientBootstrap.connect(localServerAddr);
+            }
+            clientChannelFuture.channel().pipeline().addLast(uscExceptionHandler);
+            clientChannelFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (!future.isSuccess()) {
+                        result.setException(future.cause());
+                        return;
+                    }
+                    // localAddress is set once connected
+                    final Channel clientChannel = future.channel();
+                    final SocketAddress localAddress = clientChannel.localAddress();
+                    serverChannels.putIfAbsent(localAddress, SettableFuture.<LocalChannel> create());
+
+                    // wait for the peer to populate
+                    Futures.addCallback(serverChannels.get(localAddress), new FutureCallback<LocalChannel>() {
+                        @Override
+                        public void onSuccess(LocalChannel serverChannel) {
+                            // remove the entry from the map as its purpose is
+                            // complete
+                            serverChannels.remove(localAddress);
+                            try {
+                                initSession(clientChannel, serverChannel, connection, directChannel, remoteDevice);
+                                result.set(clientChannel);
+                            } catch (RuntimeException e) {
+                                clientChannel.close();
+                                result.setException(e);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            serverChannels.remove(localAddress);
+                            clientChannel.close();
+                            result.setException(t);
+                        }
+                    });
+                }
+            });
         }
 
-        if (remoteDevice) {
-            UscRemoteChannelIdentifier remoteChannel = new UscRemoteChannelIdentifier(device.getInetAddress(),
-                    getChannelType());
-            UscRouteIdentifier routeId = new UscRouteIdentifier(remoteChannel, serverChannel.hashCode(),
-                    address.getPort());
-            clientChannel.attr(ROUTE_IDENTIFIER).setIfAbsent(routeId);
-            serverChannel.attr(ROUTE_IDENTIFIER).setIfAbsent(routeId);
-            sendEvent(new UscChannelCreateEvent(remoteChannel.getIp(), true, remoteChannel.getRemoteChannelType()));
-            // register local session for routing to remote device
-            routeBroker.addLocalSession(routeId, serverChannel);
-            if (directChannel != null) {
-                // direct connection only has one session
-                directChannel.attr(ROUTE_IDENTIFIER).set(routeId);
+        void initSession(Channel clientChannel, LocalChannel serverChannel, UscChannelImpl connection,
+                Channel directChannel, boolean remoteDevice) {
+
+            LOG.trace("connect: serverChannel = " + serverChannel);
+
+            if (connection != null) {
+                UscSessionImpl session = connection.addSession(address.getPort(), serverChannel);
+
+                LOG.trace("clientChannel set session " + session);
+                // these attributes are used by unit test cases
+                clientChannel.attr(SESSION).setIfAbsent(SettableFuture.<UscSessionImpl> create());
+                clientChannel.attr(SESSION).get().set(session);
+
+                // these attributes are used by UscMultiplexer
+                serverChannel.attr(SESSION).get().set(session);
+
+                // this attribute is used by UscDemultiplexer
+                serverChannel.attr(CLIENT_CHANNEL).set(clientChannel);
+                // return the credits for the data the client has read
+                clientChannel.pipeline().addFirst(new UscSessionCreditHandler(session));
+                LOG.info("Connected with channel for " + session);
+            } else if (directChannel != null) {
+                clientChannel.attr(LOCAL_SERVER_CHANNEL).set(serverChannel);
+                serverChannel.attr(DIRECT_CHANNEL).set(directChannel);
+                serverChannel.attr(CLIENT_CHANNEL).set(clientChannel);
+                directChannel.attr(LOCAL_SERVER_CHANNEL).set(serverChannel);
+                LOG.info("Connected channel using direct way for " + device);
+            }
+
+            if (remoteDevice) {
+                UscRemoteChannelIdentifier remoteChannel = new UscRemoteChannelIdentifier(device.getInetAddress(),
+                        getChannelType());
+                UscRouteIdentifier routeId = new UscRouteIdentifier(remoteChannel, serverChannel.hashCode(),
+                        address.getPort());
+                clientChannel.attr(ROUTE_IDENTIFIER).setIfAbsent(routeId);
+                serverChannel.attr(ROUTE_IDENTIFIER).setIfAbsent(routeId);
+                sendEvent(new UscChannelCreateEvent(remoteChannel.getIp(), true, remoteChannel.getRemoteChannelType()));
+                // register local session for routing to remote device
+                routeBroker.addLocalSession(routeId, serverChannel);
+                if (directChannel != null) {
+                    // direct connection only has one session
+                    directChannel.attr(ROUTE_IDENTIFIER).set(routeId);
+                }
+                LOG.info("Initialized local remote channel for " + routeId);
             }
-            LOG.info("Initialized local remote channel for " + routeId);
         }
-        return clientChannelFuture;
     }
 
     protected abstract ChannelType getChannelType();
 
-    protected abstract Channel connectToAgent(UscDevice device) throws InterruptedException, Exception;
+    /**
+     * Starts connecting to the USC agent of a device.
+     * 
+     * @param device
+     *            the device
+     * @return the future agent channel
+     * @throws Exception
+     *             if the connect attempt can't be started
+     */
+    protected abstract ChannelFuture connectToAgentAsync(UscDevice device) throws Exception;
 
-    protected abstract Channel connectToDeviceDirectly(UscDevice device) throws InterruptedException, Exception;
+    /**
+     * Starts connecting to a device service directly, without a USC agent.
+     * 
+     * @param device
+     *            the device, with the port of the service
+     * @return the future device channel
+     * @throws Exception
+     *             if the connect attempt can't be started
+     */
+    protected abstract ChannelFuture connectToDeviceDirectlyAsync(UscDevice device) throws Exception;
 
     @Override
     public void close() {
-        localGroup.shutdownGracefully();
+        // wait for the local server address to be free for the next plugin
+        channels.close().awaitUninterruptibly();
+        eventLoops.release();
 
         LOG.debug("UscPlugin " + this + "closed");
     }
@@ -471,4 +992,15 @@ public abstract class UscPlugin implements AutoCloseable {
             return null;
         }
     }
+
+    /**
+     * Returns all agent channels to a device without connecting
+     * 
+     * @param address
+     *            the address of the device
+     * @return the channels, empty if there are none
+     */
+    public List<UscChannelImpl> retrieveChannelImpls(InetSocketAddress address) {
+        return connectionManager.getConnections(new UscDevice(address.getAddress()));
+    }
 }
\ No newline at end of file
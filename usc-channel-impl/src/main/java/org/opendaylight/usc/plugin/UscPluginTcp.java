@@ -16,11 +16,8 @@ import io.netty.channel.ChannelInboundHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
 import io.netty.channel.local.LocalAddress;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.socket.SocketChannel;
 
 import javax.net.ssl.SSLException;
 
@@ -43,9 +40,7 @@ public class UscPluginTcp extends UscPlugin {
 
     private final UscSecureService secureService;
     private final UscConfigurationService configService;
-    private final EventLoopGroup agentGroup = new NioEventLoopGroup();
     private final Bootstrap agentBootstrap = new Bootstrap();
-    private EventLoopGroup directGroup = null;
     private Bootstrap directBootstrap = null;
 
     /**
@@ -68,8 +63,9 @@ public class UscPluginTcp extends UscPlugin {
         configService = UscServiceUtils
                 .getService(UscConfigurationService.class);
         secureService = UscServiceUtils.getService(UscSecureService.class);
-        agentBootstrap.group(agentGroup);
-        agentBootstrap.channel(NioSocketChannel.class);
+        agentBootstrap.group(getEventLoops().getAgentGroup());
+        agentBootstrap.channel(getEventLoops().getSocketChannelClass());
+        getEventLoops().setTcpAgentOptions(agentBootstrap);
         agentBootstrap.handler(new ChannelInitializer<Channel>() {
             @Override
             public void initChannel(final Channel ch) throws Exception {
@@ -83,15 +79,16 @@ public class UscPluginTcp extends UscPlugin {
         });
 
         final ServerBootstrap callHomeServerTcpBootstrap = new ServerBootstrap();
-        callHomeServerTcpBootstrap.group(agentGroup);
-        callHomeServerTcpBootstrap.channel(NioServerSocketChannel.class);
+        callHomeServerTcpBootstrap.group(getEventLoops().getAgentGroup());
+        callHomeServerTcpBootstrap.channel(getEventLoops().getServerSocketChannelClass());
+        final int listeners = getEventLoops().setTcpListenerOptions(callHomeServerTcpBootstrap);
         // callHomeServerTcpBootstrap.handler(new
         // LoggingHandler(LogLevel.TRACE));
         callHomeServerTcpBootstrap
-                .childHandler(new ChannelInitializer<NioSocketChannel>() {
+                .childHandler(new ChannelInitializer<SocketChannel>() {
 
                     @Override
-                    public void initChannel(final NioSocketChannel channel)
+                    public void initChannel(final SocketChannel channel)
                             throws Exception {
                         if (secureService == null) {
                             log.error("UscSecureService is not initialized!");
@@ -103,6 +100,9 @@ public class UscPluginTcp extends UscPlugin {
 
                         addCallHomeConnection(channel.remoteAddress(), channel);
 
+                        // the server context is shared by all call home
+                        // channels, so reconnecting agents resume their
+                        // session from its cache or ticket
                         initAgentPipeline(p,
                                 secureService.getTcpServerHandler(channel));
                     }
@@ -111,10 +111,15 @@ public class UscPluginTcp extends UscPlugin {
             log.error("UscConfigurationService is not initialized!");
             return;
         }
-        final ChannelFuture callHomeChannelTcpFuture = callHomeServerTcpBootstrap
-                .bind(configService
-                        .getConfigIntValue(UscConfigurationService.USC_PLUGIN_PORT));
-        log.debug("callHomeChannelTcpFuture : " + callHomeChannelTcpFuture);
+        // with SO_REUSEPORT every agent event loop accepts call home
+        // connections on its own listener
+        for (int i = 0; i < listeners; i++) {
+            final ChannelFuture callHomeChannelTcpFuture = callHomeServerTcpBootstrap
+                    .bind(configService
+                            .getConfigIntValue(UscConfigurationService.USC_PLUGIN_PORT));
+            addChannel(callHomeChannelTcpFuture.channel());
+            log.debug("callHomeChannelTcpFuture : " + callHomeChannelTcpFuture);
+        }
     }
 
     @Override
@@ -125,49 +130,30 @@ public class UscPluginTcp extends UscPlugin {
     @Override
     protected ChannelInboundHandler getFrameDecoder() {
         // UscFrameDecoderTcp is NOT Sharable
-        return new UscFrameDecoderTcp();
+        return new UscFrameDecoderTcp(configService != null
+                && configService.isConfigAsTure(UscConfigurationService.USC_ZERO_COPY_DECODE));
     }
 
     @Override
-    public void close() {
-        super.close();
-        agentGroup.shutdownGracefully();
-        if (directGroup != null)
-            directGroup.shutdownGracefully();
-    }
-
-    @Override
-    protected Channel connectToAgent(UscDevice device) throws Exception {
+    protected ChannelFuture connectToAgentAsync(UscDevice device) throws Exception {
         if (configService == null) {
             log.error("UscConfigurationService is not initialized!");
-            return null;
+            throw new IllegalStateException("UscConfigurationService is not initialized!");
         }
         final int agentPort = configService
                 .getConfigIntValue(UscConfigurationService.USC_AGENT_PORT);
-        Channel channel = null;
-
-        try {
-            channel = agentBootstrap
-                    .connect(device.getInetAddress(), agentPort).sync()
-                    .channel();
-        } catch (Exception e) {
-            throw e;
-        }
 
-        return channel;
+        return agentBootstrap.connect(device.getInetAddress(), agentPort);
     }
 
     @Override
-    protected Channel connectToDeviceDirectly(UscDevice device)
+    protected synchronized ChannelFuture connectToDeviceDirectlyAsync(UscDevice device)
             throws Exception {
-        Channel channel = null;
-
         if (directBootstrap == null) {
             directBootstrap = new Bootstrap();
-            directGroup = new NioEventLoopGroup();
 
-            directBootstrap.group(directGroup);
-            directBootstrap.channel(NioSocketChannel.class);
+            directBootstrap.group(getEventLoops().getDeviceGroup());
+            directBootstrap.channel(getEventLoops().getSocketChannelClass());
             directBootstrap.handler(new ChannelInitializer<Channel>() {
                 @Override
                 public void initChannel(final Channel ch) throws Exception {
@@ -181,15 +167,7 @@ public class UscPluginTcp extends UscPlugin {
             });
         }
 
-        try {
-            channel = directBootstrap
-                    .connect(device.getInetAddress(), device.getPort()).sync()
-                    .channel();
-        } catch (Exception e) {
-            throw e;
-        }
-
-        return channel;
+        return directBootstrap.connect(device.getInetAddress(), device.getPort());
     }
 
     @Override
@@ -17,11 +17,9 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.EventLoopGroup;
 import io.netty.channel.local.LocalAddress;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
-import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 
@@ -48,10 +46,8 @@ public class UscPluginUdp extends UscPlugin {
 
     private final UscSecureService secureService;
     private final UscConfigurationService configService;
-    private final EventLoopGroup agentGroup = new NioEventLoopGroup();
     private final Bootstrap agentBootstrap = new Bootstrap();
     private Bootstrap directBootstrap = null;
-    private EventLoopGroup directGroup = null;
 
     private final ChannelInboundHandlerAdapter callHomeHandler = new ChannelInboundHandlerAdapter() {
         @Override
@@ -91,8 +87,8 @@ public class UscPluginUdp extends UscPlugin {
         configService = UscServiceUtils
                 .getService(UscConfigurationService.class);
         secureService = UscServiceUtils.getService(UscSecureService.class);
-        agentBootstrap.group(agentGroup);
-        agentBootstrap.channel(NioDatagramChannel.class);
+        agentBootstrap.group(getEventLoops().getAgentGroup());
+        agentBootstrap.channel(getEventLoops().getDatagramChannelClass());
         agentBootstrap.handler(new ChannelInitializer<Channel>() {
             @Override
             public void initChannel(final Channel ch) throws Exception {
@@ -108,13 +104,13 @@ public class UscPluginUdp extends UscPlugin {
         });
 
         final Bootstrap callHomeServerUdpBootstrap = new Bootstrap();
-        callHomeServerUdpBootstrap.group(agentGroup);
-        callHomeServerUdpBootstrap.channel(NioDatagramChannel.class);
+        callHomeServerUdpBootstrap.group(getEventLoops().getAgentGroup());
+        callHomeServerUdpBootstrap.channel(getEventLoops().getDatagramChannelClass());
         callHomeServerUdpBootstrap
-                .handler(new ChannelInitializer<NioDatagramChannel>() {
+                .handler(new ChannelInitializer<DatagramChannel>() {
 
                     @Override
-                    public void initChannel(final NioDatagramChannel ch)
+                    public void initChannel(final DatagramChannel ch)
                             throws Exception {
                         if (secureService == null) {
                             log.error("UscSecureService is not initialized!");
@@ -143,6 +139,7 @@ public class UscPluginUdp extends UscPlugin {
                 .getConfigIntValue(UscConfigurationService.USC_PLUGIN_PORT);
         final ChannelFuture callHomeChannelUdpFuture = callHomeServerUdpBootstrap
                 .bind(pluginPort);
+        addChannel(callHomeChannelUdpFuture.channel());
         log.debug("callHomeChannelUdpFuture : " + callHomeChannelUdpFuture);
         try {
             callHomeChannelUdpFuture.sync();
@@ -159,50 +156,82 @@ public class UscPluginUdp extends UscPlugin {
 
     @Override
     protected ChannelInboundHandler getFrameDecoder() {
-        return UscFrameDecoderUdp.getInstance();
+        return UscFrameDecoderUdp.getInstance(configService != null
+                && configService.isConfigAsTure(UscConfigurationService.USC_ZERO_COPY_DECODE));
     }
 
     @Override
-    public void close() {
-        super.close();
-        agentGroup.shutdownGracefully();
-        if (directGroup != null)
-            directGroup.shutdownGracefully();
+    protected ChannelOutboundHandler getFrameBundler() {
+        return newFrameBundler(configService);
     }
 
     @Override
-    protected Channel connectToAgent(UscDevice device)
-            throws InterruptedException {
+    protected ChannelHandler getFrameFragmenter() {
+        return newFrameFragmenter(configService);
+    }
+
+    /**
+     * Creates the bundler of a datagram channel from the configuration, which
+     * is shared by the plugin and the agent
+     * 
+     * @param configService
+     *            the configuration, or null for the defaults
+     * @return the bundler, or null if bundling is switched off
+     */
+    public static UscFrameBundler newFrameBundler(UscConfigurationService configService) {
         if (configService == null) {
-            log.error("UscConfigurationService is not initialized!");
+            return new UscFrameBundler();
+        }
+        final int mtu = configService.getConfigIntValue(UscConfigurationService.USC_BUNDLE_MTU);
+        final int flushDelay = configService.getConfigIntValue(UscConfigurationService.USC_BUNDLE_FLUSH_DELAY);
+        if (mtu == 0) {
+            // bundling is switched off
             return null;
         }
-        final int agentPort = configService
-                .getConfigIntValue(UscConfigurationService.USC_AGENT_PORT);
-        Channel channel = null;
+        return new UscFrameBundler(mtu > 0 ? mtu : UscFrameBundler.DEFAULT_MTU,
+                flushDelay >= 0 ? flushDelay : UscFrameBundler.DEFAULT_FLUSH_DELAY);
+    }
 
-        try {
-            channel = agentBootstrap
-                    .connect(device.getInetAddress(), agentPort).sync()
-                    .channel();
-        } catch (InterruptedException e) {
-            throw e;
+    /**
+     * Creates the fragmenter of a datagram channel from the configuration,
+     * which is shared by the plugin and the agent
+     * 
+     * @param configService
+     *            the configuration, or null for the defaults
+     * @return the fragmenter
+     */
+    public static UscFrameFragmenter newFrameFragmenter(UscConfigurationService configService) {
+        if (configService == null) {
+            return new UscFrameFragmenter();
         }
+        final int mtu = configService.getConfigIntValue(UscConfigurationService.USC_PATH_MTU);
+        final int bufferSize = configService.getConfigIntValue(UscConfigurationService.USC_REASSEMBLY_BUFFER_SIZE);
+        final int timeout = configService.getConfigIntValue(UscConfigurationService.USC_REASSEMBLY_TIMEOUT);
+        return new UscFrameFragmenter(mtu > 0 ? mtu : UscFrameFragmenter.DEFAULT_MTU,
+                bufferSize > 0 ? bufferSize : UscFrameFragmenter.DEFAULT_REASSEMBLY_BUFFER_SIZE,
+                timeout > 0 ? timeout : UscFrameFragmenter.DEFAULT_REASSEMBLY_TIMEOUT);
+    }
 
-        return channel;
+    @Override
+    protected ChannelFuture connectToAgentAsync(UscDevice device) throws Exception {
+        if (configService == null) {
+            log.error("UscConfigurationService is not initialized!");
+            throw new IllegalStateException("UscConfigurationService is not initialized!");
+        }
+        final int agentPort = configService
+                .getConfigIntValue(UscConfigurationService.USC_AGENT_PORT);
+
+        return agentBootstrap.connect(device.getInetAddress(), agentPort);
     }
 
     @Override
-    protected Channel connectToDeviceDirectly(UscDevice device)
+    protected synchronized ChannelFuture connectToDeviceDirectlyAsync(UscDevice device)
             throws Exception {
-        Channel channel = null;
-
         if (directBootstrap == null) {
             directBootstrap = new Bootstrap();
-            directGroup = new NioEventLoopGroup();
 
-            directBootstrap.group(directGroup);
-            directBootstrap.channel(NioDatagramChannel.class);
+            directBootstrap.group(getEventLoops().getDeviceGroup());
+            directBootstrap.channel(getEventLoops().getDatagramChannelClass());
             directBootstrap.handler(new ChannelInitializer<Channel>() {
                 @Override
                 public void initChannel(final Channel ch) throws Exception {
@@ -218,15 +247,7 @@ public class UscPluginUdp extends UscPlugin {
             });
         }
 
-        try {
-            channel = directBootstrap
-                    .connect(device.getInetAddress(), device.getPort()).sync()
-                    .channel();
-        } catch (Exception e) {
-            throw e;
-        }
-
-        return channel;
+        return directBootstrap.connect(device.getInetAddress(), device.getPort());
     }
 
     @Override
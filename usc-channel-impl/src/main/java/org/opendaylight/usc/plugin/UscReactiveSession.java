@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.EventLoop;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Reactive Streams view of a {@link UscDirectSession}, opened by
+ * {@link UscPlugin#openReactiveSession}. The {@link #getPublisher() publisher}
+ * emits the data received from the device service to a single subscriber, and
+ * the {@link #getSubscriber() subscriber} writes the data of an upstream
+ * publisher to the device service.
+ *
+ * Demand is passed on to the agent in both directions. Received data is only
+ * credited back to the agent once the subscriber has requested it, so the
+ * agent stops sending after one window while the subscriber lags behind; if
+ * the agent doesn't support flow control, the agent channel stops reading
+ * instead. Data is only requested from upstream while the session is
+ * writable.
+ *
+ * All state is kept on the event loop of the agent channel. Emitted buffers
+ * belong to the subscriber, which has to release them.
+ */
+public class UscReactiveSession implements UscSessionListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UscReactiveSession.class);
+
+    /**
+     * Number of buffers requested from upstream at a time
+     */
+    static final int PREFETCH = 16;
+
+    private final Inbound inbound = new Inbound();
+    private final Outbound outbound = new Outbound();
+    private volatile UscDirectSession session;
+
+    void attach(UscDirectSession session) {
+        this.session = session;
+        session.setManualCredits(true);
+    }
+
+    /**
+     * Returns the session
+     *
+     * @return the direct session
+     */
+    public UscDirectSession getSession() {
+        return session;
+    }
+
+    /**
+     * Returns the publisher of the data received from the device service,
+     * which accepts one subscriber and closes the session when it cancels
+     *
+     * @return publisher
+     */
+    public Publisher<ByteBuf> getPublisher() {
+        return inbound;
+    }
+
+    /**
+     * Returns the subscriber writing to the device service, which closes the
+     * session when its publisher fails
+     *
+     * @return subscriber
+     */
+    public Subscriber<ByteBuf> getSubscriber() {
+        return outbound;
+    }
+
+    private static void execute(EventLoop eventLoop, Runnable task) {
+        if (eventLoop.inEventLoop()) {
+            task.run();
+        } else {
+            eventLoop.execute(task);
+        }
+    }
+
+    private EventLoop eventLoop() {
+        return session.getAgentChannel().eventLoop();
+    }
+
+    @Override
+    public void onData(UscDirectSession session, ByteBuf data) {
+        inbound.add(session, data.retain());
+    }
+
+    @Override
+    public void onError(UscDirectSession session, Throwable cause) {
+        inbound.fail(cause);
+    }
+
+    @Override
+    public void onClose(UscDirectSession session) {
+        execute(session.getAgentChannel().eventLoop(), new Runnable() {
+            @Override
+            public void run() {
+                inbound.complete();
+                outbound.cancel();
+            }
+        });
+    }
+
+    @Override
+    public void onWritabilityChanged(UscDirectSession session) {
+        outbound.requestMore();
+    }
+
+    /**
+     * Buffers the received data until the subscriber requests it
+     */
+    private class Inbound implements Publisher<ByteBuf>, Subscription {
+
+        private final ArrayDeque<ByteBuf> buffer = new ArrayDeque<>();
+        private Subscriber<? super ByteBuf> subscriber;
+        private int bufferedBytes;
+        private long demand;
+        private boolean draining;
+        private boolean paused;
+        private boolean completed;
+        private boolean terminated;
+        private Throwable failure;
+
+        @Override
+        public void subscribe(final Subscriber<? super ByteBuf> s) {
+            Objects.requireNonNull(s, "subscriber");
+            execute(eventLoop(), new Runnable() {
+                @Override
+                public void run() {
+                    if (subscriber != null || terminated) {
+                        s.onSubscribe(new Subscription() {
+                            @Override
+                            public void request(long n) {
+                            }
+
+                            @Override
+                            public void cancel() {
+                            }
+                        });
+                        s.onError(subscriber == null && failure != null ? failure : new IllegalStateException(
+                                "UscReactiveSession allows only one subscriber"));
+                        return;
+                    }
+                    subscriber = s;
+                    s.onSubscribe(Inbound.this);
+                    drain();
+                }
+            });
+        }
+
+        @Override
+        public void request(final long n) {
+            execute(eventLoop(), new Runnable() {
+                @Override
+                public void run() {
+                    if (terminated) {
+                        return;
+                    }
+                    if (n <= 0) {
+                        // the subscription is cancelled by the error
+                        fail(new IllegalArgumentException("non-positive request " + n));
+                        session.close();
+                        return;
+                    }
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    drain();
+                }
+            });
+        }
+
+        @Override
+        public void cancel() {
+            execute(eventLoop(), new Runnable() {
+                @Override
+                public void run() {
+                    if (!terminated) {
+                        terminated = true;
+                        clear();
+                        session.close();
+                    }
+                }
+            });
+        }
+
+        void add(UscDirectSession session, ByteBuf data) {
+            if (terminated) {
+                session.consumed(data.readableBytes());
+                data.release();
+                return;
+            }
+            buffer.add(data);
+            bufferedBytes += data.readableBytes();
+            if (!paused && bufferedBytes > UscSessionWindow.INITIAL_WINDOW
+                    && !session.getChannel().getCapabilities().hasFeature(Feature.FLOW_CONTROL)) {
+                // without credits only the whole agent channel can be stopped
+                paused = true;
+                session.getChannel().pauseReading();
+            }
+            drain();
+        }
+
+        void complete() {
+            completed = true;
+            drain();
+        }
+
+        void fail(Throwable cause) {
+            if (terminated) {
+                LOG.trace("UscReactiveSession ignores error after termination: " + cause);
+                return;
+            }
+            terminated = true;
+            failure = cause;
+            clear();
+            if (subscriber != null) {
+                subscriber.onError(cause);
+            }
+        }
+
+        private void drain() {
+            if (draining || subscriber == null) {
+                return;
+            }
+            draining = true;
+            try {
+                while (demand > 0 && !buffer.isEmpty() && !terminated) {
+                    final ByteBuf data = buffer.poll();
+                    final int bytes = data.readableBytes();
+                    bufferedBytes -= bytes;
+                    demand--;
+                    // the agent may send what the subscriber has accepted
+                    session.consumed(bytes);
+                    subscriber.onNext(data);
+                }
+                if (paused && bufferedBytes <= UscSessionWindow.INITIAL_WINDOW / 2) {
+                    paused = false;
+                    session.getChannel().resumeReading();
+                }
+                if (completed && buffer.isEmpty() && !terminated) {
+                    terminated = true;
+                    subscriber.onComplete();
+                }
+            } finally {
+                draining = false;
+            }
+        }
+
+        private void clear() {
+            for (ByteBuf data : buffer) {
+                ReferenceCountUtil.release(data);
+            }
+            buffer.clear();
+            bufferedBytes = 0;
+            if (paused) {
+                paused = false;
+                session.getChannel().resumeReading();
+            }
+        }
+    }
+
+    /**
+     * Requests data from upstream while the session is writable
+     */
+    private class Outbound implements Subscriber<ByteBuf> {
+
+        private Subscription subscription;
+        private long outstanding;
+
+        @Override
+        public void onSubscribe(final Subscription s) {
+            Objects.requireNonNull(s, "subscription");
+            execute(eventLoop(), new Runnable() {
+                @Override
+                public void run() {
+                    if (subscription != null || !session.isOpen()) {
+                        s.cancel();
+                        return;
+                    }
+                    subscription = s;
+                    requestMore();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(final ByteBuf data) {
+            Objects.requireNonNull(data, "data");
+            execute(eventLoop(), new Runnable() {
+                @Override
+                public void run() {
+                    outstanding--;
+                    session.writeAndFlush(data);
+                    requestMore();
+                }
+            });
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            Objects.requireNonNull(t, "throwable");
+            execute(eventLoop(), new Runnable() {
+                @Override
+                public void run() {
+                    LOG.warn("Upstream of " + session + " failed, closing it", t);
+                    subscription = null;
+                    session.close();
+                }
+            });
+        }
+
+        @Override
+        public void onComplete() {
+            execute(eventLoop(), new Runnable() {
+                @Override
+                public void run() {
+                    subscription = null;
+                }
+            });
+        }
+
+        void requestMore() {
+            if (subscription != null && outstanding <= PREFETCH / 2 && session.isWritable()) {
+                final long n = PREFETCH - outstanding;
+                outstanding = PREFETCH;
+                subscription.request(n);
+            }
+        }
+
+        void cancel() {
+            if (subscription != null) {
+                subscription.cancel();
+                subscription = null;
+            }
+        }
+    }
+
+}
@@ -90,6 +90,8 @@ public class UscRemoteServerHandler extends SimpleChannelInboundHandler<Object>
             return;
         }
 
+        // data (including a UscData payload) is released when this method
+        // returns, so hold a reference for the rest of the pipeline
         ReferenceCountUtil.retain(data);
         // propagate the data to rest of handlers in pipeline
         ctx.fireChannelRead(data);
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import org.opendaylight.usc.plugin.model.UscSessionImpl;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscControl;
+
+/**
+ * This class returns the credits of a session to the agent from the client
+ * channel of the session, once the client pipeline has read and processed the
+ * data. Writing to the local channel completes as soon as the data is queued
+ * for the client, so returning the credits then would let a slow client fill
+ * the heap; here the agent stops sending while the client doesn't read, e.g.
+ * because it turned off auto read.
+ */
+public class UscSessionCreditHandler extends ChannelInboundHandlerAdapter {
+
+    private final UscSessionImpl session;
+
+    /**
+     * Constructs a new UscSessionCreditHandler
+     *
+     * @param session
+     *            the session whose data the client channel reads
+     */
+    public UscSessionCreditHandler(UscSessionImpl session) {
+        this.session = session;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        // the rest of the pipeline may release the data
+        final int bytes = msg instanceof ByteBuf ? ((ByteBuf) msg).readableBytes() : 0;
+        ctx.fireChannelRead(msg);
+        if (bytes > 0 && session.getChannel().getCapabilities().hasFeature(Feature.FLOW_CONTROL)) {
+            final int increment = session.getWindow().received(bytes);
+            if (increment > 0) {
+                session.getChannel().getChannel()
+                        .writeAndFlush(UscControl.windowUpdate(session.getPort(), session.getSessionId(), increment));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.AbstractEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+
+import java.net.SocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The child group of the local server of a plugin. It registers the server
+ * side of a session on the event loop its client was assigned to by
+ * {@link #assign(SocketAddress, EventLoop)}, which is the event loop of the
+ * agent channel of the session, so that frames pass between the session and
+ * the agent channel without a task queue handoff. All other channels are
+ * registered on the shared local group.
+ *
+ * The wrapped group is shared, so this group is never shut down itself.
+ */
+public class UscSessionEventLoopGroup extends AbstractEventExecutorGroup implements EventLoopGroup {
+
+    private final EventLoopGroup delegate;
+
+    /**
+     * Event loop by the local address of the client of a session
+     */
+    private final ConcurrentMap<SocketAddress, EventLoop> assignments = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new UscSessionEventLoopGroup
+     *
+     * @param delegate
+     *            the group of the channels without an assigned event loop
+     */
+    public UscSessionEventLoopGroup(EventLoopGroup delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Assigns the server side of a session to an event loop before the client
+     * connects
+     *
+     * @param clientAddress
+     *            the local address the client connects from
+     * @param eventLoop
+     *            the event loop of the agent channel
+     */
+    public void assign(SocketAddress clientAddress, EventLoop eventLoop) {
+        assignments.put(clientAddress, eventLoop);
+    }
+
+    /**
+     * Removes the assignment of a client which failed to connect
+     *
+     * @param clientAddress
+     *            the local address of the client
+     */
+    public void unassign(SocketAddress clientAddress) {
+        assignments.remove(clientAddress);
+    }
+
+    @Override
+    public ChannelFuture register(Channel channel) {
+        // the server side of a local channel has the client address as its
+        // remote address
+        final EventLoop eventLoop = channel.remoteAddress() != null ? assignments.remove(channel.remoteAddress())
+                : null;
+        return eventLoop != null ? eventLoop.register(channel) : delegate.register(channel);
+    }
+
+    @Override
+    public ChannelFuture register(ChannelPromise promise) {
+        final Channel channel = promise.channel();
+        final EventLoop eventLoop = channel.remoteAddress() != null ? assignments.remove(channel.remoteAddress())
+                : null;
+        return eventLoop != null ? eventLoop.register(promise) : delegate.register(promise);
+    }
+
+    @Deprecated
+    @Override
+    public ChannelFuture register(Channel channel, ChannelPromise promise) {
+        return register(promise);
+    }
+
+    @Override
+    public EventLoop next() {
+        return delegate.next();
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return delegate.iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return delegate.isShuttingDown();
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        // the shared group is shut down by its owner
+        return delegate.terminationFuture();
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return delegate.terminationFuture();
+    }
+
+    @Deprecated
+    @Override
+    public void shutdown() {
+        // the shared group is shut down by its owner
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free allocator of the session IDs of one agent channel, which keeps
+ * a bitmap of the IDs in use. It always hands out the lowest free ID, so IDs
+ * are assigned in sequential order on a new channel and a closed ID is reused
+ * first. A hint to the lowest word which may have a free bit makes both cases
+ * constant time.
+ */
+public class UscSessionIdAllocator {
+
+    /**
+     * The largest valid session ID; 0 is never allocated.
+     */
+    public static final int MAX_SESSION_ID = Character.MAX_VALUE;
+
+    private static final int WORDS = (MAX_SESSION_ID + 1) / Long.SIZE;
+    private static final long FULL = -1L;
+
+    private final AtomicLongArray used = new AtomicLongArray(WORDS);
+
+    /**
+     * All words below the hint are full
+     */
+    private final AtomicInteger hint = new AtomicInteger();
+
+    /**
+     * Constructs a new UscSessionIdAllocator with all IDs free
+     */
+    public UscSessionIdAllocator() {
+        // session ID 0 is reserved
+        used.set(0, 1L);
+    }
+
+    /**
+     * Allocates the lowest free session ID
+     *
+     * @return the session ID, or 0 if all IDs are in use
+     */
+    public int allocate() {
+        for (int index = hint.get(); index < WORDS; ++index) {
+            long word;
+            while ((word = used.get(index)) != FULL) {
+                final long bit = Long.lowestOneBit(~word);
+                if (used.compareAndSet(index, word, word | bit)) {
+                    raiseHint(index, word | bit);
+                    return index * Long.SIZE + Long.numberOfTrailingZeros(bit);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Frees a session ID for reuse
+     *
+     * @param sessionId
+     *            the session ID returned by {@link #allocate()}
+     */
+    public void free(int sessionId) {
+        if (sessionId <= 0 || sessionId > MAX_SESSION_ID) {
+            return;
+        }
+        final int index = sessionId / Long.SIZE;
+        final long bit = 1L << (sessionId % Long.SIZE);
+        long word;
+        do {
+            word = used.get(index);
+        } while ((word & bit) != 0 && !used.compareAndSet(index, word, word & ~bit));
+        lowerHint(index);
+    }
+
+    private void raiseHint(int index, long word) {
+        if (word == FULL && hint.compareAndSet(index, index + 1) && used.get(index) != FULL) {
+            // an ID was freed before the hint moved past it
+            lowerHint(index);
+        }
+    }
+
+    private void lowerHint(int index) {
+        int current;
+        while ((current = hint.get()) > index && !hint.compareAndSet(current, index)) {
+            // retry
+        }
+    }
+
+    /**
+     * Returns whether a session ID is in use
+     *
+     * @param sessionId
+     *            the session ID
+     * @return true if allocated
+     */
+    public boolean isAllocated(int sessionId) {
+        if (sessionId <= 0 || sessionId > MAX_SESSION_ID) {
+            return false;
+        }
+        return (used.get(sessionId / Long.SIZE) & (1L << (sessionId % Long.SIZE))) != 0;
+    }
+
+}
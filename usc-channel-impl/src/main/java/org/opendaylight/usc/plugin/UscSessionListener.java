@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Receives the traffic of a {@link UscDirectSession}. The methods are called
+ * on the event loop of the agent channel of the session, except for
+ * {@link #onClose(UscDirectSession)} after a local close, so they must not
+ * block.
+ */
+public interface UscSessionListener {
+
+    /**
+     * Called for each payload received from the device service
+     *
+     * @param session
+     *            the session
+     * @param data
+     *            the payload, which is released once this method returns, so
+     *            it must be retained to be kept
+     */
+    public abstract void onData(UscDirectSession session, ByteBuf data);
+
+    /**
+     * Called when the agent reports an error in the session or the agent
+     * channel fails
+     *
+     * @param session
+     *            the session
+     * @param cause
+     *            the error
+     */
+    public abstract void onError(UscDirectSession session, Throwable cause);
+
+    /**
+     * Called once when the session is closed, by either side or by the agent
+     * channel going down
+     *
+     * @param session
+     *            the session
+     */
+    public abstract void onClose(UscDirectSession session);
+
+    /**
+     * Called when {@link UscDirectSession#isWritable()} may have changed,
+     * after the agent returned credits or the agent channel drained or backed
+     * up
+     *
+     * @param session
+     *            the session
+     */
+    public default void onWritabilityChanged(UscDirectSession session) {
+    }
+
+}
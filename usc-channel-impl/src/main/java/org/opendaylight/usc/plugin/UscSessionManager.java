@@ -12,7 +12,6 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.local.LocalChannel;
 
 import java.util.Collection;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.opendaylight.usc.manager.monitor.evt.UscSessionCloseEvent;
 import org.opendaylight.usc.manager.monitor.evt.UscSessionCreateEvent;
@@ -34,13 +33,24 @@ public abstract class UscSessionManager {
     private final UscPlugin plugin;
 
     /**
-     * One session manager is created per connection, so the session IDs here
-     * are unique
+     * One session manager is created per connection, and the connections to
+     * a device share their allocator, so the session IDs here are unique
      */
-    private final ConcurrentHashMap<Integer, UscSessionImpl> sessions = new ConcurrentHashMap<>();
+    private final UscSessionTable sessions;
 
     protected UscSessionManager(UscPlugin plugin) {
+        this(plugin, new UscSessionIdAllocator());
+    }
+
+    /**
+     * The connections to one device share their session IDs
+     * 
+     * @param plugin
+     * @param sessionIds
+     */
+    protected UscSessionManager(UscPlugin plugin, UscSessionIdAllocator sessionIds) {
         this.plugin = plugin;
+        this.sessions = new UscSessionTable(sessionIds);
     }
 
     /**
@@ -51,44 +61,64 @@ public abstract class UscSessionManager {
      * @return
      */
     public UscSessionImpl addSession(int port, LocalChannel channel) {
+        final int sessionId = allocateSessionId();
+        final UscSessionImpl session = createSession(sessionId, port, channel);
+        sessions.put(session);
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                removeSession(sessionId);
+                log.trace("serverChannel for session " + sessionId + " closed");
+            }
+        });
+
+        plugin.sendEvent(new UscSessionCreateEvent(session));
+
+        return session;
+    }
+
+    /**
+     * Add a session which is written and read directly by a consumer in this
+     * VM. It is removed by {@link UscDirectSession#close()}.
+     * 
+     * @param port
+     * @param listener
+     * @return
+     */
+    public UscDirectSession addDirectSession(int port, UscSessionListener listener) {
+        final UscDirectSession session = createDirectSession(plugin, allocateSessionId(), port, listener);
+        sessions.put(session);
+
+        plugin.sendEvent(new UscSessionCreateEvent(session));
+
+        return session;
+    }
+
+    private int allocateSessionId() {
         // generate unique session ID for this agent
         // valid session ID range is 1 to 65535
-        // always assign in sequential order for ease of testing
-        for (int sessionId = 1; sessionId <= Character.MAX_VALUE; ++sessionId) {
-            // standard idiom for double-checked locking
-            if (!sessions.containsKey(sessionId)) {
-                final UscSessionImpl session = createSession(sessionId, port, channel);
-                if (sessions.putIfAbsent(sessionId, session) == null) {
-                	final int sId = sessionId;
-                    channel.closeFuture().addListener(new ChannelFutureListener() {
-                        @Override
-                        public void operationComplete(ChannelFuture future) throws Exception {
-                            removeSession(sId);
-                            log.trace("serverChannel for session " + sId + " closed");
-                        }
-                    });
-
-                    plugin.sendEvent(new UscSessionCreateEvent(session));
-
-                    return session;
-                }
-            }
+        // always assign the lowest free ID for ease of testing
+        final int sessionId = sessions.allocate();
+        if (sessionId == 0) {
+            throw new RuntimeException("out of available session IDs");
         }
-        
-        throw new RuntimeException("out of available session IDs");
+        return sessionId;
     }
 
     /**
      * Remove all sessions from this manager.
      */
     public void removeAllSessions() {
-        sessions.keySet().stream().forEach(this::removeSession);
+        sessions.values().stream().mapToInt(UscSessionImpl::getSessionId).forEach(this::removeSession);
     }
 
     public UscSession removeSession(int sessionId) {
         UscSessionImpl session = sessions.remove(sessionId);
         if (session != null) {
             plugin.sendEvent(new UscSessionCloseEvent(session));
+            if (session instanceof UscDirectSession) {
+                ((UscDirectSession) session).removed();
+            }
         }
         return session;
     }
@@ -118,4 +148,7 @@ public abstract class UscSessionManager {
 
     protected abstract UscSessionImpl createSession(int sessionId, int port, LocalChannel channel);
 
+    protected abstract UscDirectSession createDirectSession(UscPlugin plugin, int sessionId, int port,
+            UscSessionListener listener);
+
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.opendaylight.usc.protocol.UscControl;
+import org.opendaylight.usc.protocol.UscData;
+import org.opendaylight.usc.protocol.UscFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class schedules the UscData packets of the sessions sharing an agent
+ * channel by deficit round robin, instead of sending them in the order they
+ * were written. Every round a session may send up to its weight times the
+ * quantum in bytes, and the weight of a session is configured per application
+ * port, so that e.g. NETCONF sessions get a larger share than bulk syslog
+ * transfers.
+ *
+ * Frames are only held back while the agent channel isn't writable. The
+ * control and error frames of a session, e.g. its TERMINATION_REQUEST, are
+ * queued behind the data of the session still waiting, so that the agent
+ * never closes the device connection before the data is sent. Only the frames
+ * concerning the whole channel (HELLO, ECHO and WINDOW_UPDATE, which returns
+ * credits for the opposite direction) overtake the queued data.
+ */
+public class UscSessionScheduler extends ChannelDuplexHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(UscSessionScheduler.class);
+
+    /**
+     * Default number of bytes a session of weight 1 may send per round.
+     */
+    public static final int DEFAULT_QUANTUM = 16 * 1024;
+
+    /**
+     * Weight of the sessions to ports without a configured weight.
+     */
+    public static final int DEFAULT_WEIGHT = 1;
+
+    private final int quantum;
+    private final Map<Integer, Integer> portWeights;
+
+    /**
+     * Queues of all sessions with pending frames; read from other threads to
+     * expose the queue depth
+     */
+    private final Map<Integer, SessionQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Sessions with pending frames in round robin order
+     */
+    private final ArrayDeque<SessionQueue> activeQueues = new ArrayDeque<>();
+
+    private static class SessionQueue {
+        private final int sessionId;
+        private final int weight;
+        private final ArrayDeque<UscFrame> frames = new ArrayDeque<>();
+        private final ArrayDeque<ChannelPromise> promises = new ArrayDeque<>();
+        private volatile int queuedFrames;
+        private volatile int queuedBytes;
+        private int deficit;
+
+        SessionQueue(int sessionId, int weight) {
+            this.sessionId = sessionId;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Constructs a new UscSessionScheduler with the default quantum, giving
+     * all sessions the same weight
+     */
+    public UscSessionScheduler() {
+        this(DEFAULT_QUANTUM, Collections.<Integer, Integer> emptyMap());
+    }
+
+    /**
+     * Constructs a new UscSessionScheduler
+     *
+     * @param quantum
+     *            the number of bytes a session of weight 1 may send per round
+     * @param portWeights
+     *            the weights of the sessions by application port
+     */
+    public UscSessionScheduler(int quantum, Map<Integer, Integer> portWeights) {
+        this.quantum = quantum;
+        this.portWeights = portWeights;
+    }
+
+    /**
+     * Parses session weights of the form "port:weight,port:weight", skipping
+     * invalid entries
+     *
+     * @param value
+     *            the configured weights, or null
+     * @return the weights by application port
+     */
+    public static Map<Integer, Integer> parseWeights(String value) {
+        final Map<Integer, Integer> weights = new HashMap<>();
+        if (value == null) {
+            return weights;
+        }
+        for (String entry : value.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            final String[] pair = entry.trim().split(":");
+            try {
+                final int weight = pair.length == 2 ? Integer.parseInt(pair[1].trim()) : 0;
+                if (weight > 0) {
+                    weights.put(Integer.parseInt(pair[0].trim()), weight);
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                // logged below
+            }
+            log.warn("UscSessionScheduler ignores invalid session weight " + entry);
+        }
+        return weights;
+    }
+
+    private int getWeight(int port) {
+        final Integer weight = portWeights.get(port);
+        return weight == null ? DEFAULT_WEIGHT : weight;
+    }
+
+    private static boolean isChannelFrame(Object msg) {
+        if (!(msg instanceof UscFrame) || ((UscFrame) msg).getHeader().getSessionId() == 0) {
+            return true;
+        }
+        if (!(msg instanceof UscControl)) {
+            return false;
+        }
+        switch (((UscControl) msg).getControlCode()) {
+        case ECHO:
+        case HELLO_REQUEST:
+        case HELLO_RESPONSE:
+        case WINDOW_UPDATE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (isChannelFrame(msg)) {
+            // channel control traffic overtakes the queued data
+            ctx.write(msg, promise);
+            return;
+        }
+        final UscFrame frame = (UscFrame) msg;
+        final int sessionId = frame.getHeader().getSessionId();
+        SessionQueue queue = queues.get(sessionId);
+        if (queue == null) {
+            if (!(frame instanceof UscData)) {
+                // no data of the session is waiting
+                ctx.write(msg, promise);
+                return;
+            }
+            queue = new SessionQueue(sessionId, getWeight(frame.getHeader().getApplicationPort()));
+            queues.put(sessionId, queue);
+            activeQueues.add(queue);
+        }
+        queue.frames.add(frame);
+        queue.promises.add(promise);
+        queue.queuedFrames++;
+        queue.queuedBytes += frame.length();
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        drain(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            drain(ctx);
+            ctx.flush();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        while (!activeQueues.isEmpty() && ctx.channel().isWritable()) {
+            final SessionQueue queue = activeQueues.poll();
+            queue.deficit += quantum * queue.weight;
+            UscFrame frame;
+            while ((frame = queue.frames.peek()) != null && frame.length() <= queue.deficit) {
+                queue.frames.poll();
+                queue.deficit -= frame.length();
+                queue.queuedFrames--;
+                queue.queuedBytes -= frame.length();
+                ctx.write(frame, queue.promises.poll());
+            }
+            if (queue.frames.isEmpty()) {
+                queues.remove(queue.sessionId);
+            } else {
+                activeQueues.add(queue);
+            }
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        final ClosedChannelException cause = new ClosedChannelException();
+        for (SessionQueue queue : activeQueues) {
+            UscFrame frame;
+            while ((frame = queue.frames.poll()) != null) {
+                ReferenceCountUtil.release(frame);
+                queue.promises.poll().tryFailure(cause);
+            }
+        }
+        activeQueues.clear();
+        queues.clear();
+    }
+
+    /**
+     * Returns the number of frames of a session waiting to be sent
+     *
+     * @param sessionId
+     *            the session ID
+     * @return queued frames
+     */
+    public int getQueuedFrames(int sessionId) {
+        final SessionQueue queue = queues.get(sessionId);
+        return queue == null ? 0 : queue.queuedFrames;
+    }
+
+    /**
+     * Returns the number of bytes of a session waiting to be sent
+     *
+     * @param sessionId
+     *            the session ID
+     * @return queued bytes
+     */
+    public int getQueuedBytes(int sessionId) {
+        final SessionQueue queue = queues.get(sessionId);
+        return queue == null ? 0 : queue.queuedBytes;
+    }
+
+}
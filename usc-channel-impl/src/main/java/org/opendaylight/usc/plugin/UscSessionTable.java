@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.opendaylight.usc.plugin.model.UscSessionImpl;
+
+/**
+ * The sessions of one agent channel, indexed by session ID. The table is a
+ * flat array split into pages which are allocated as the IDs grow, so a
+ * channel with few sessions stays small, and lookups neither lock nor box the
+ * session ID.
+ */
+public class UscSessionTable {
+
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final UscSessionIdAllocator sessionIds;
+    private final AtomicReferenceArray<AtomicReferenceArray<UscSessionImpl>> pages = new AtomicReferenceArray<>(
+            (UscSessionIdAllocator.MAX_SESSION_ID >> PAGE_BITS) + 1);
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Constructs a new UscSessionTable with its own session IDs
+     */
+    public UscSessionTable() {
+        this(new UscSessionIdAllocator());
+    }
+
+    /**
+     * Constructs a new UscSessionTable which takes its session IDs from an
+     * allocator shared with other tables
+     *
+     * @param sessionIds
+     *            the session ID allocator
+     */
+    public UscSessionTable(UscSessionIdAllocator sessionIds) {
+        this.sessionIds = sessionIds;
+    }
+
+    /**
+     * Allocates the lowest free session ID
+     *
+     * @return the session ID, or 0 if all IDs are in use
+     */
+    public int allocate() {
+        return sessionIds.allocate();
+    }
+
+    /**
+     * Stores the session of an allocated session ID
+     *
+     * @param session
+     *            the session
+     */
+    public void put(UscSessionImpl session) {
+        getPage(session.getSessionId(), true).set(session.getSessionId() & PAGE_MASK, session);
+        size.incrementAndGet();
+    }
+
+    /**
+     * Returns the session of a session ID
+     *
+     * @param sessionId
+     *            the session ID
+     * @return the session, or null
+     */
+    public UscSessionImpl get(int sessionId) {
+        if (sessionId <= 0 || sessionId > UscSessionIdAllocator.MAX_SESSION_ID) {
+            return null;
+        }
+        final AtomicReferenceArray<UscSessionImpl> page = pages.get(sessionId >> PAGE_BITS);
+        return page == null ? null : page.get(sessionId & PAGE_MASK);
+    }
+
+    /**
+     * Removes a session and frees its session ID for reuse
+     *
+     * @param sessionId
+     *            the session ID
+     * @return the removed session, or null if there was none
+     */
+    public UscSessionImpl remove(int sessionId) {
+        final UscSessionImpl session = get(sessionId);
+        // only the first remove frees the session ID
+        if (session != null && getPage(sessionId, false).compareAndSet(sessionId & PAGE_MASK, session, null)) {
+            size.decrementAndGet();
+            sessionIds.free(sessionId);
+            return session;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a snapshot of all sessions
+     *
+     * @return the sessions in order of their session IDs
+     */
+    public List<UscSessionImpl> values() {
+        final List<UscSessionImpl> result = new ArrayList<>(size.get());
+        for (int i = 0; i < pages.length(); ++i) {
+            final AtomicReferenceArray<UscSessionImpl> page = pages.get(i);
+            for (int j = 0; page != null && j < PAGE_SIZE; ++j) {
+                final UscSessionImpl session = page.get(j);
+                if (session != null) {
+                    result.add(session);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of sessions
+     *
+     * @return session count
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private AtomicReferenceArray<UscSessionImpl> getPage(int sessionId, boolean create) {
+        final int index = sessionId >> PAGE_BITS;
+        AtomicReferenceArray<UscSessionImpl> page = pages.get(index);
+        if (page == null && create) {
+            pages.compareAndSet(index, null, new AtomicReferenceArray<UscSessionImpl>(PAGE_SIZE));
+            page = pages.get(index);
+        }
+        return page;
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.plugin;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The credit based flow control state of one session on a shared agent
+ * channel. The sender may have at most one window of payload bytes in flight;
+ * the receiver returns credits in WINDOW_UPDATE control messages once it has
+ * handed the bytes on. The channel the session reads its data from stops
+ * reading while the sender is out of credits, so one bulk session can't fill
+ * the agent channel ahead of the others, and while the agent channel isn't
+ * writable, so a slow agent can't fill the heap.
+ *
+ * Credits are consumed and replenished from different event loops.
+ */
+public class UscSessionWindow {
+
+    /**
+     * Number of payload bytes a sender may send before it has to wait for a
+     * WINDOW_UPDATE.
+     */
+    public static final int INITIAL_WINDOW = 256 * 1024;
+
+    /**
+     * Number of received bytes the receiver collects before it returns them in
+     * one WINDOW_UPDATE.
+     */
+    public static final int UPDATE_THRESHOLD = INITIAL_WINDOW / 4;
+
+    private final AtomicInteger sendCredits = new AtomicInteger(INITIAL_WINDOW);
+    private final AtomicInteger receivedBytes = new AtomicInteger();
+
+    /**
+     * Consumes credits for payload bytes sent
+     *
+     * @param bytes
+     *            the number of payload bytes sent
+     */
+    public void consume(int bytes) {
+        sendCredits.addAndGet(-bytes);
+    }
+
+    /**
+     * Adds the credits of a WINDOW_UPDATE
+     *
+     * @param increment
+     *            the number of credits returned by the peer
+     */
+    public void replenish(int increment) {
+        sendCredits.addAndGet(increment);
+    }
+
+    /**
+     * Stops or resumes reading from the source channel of the session, which
+     * only reads while there are credits left and the channel its data is sent
+     * on is writable
+     *
+     * @param source
+     *            the channel the session reads its data from
+     * @param sink
+     *            the channel the session sends its data on
+     */
+    public void update(Channel source, Channel sink) {
+        if (canRead(sink)) {
+            source.config().setAutoRead(true);
+            return;
+        }
+        source.config().setAutoRead(false);
+        // credits or writability may have come back before reading stopped
+        if (canRead(sink)) {
+            source.config().setAutoRead(true);
+        }
+    }
+
+    private boolean canRead(Channel sink) {
+        return sendCredits.get() > 0 && sink.isWritable();
+    }
+
+    /**
+     * Records payload bytes the receiver has handed on
+     *
+     * @param bytes
+     *            the number of payload bytes
+     * @return the credits to return in a WINDOW_UPDATE now, or 0 to wait for
+     *         more
+     */
+    public int received(int bytes) {
+        if (receivedBytes.addAndGet(bytes) < UPDATE_THRESHOLD) {
+            return 0;
+        }
+        return receivedBytes.getAndSet(0);
+    }
+
+    /**
+     * Returns the credits left for sending
+     *
+     * @return send credits, which are negative once the window is overrun
+     */
+    public int getSendCredits() {
+        return sendCredits.get();
+    }
+
+}
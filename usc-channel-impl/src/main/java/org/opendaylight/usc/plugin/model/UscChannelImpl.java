@@ -10,8 +10,13 @@ package org.opendaylight.usc.plugin.model;
 import io.netty.channel.Channel;
 import io.netty.channel.local.LocalChannel;
 
+import org.opendaylight.usc.plugin.UscDirectSession;
 import org.opendaylight.usc.plugin.UscPlugin;
+import org.opendaylight.usc.plugin.UscSessionIdAllocator;
+import org.opendaylight.usc.plugin.UscSessionListener;
 import org.opendaylight.usc.plugin.UscSessionManager;
+import org.opendaylight.usc.protocol.UscCapabilities;
+import org.opendaylight.usc.protocol.UscControl;
 
 /**
  * Implementation of a physical USC channel.
@@ -23,6 +28,12 @@ public class UscChannelImpl extends UscSessionManager implements UscChannel {
     private final boolean isCallHome;
     private final ChannelType type;
 
+    /**
+     * Number of sessions which currently can't take more data from the agent
+     * channel; only changed on its event loop
+     */
+    private int readPauses;
+
     /**
      * Constructs a new UscChannelImpl.
      * 
@@ -33,7 +44,23 @@ public class UscChannelImpl extends UscSessionManager implements UscChannel {
      * @param type
      */
     public UscChannelImpl(UscPlugin plugin, UscDevice device, Channel channel, boolean isCallHome, ChannelType type) {
-        super(plugin);
+        this(plugin, device, channel, isCallHome, type, new UscSessionIdAllocator());
+    }
+
+    /**
+     * Constructs a new UscChannelImpl in a pool of connections to the device.
+     * 
+     * @param plugin
+     * @param device
+     * @param channel
+     * @param isCallHome
+     * @param type
+     * @param sessionIds
+     *            the session IDs shared by the pool
+     */
+    public UscChannelImpl(UscPlugin plugin, UscDevice device, Channel channel, boolean isCallHome, ChannelType type,
+            UscSessionIdAllocator sessionIds) {
+        super(plugin, sessionIds);
         this.device = device;
         this.channel = channel;
         this.isCallHome = isCallHome;
@@ -47,6 +74,12 @@ public class UscChannelImpl extends UscSessionManager implements UscChannel {
         return new UscSessionImpl(this, sessionId, port, channel);
     }
 
+    @Override
+    protected UscDirectSession createDirectSession(UscPlugin plugin, int sessionId, int port,
+            UscSessionListener listener) {
+        return new UscDirectSession(plugin, this, sessionId, port, listener);
+    }
+
     @Override
     public UscDevice getDevice() {
         return device;
@@ -66,4 +99,65 @@ public class UscChannelImpl extends UscSessionManager implements UscChannel {
         return type;
     }
 
+    /**
+     * The capabilities negotiated with the agent, or
+     * {@link UscCapabilities#NONE} until the agent has answered HELLO.
+     * 
+     * @return capabilities
+     */
+    public UscCapabilities getCapabilities() {
+        return UscPlugin.getCapabilities(channel);
+    }
+
+    /**
+     * Stores the capabilities negotiated with the agent and switches the
+     * channel to the negotiated protocol version.
+     * 
+     * @param capabilities
+     */
+    public void setCapabilities(UscCapabilities capabilities) {
+        UscPlugin.setCapabilities(channel, capabilities);
+    }
+
+    /**
+     * The largest payload of the USC DATA frames written to this channel.
+     * 
+     * @return max payload size in bytes
+     */
+    public int getMaxPayloadSize() {
+        return Math.min(UscPlugin.getMaxPayloadSize(channel), getCapabilities().getMaxPayloadSize());
+    }
+
+    /**
+     * Stops reading from the agent channel until every caller has called
+     * {@link #resumeReading()}. This is the only backpressure for a session
+     * without flow control, and it stalls all sessions of the channel. Must be
+     * called on the event loop of the agent channel.
+     */
+    public void pauseReading() {
+        if (readPauses++ == 0) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    /**
+     * Resumes reading from the agent channel once the last caller of
+     * {@link #pauseReading()} has resumed. Must be called on the event loop
+     * of the agent channel.
+     */
+    public void resumeReading() {
+        if (readPauses > 0 && --readPauses == 0) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * Advertises the capabilities of this node to the agent. Older agents
+     * ignore the request, which leaves the channel without optional features.
+     */
+    public void sendHelloRequest() {
+        channel.writeAndFlush(new UscControl(0, 0, UscControl.ControlCode.HELLO_REQUEST.getCode(), UscPlugin
+                .getLocalCapabilities(channel)));
+    }
+
 }
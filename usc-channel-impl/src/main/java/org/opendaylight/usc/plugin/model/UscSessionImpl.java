@@ -9,6 +9,9 @@ package org.opendaylight.usc.plugin.model;
 
 import io.netty.channel.local.LocalChannel;
 
+import org.opendaylight.usc.plugin.UscSessionScheduler;
+import org.opendaylight.usc.plugin.UscSessionWindow;
+
 /**
  * Implementation of a USC Session.
  */
@@ -18,6 +21,7 @@ public class UscSessionImpl implements UscSession {
     private final int sessionId;
     private final int port;
     private final LocalChannel serverChannel;
+    private final UscSessionWindow window = new UscSessionWindow();
 
     /**
      * Constructs a new UscSessionImpl
@@ -59,4 +63,24 @@ public class UscSessionImpl implements UscSession {
         return serverChannel;
     }
 
+    /**
+     * Returns the flow control window of this session
+     * 
+     * @return flow control window
+     */
+    public UscSessionWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Returns the number of frames of this session waiting to be sent on the
+     * agent channel
+     * 
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        final UscSessionScheduler scheduler = connection.getChannel().pipeline().get(UscSessionScheduler.class);
+        return scheduler == null ? 0 : scheduler.getQueuedFrames(sessionId);
+    }
+
 }
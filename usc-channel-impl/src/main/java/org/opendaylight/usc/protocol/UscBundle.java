@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opendaylight.usc.protocol.UscHeader.OperationType;
+
+/**
+ * An USC bundle packet, which carries several complete USC frames in its
+ * payload so that they can share one datagram.
+ *
+ * Like UscData, the reference count of a UscBundle is the reference count of
+ * its payload.
+ */
+public class UscBundle extends UscFrame implements ReferenceCounted {
+
+    private final ByteBuf payload;
+
+    /**
+     * Constructs a new UscBundle
+     *
+     * @param payload
+     *            the encoded frames
+     */
+    public UscBundle(ByteBuf payload) {
+        super(OperationType.BUNDLE, 0, 0, payload.readableBytes());
+        this.payload = payload;
+    }
+
+    /**
+     * Packs frames into a new bundle. The frames are released once they are
+     * encoded.
+     *
+     * @param alloc
+     *            the allocator of the channel the bundle is written to
+     * @param frames
+     *            the frames to pack, in order
+     * @param uscVersion
+     *            the USC version spoken by the receiving peer
+     * @return the bundle
+     */
+    public static UscBundle create(ByteBufAllocator alloc, List<? extends UscFrame> frames, int uscVersion) {
+        int length = 0;
+        for (UscFrame frame : frames) {
+            length += frame.length();
+        }
+        final ByteBuf payload = alloc.buffer(length);
+        for (UscFrame frame : frames) {
+            frame.encodeTo(payload, uscVersion);
+            ReferenceCountUtil.release(frame);
+        }
+        return new UscBundle(payload);
+    }
+
+    /**
+     * Unpacks the frames of this bundle. The bundle itself must still be
+     * released by the caller.
+     *
+     * @param retainPayload
+     *            if true, the payloads of DATA frames are retained slices of
+     *            the bundle instead of copies
+     * @return the frames, in order
+     * @throws IOException
+     *             if the bundle ends in the middle of a frame or nests
+     *             another bundle
+     */
+    public List<UscFrame> getFrames(boolean retainPayload) throws IOException {
+        final List<UscFrame> frames = new ArrayList<>();
+        final ByteBuf in = payload.duplicate();
+        try {
+            while (in.isReadable()) {
+                if (in.readableBytes() < UscHeader.HEADER_LENGTH) {
+                    throw new IOException("truncated frame header in " + this);
+                }
+                final UscHeader header = UscHeader.fromByteBuffer(in.nioBuffer(in.readerIndex(),
+                        UscHeader.HEADER_LENGTH));
+                final int length = UscHeader.HEADER_LENGTH + header.getPayloadLength();
+                if (in.readableBytes() < length || header.getOperationType() == OperationType.BUNDLE) {
+                    throw new IOException("malformed " + header.getOperationType() + " frame of length " + length
+                            + " in " + this);
+                }
+                frames.add(UscFrame.getFromByteBuf(in.readSlice(length), retainPayload));
+            }
+        } catch (IOException e) {
+            // don't leak the payloads of the frames decoded so far
+            for (UscFrame frame : frames) {
+                ReferenceCountUtil.release(frame);
+            }
+            throw e;
+        }
+        return frames;
+    }
+
+    @Override
+    public ByteBuf getPayload() {
+        return payload;
+    }
+
+    @Override
+    public int refCnt() {
+        return payload.refCnt();
+    }
+
+    @Override
+    public UscBundle retain() {
+        payload.retain();
+        return this;
+    }
+
+    @Override
+    public UscBundle retain(int increment) {
+        payload.retain(increment);
+        return this;
+    }
+
+    @Override
+    public UscBundle touch() {
+        payload.touch();
+        return this;
+    }
+
+    @Override
+    public UscBundle touch(Object hint) {
+        payload.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return payload.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return payload.release(decrement);
+    }
+
+    @Override
+    public String toString() {
+        return "UscBundle(" + payload + ")";
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.protocol;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * The optional features a USC peer supports, as exchanged in HELLO control
+ * messages.
+ */
+public class UscCapabilities {
+
+    /**
+     * Optional features, each one bit of the features field.
+     */
+    public static enum Feature {
+        COMPRESSION(1), BUNDLING(1 << 1), FLOW_CONTROL(1 << 2), FRAGMENTATION(1 << 3);
+
+        private final int mask;
+
+        private Feature(int mask) {
+            this.mask = mask;
+        }
+
+        public int getMask() {
+            return mask;
+        }
+    }
+
+    /**
+     * Length of the capabilities in a HELLO payload in bytes.
+     */
+    public static final int PAYLOAD_LENGTH = 10;
+
+    /**
+     * The capabilities assumed for a peer which hasn't answered HELLO, such
+     * as an older agent.
+     */
+    public static final UscCapabilities NONE = new UscCapabilities(UscHeader.USC_VERSION, 0,
+            UscHeader.MAX_PAYLOAD_LENGTH_V2);
+
+    private final int uscVersion;
+    private final int features;
+    private final int maxPayloadSize;
+
+    /**
+     * Constructs a new UscCapabilities
+     *
+     * @param uscVersion
+     *            the highest USC protocol version supported
+     * @param features
+     *            the bitwise OR of the masks of the supported features
+     * @param maxPayloadSize
+     *            the largest frame payload accepted, in bytes
+     */
+    public UscCapabilities(int uscVersion, int features, int maxPayloadSize) {
+        this.uscVersion = uscVersion;
+        this.features = features;
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    public int getUscVersion() {
+        return uscVersion;
+    }
+
+    public int getFeatures() {
+        return features;
+    }
+
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    public boolean hasFeature(Feature feature) {
+        return (features & feature.getMask()) != 0;
+    }
+
+    /**
+     * Returns a copy of these capabilities with the given feature added
+     *
+     * @param feature
+     * @return the resulting capabilities
+     */
+    public UscCapabilities with(Feature feature) {
+        return new UscCapabilities(uscVersion, features | feature.getMask(), maxPayloadSize);
+    }
+
+    /**
+     * Computes the capabilities both this side and the peer support
+     *
+     * @param remote
+     *            the capabilities advertised by the peer
+     * @return the negotiated capabilities
+     */
+    public UscCapabilities negotiate(UscCapabilities remote) {
+        return new UscCapabilities(Math.min(uscVersion, remote.uscVersion), features & remote.features, Math.min(
+                maxPayloadSize, remote.maxPayloadSize));
+    }
+
+    /**
+     * Reads capabilities from a HELLO payload
+     *
+     * @param in
+     *            the buffer to read from, at its reader index
+     * @return the capabilities
+     */
+    public static UscCapabilities readFrom(ByteBuf in) {
+        final int uscVersion = in.readUnsignedShort();
+        final int features = in.readInt();
+        final int maxPayloadSize = in.readInt();
+        return new UscCapabilities(uscVersion, features, maxPayloadSize);
+    }
+
+    /**
+     * Writes these capabilities into a HELLO payload
+     *
+     * @param out
+     *            the buffer to write to, at its writer index
+     */
+    public void writeTo(ByteBuf out) {
+        out.writeShort(uscVersion);
+        out.writeInt(features);
+        out.writeInt(maxPayloadSize);
+    }
+
+    @Override
+    public int hashCode() {
+        return (uscVersion * 31 + features) * 31 + maxPayloadSize;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof UscCapabilities)) {
+            return false;
+        }
+        UscCapabilities other = (UscCapabilities) obj;
+        return uscVersion == other.uscVersion && features == other.features && maxPayloadSize == other.maxPayloadSize;
+    }
+
+    @Override
+    public String toString() {
+        return "UscCapabilities [uscVersion=" + uscVersion + ", features=" + features + ", maxPayloadSize="
+                + maxPayloadSize + "]";
+    }
+
+}
@@ -23,7 +23,10 @@ public class UscControl extends UscFrame {
 		OTHER(0),
 		TERMINATION_REQUEST(1),
 		TERMINATION_RESPONSE(2),
-		ECHO(3);  // send this from UscPlugin to test if the channel from UscPlugin to UscAgent is reachable
+		ECHO(3),  // send this from UscPlugin to test if the channel from UscPlugin to UscAgent is reachable
+		HELLO_REQUEST(4),  // advertises the capabilities of the sender, answered by HELLO_RESPONSE
+		HELLO_RESPONSE(5),
+		WINDOW_UPDATE(6);  // returns send credits of a session to the peer
 		
 		private int code;
 		
@@ -44,7 +47,16 @@ public class UscControl extends UscFrame {
 	
 	private final static int PAYLOAD_LENGTH = 2;
 
-	private final ControlCode controlCode;;
+	/**
+	 * Length of the window increment of a WINDOW_UPDATE in bytes.
+	 */
+	public final static int WINDOW_INCREMENT_LENGTH = 4;
+
+	private final ControlCode controlCode;
+
+	private final UscCapabilities capabilities;
+
+	private final int windowIncrement;
 
 	/**
 	 * Constructs a new UscControl
@@ -57,10 +69,54 @@ public class UscControl extends UscFrame {
 	 *            the control message operation code
 	 */
 	public UscControl(int port, int sessionId, int operationCode) {
-		super(OperationType.CONTROL, port, sessionId, PAYLOAD_LENGTH);
+		this(port, sessionId, operationCode, null);
+	}
+
+	/**
+	 * Constructs a new UscControl which carries capabilities, as used by the
+	 * HELLO exchange
+	 * 
+	 * @param port
+	 *            the port number of the service on the device
+	 * @param sessionId
+	 *            the session ID
+	 * @param operationCode
+	 *            the control message operation code
+	 * @param capabilities
+	 *            the capabilities of the sender, or null
+	 */
+	public UscControl(int port, int sessionId, int operationCode, UscCapabilities capabilities) {
+		super(OperationType.CONTROL, port, sessionId, capabilities == null ? PAYLOAD_LENGTH : PAYLOAD_LENGTH
+				+ UscCapabilities.PAYLOAD_LENGTH);
 		
         this.controlCode = Arrays.stream(ControlCode.values()).filter(c -> c.getCode() == operationCode).findAny()
                 .orElse(ControlCode.OTHER);
+		this.capabilities = capabilities;
+		this.windowIncrement = 0;
+	}
+
+	private UscControl(int port, int sessionId, ControlCode controlCode, int windowIncrement) {
+		super(OperationType.CONTROL, port, sessionId, PAYLOAD_LENGTH + WINDOW_INCREMENT_LENGTH);
+
+		this.controlCode = controlCode;
+		this.capabilities = null;
+		this.windowIncrement = windowIncrement;
+	}
+
+	/**
+	 * Creates a new WINDOW_UPDATE UscControl
+	 * 
+	 * @param port
+	 *            the port number of the service on the device
+	 * @param sessionId
+	 *            the session ID
+	 * @param windowIncrement
+	 *            the number of payload bytes the receiver of the session has
+	 *            handed on
+	 * @return the control message
+	 */
+	public static UscControl windowUpdate(int port, int sessionId, int windowIncrement) {
+		return new UscControl(port, sessionId, ControlCode.WINDOW_UPDATE, windowIncrement);
 	}
 	
 
@@ -68,17 +124,49 @@ public class UscControl extends UscFrame {
 		return controlCode;
 	}
 
+	/**
+	 * Returns the capabilities carried by a HELLO message
+	 * 
+	 * @return the capabilities of the sender, or null
+	 */
+	public UscCapabilities getCapabilities() {
+		return capabilities;
+	}
 
+	/**
+	 * Returns the credits returned by a WINDOW_UPDATE message
+	 * 
+	 * @return the window increment in bytes
+	 */
+	public int getWindowIncrement() {
+		return windowIncrement;
+	}
 
 	@Override
 	public ByteBuf getPayload() {
-		return Unpooled.copyShort(controlCode.getCode());
+		if (getHeader().getPayloadLength() == PAYLOAD_LENGTH) {
+			return Unpooled.copyShort(controlCode.getCode());
+		}
+		final ByteBuf payload = Unpooled.buffer(getHeader().getPayloadLength());
+		writePayload(payload);
+		return payload;
+	}
+
+	@Override
+	protected void writePayload(ByteBuf out) {
+		out.writeShort(controlCode.getCode());
+		if (capabilities != null) {
+			capabilities.writeTo(out);
+		} else if (getHeader().getPayloadLength() == PAYLOAD_LENGTH + WINDOW_INCREMENT_LENGTH) {
+			out.writeInt(windowIncrement);
+		}
 	}
 
 
 	@Override
 	public String toString() {
-		return "UscControl [controlCode = " + controlCode + "]";
+		return "UscControl [controlCode = " + controlCode + (capabilities == null ? "" : ", " + capabilities)
+				+ (controlCode == ControlCode.WINDOW_UPDATE ? ", windowIncrement = " + windowIncrement : "") + "]";
 	}
 
 }
@@ -7,14 +7,30 @@
  */
 package org.opendaylight.usc.protocol;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.opendaylight.usc.protocol.UscHeader.OperationType;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCounted;
 
 /**
  * An USC data packet.
+ * 
+ * The reference count of a UscData is the reference count of its payload, so
+ * that Netty handlers which release their inbound or outbound messages also
+ * release the payload buffer, including payloads that are slices of a
+ * received buffer.
  */
-public class UscData extends UscFrame {
+public class UscData extends UscFrame implements ReferenceCounted {
+
+	/**
+	 * Payloads of at least this many bytes are not copied when encoding, but
+	 * sent as the second component of a composite buffer.
+	 */
+	public static final int COMPOSITE_THRESHOLD = 1024;
 
 	private final ByteBuf payload;
 
@@ -33,11 +49,91 @@ public class UscData extends UscFrame {
 		this.payload = payload;
 	}
 
+	/**
+	 * Splits a payload into UscData frames of at most maxPayloadSize bytes
+	 * each. The frames carry retained slices of the payload, so no bytes are
+	 * copied; the caller still owns its reference to the payload and must
+	 * release it.
+	 * 
+	 * @param port
+	 *            the port number of the service on the device
+	 * @param sessionId
+	 *            the session ID
+	 * @param payload
+	 *            the raw byte stream payload
+	 * @param maxPayloadSize
+	 *            the largest payload of a single frame
+	 * @return the frames in order, each holding its own reference
+	 */
+	public static List<UscData> segment(int port, int sessionId, ByteBuf payload, int maxPayloadSize) {
+		int length = payload.readableBytes();
+		int index = payload.readerIndex();
+		final List<UscData> frames = new ArrayList<>(length / maxPayloadSize + 1);
+		while (length > 0) {
+			final int realLength = (length > maxPayloadSize) ? maxPayloadSize : length;
+			frames.add(new UscData(port, sessionId, payload.retainedSlice(index, realLength)));
+			index += realLength;
+			length -= realLength;
+		}
+		return frames;
+	}
+
 	@Override
 	public ByteBuf getPayload() {
 		return payload;
 	}
 
+	@Override
+	public ByteBuf encode(ByteBufAllocator alloc, int uscVersion) {
+		if (payload.readableBytes() < COMPOSITE_THRESHOLD) {
+			return super.encode(alloc, uscVersion);
+		}
+		final ByteBuf header = alloc.buffer(UscHeader.HEADER_LENGTH);
+		getHeader().writeTo(header, uscVersion);
+		// the composite takes its own reference, the caller still releases
+		// this UscData
+		return alloc.compositeBuffer(2).addComponents(true, header, payload.retain());
+	}
+
+	@Override
+	public int refCnt() {
+		return payload.refCnt();
+	}
+
+	@Override
+	public UscData retain() {
+		payload.retain();
+		return this;
+	}
+
+	@Override
+	public UscData retain(int increment) {
+		payload.retain(increment);
+		return this;
+	}
+
+	@Override
+	public UscData touch() {
+		payload.touch();
+		return this;
+	}
+
+	@Override
+	public UscData touch(Object hint) {
+		payload.touch(hint);
+		return this;
+	}
+
+	@Override
+	public boolean release() {
+		return payload.release();
+	}
+
+	@Override
+	public boolean release(int decrement) {
+		return payload.release(decrement);
+	}
+
 	@Override
 	public String toString() {
 		return "UscData(" + getHeader().getApplicationPort() + ", " + getHeader().getSessionId() + ", " + payload + ")";
@@ -78,6 +78,11 @@ public class UscError extends UscFrame {
         return Unpooled.copyShort(errorCode.code);
     }
 
+    @Override
+    protected void writePayload(ByteBuf out) {
+        out.writeShort(errorCode.code);
+    }
+
     /**
      * Returns the error code
      * 
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opendaylight.usc.protocol.UscHeader.OperationType;
+
+/**
+ * An USC fragment packet, which carries part of the payload of a UscData
+ * frame too large for one datagram. The payload starts with a fragment header
+ * holding the message ID, the offset of the fragment and the total length of
+ * the fragmented payload.
+ *
+ * Like UscData, the reference count of a UscFragment is the reference count
+ * of its data.
+ */
+public class UscFragment extends UscFrame implements ReferenceCounted {
+
+    /**
+     * Length of the fragment header in front of the data in bytes.
+     */
+    public static final int FRAGMENT_HEADER_LENGTH = 10;
+
+    private final int messageId;
+    private final int offset;
+    private final int totalLength;
+    private final ByteBuf data;
+
+    /**
+     * Constructs a new UscFragment
+     *
+     * @param port
+     *            the port number of the service on the device
+     * @param sessionId
+     *            the session ID
+     * @param messageId
+     *            the ID shared by all fragments of one payload
+     * @param offset
+     *            the offset of the data within the payload
+     * @param totalLength
+     *            the length of the whole payload
+     * @param data
+     *            the part of the payload carried by this fragment
+     */
+    public UscFragment(int port, int sessionId, int messageId, int offset, int totalLength, ByteBuf data) {
+        super(OperationType.FRAGMENT, port, sessionId, FRAGMENT_HEADER_LENGTH + data.readableBytes());
+        this.messageId = messageId;
+        this.offset = offset;
+        this.totalLength = totalLength;
+        this.data = data;
+    }
+
+    /**
+     * Splits the payload of a UscData frame into fragments carrying at most
+     * maxDataSize bytes each. The fragments carry retained slices of the
+     * payload; the caller still owns its reference to the frame and must
+     * release it.
+     *
+     * @param frame
+     *            the frame to split
+     * @param messageId
+     *            the ID of the fragmented payload
+     * @param maxDataSize
+     *            the largest data of a single fragment
+     * @return the fragments in order, each holding its own reference
+     */
+    public static List<UscFragment> fragment(UscData frame, int messageId, int maxDataSize) {
+        final ByteBuf payload = frame.getPayload();
+        final int port = frame.getHeader().getApplicationPort();
+        final int sessionId = frame.getHeader().getSessionId();
+        final int totalLength = payload.readableBytes();
+        final List<UscFragment> fragments = new ArrayList<>(totalLength / maxDataSize + 1);
+        for (int offset = 0; offset < totalLength; offset += maxDataSize) {
+            final int length = Math.min(maxDataSize, totalLength - offset);
+            fragments.add(new UscFragment(port, sessionId, messageId, offset, totalLength, payload.retainedSlice(
+                    payload.readerIndex() + offset, length)));
+        }
+        return fragments;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Returns the part of the fragmented payload carried by this fragment,
+     * without the fragment header
+     */
+    @Override
+    public ByteBuf getPayload() {
+        return data;
+    }
+
+    @Override
+    protected void writePayload(ByteBuf out) {
+        out.writeShort(messageId);
+        out.writeInt(offset);
+        out.writeInt(totalLength);
+        out.writeBytes(data, data.readerIndex(), data.readableBytes());
+    }
+
+    @Override
+    public int refCnt() {
+        return data.refCnt();
+    }
+
+    @Override
+    public UscFragment retain() {
+        data.retain();
+        return this;
+    }
+
+    @Override
+    public UscFragment retain(int increment) {
+        data.retain(increment);
+        return this;
+    }
+
+    @Override
+    public UscFragment touch() {
+        data.touch();
+        return this;
+    }
+
+    @Override
+    public UscFragment touch(Object hint) {
+        data.touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return data.release();
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return data.release(decrement);
+    }
+
+    @Override
+    public String toString() {
+        return "UscFragment(" + getHeader().getApplicationPort() + ", " + getHeader().getSessionId() + ", "
+                + messageId + ", " + offset + "/" + totalLength + ", " + data + ")";
+    }
+
+}
@@ -12,13 +12,14 @@ import java.io.IOException;
 import org.opendaylight.usc.protocol.UscHeader.OperationType;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * Base class of a UscFrame packet.
  */
 public abstract class UscFrame {
 
-    private final UscHeader header;
+    private UscHeader header;
 
     /**
      * Constructs a new UscFrame
@@ -59,13 +60,84 @@ public abstract class UscFrame {
     public abstract ByteBuf getPayload();
 
     /**
-     * Decodes a ByteBuf into a UscFrame
+     * Writes the payload into a buffer. Subclasses with a fixed size payload
+     * override this to avoid creating a temporary payload buffer.
+     * 
+     * @param out
+     *            the buffer to write to, at its writer index
+     */
+    protected void writePayload(ByteBuf out) {
+        final ByteBuf payload = getPayload();
+        out.writeBytes(payload, payload.readerIndex(), payload.readableBytes());
+    }
+
+    /**
+     * Encodes this frame into a single buffer from the allocator, writing the
+     * header directly in front of the payload.
+     * 
+     * @param alloc
+     *            the allocator of the channel the frame is written to
+     * @return the encoded frame
+     */
+    public ByteBuf encode(ByteBufAllocator alloc) {
+        return encode(alloc, header.getUscVersion());
+    }
+
+    /**
+     * Encodes this frame into a single buffer from the allocator, using the
+     * header format of the given protocol version.
+     * 
+     * @param alloc
+     *            the allocator of the channel the frame is written to
+     * @param uscVersion
+     *            the USC version spoken by the receiving peer
+     * @return the encoded frame
+     */
+    public ByteBuf encode(ByteBufAllocator alloc, int uscVersion) {
+        final ByteBuf buf = alloc.buffer(length());
+        encodeTo(buf, uscVersion);
+        return buf;
+    }
+
+    /**
+     * Writes this frame into an existing buffer, as when several frames are
+     * packed into one bundle.
+     * 
+     * @param out
+     *            the buffer to write to, at its writer index
+     * @param uscVersion
+     *            the USC version spoken by the receiving peer
+     */
+    public void encodeTo(ByteBuf out, int uscVersion) {
+        header.writeTo(out, uscVersion);
+        writePayload(out);
+    }
+
+    /**
+     * Decodes a ByteBuf into a UscFrame, copying the payload of DATA frames
      * 
      * @param buf
      * @return
      * @throws IOException
      */
     public static UscFrame getFromByteBuf(ByteBuf buf) throws IOException {
+        return getFromByteBuf(buf, false);
+    }
+
+    /**
+     * Decodes a ByteBuf into a UscFrame
+     * 
+     * @param buf
+     * @param retainPayload
+     *            if true, the payload of a DATA frame is a retained slice of
+     *            buf instead of a copy, and the resulting UscData must be
+     *            released by whoever consumes it, and likewise for the data
+     *            of a FRAGMENT frame; the payload of a BUNDLE frame is always
+     *            a retained slice
+     * @return
+     * @throws IOException
+     */
+    public static UscFrame getFromByteBuf(ByteBuf buf, boolean retainPayload) throws IOException {
         final UscHeader header = UscHeader.fromByteBuffer(buf.nioBuffer(0, UscHeader.HEADER_LENGTH));
         buf.readerIndex(UscHeader.HEADER_LENGTH);
 
@@ -75,10 +147,33 @@ public abstract class UscFrame {
         final UscFrame result;
         switch (header.getOperationType()) {
         case DATA:
-            result = new UscData(port, sessionId, buf.copy());
+            result = new UscData(port, sessionId, retainPayload ? buf.retainedSlice() : buf.copy());
+            break;
+        case BUNDLE:
+            // the frames inside the bundle copy or retain their own payloads
+            result = new UscBundle(buf.retainedSlice());
+            break;
+        case FRAGMENT:
+            if (buf.readableBytes() < UscFragment.FRAGMENT_HEADER_LENGTH) {
+                throw new IOException("Truncated fragment header");
+            }
+            final int messageId = buf.readUnsignedShort();
+            final int offset = buf.readInt();
+            final int totalLength = buf.readInt();
+            result = new UscFragment(port, sessionId, messageId, offset, totalLength, retainPayload ? buf
+                    .retainedSlice() : buf.copy());
             break;
         case CONTROL:
-            result = new UscControl(port, sessionId, buf.readUnsignedShort());
+            final int controlCode = buf.readUnsignedShort();
+            if (controlCode == UscControl.ControlCode.WINDOW_UPDATE.getCode()
+                    && buf.readableBytes() >= UscControl.WINDOW_INCREMENT_LENGTH) {
+                result = UscControl.windowUpdate(port, sessionId, buf.readInt());
+                break;
+            }
+            // only HELLO messages carry capabilities after the control code
+            final UscCapabilities capabilities = buf.readableBytes() >= UscCapabilities.PAYLOAD_LENGTH ? UscCapabilities
+                    .readFrom(buf) : null;
+            result = new UscControl(port, sessionId, controlCode, capabilities);
             break;
         case ERROR:
             result = new UscError(port, sessionId, buf.readUnsignedShort());
@@ -87,6 +182,11 @@ public abstract class UscFrame {
             result = null;
             throw new IOException("Invalid operation type");
         }
+        // the peer version is taken from the frames it sends
+        if (header.getUscVersion() != result.header.getUscVersion()) {
+            result.header = new UscHeader(header.getUscVersion(), result.header.getOperationType(), port, sessionId,
+                    result.header.getPayloadLength());
+        }
         return result;
     }
 
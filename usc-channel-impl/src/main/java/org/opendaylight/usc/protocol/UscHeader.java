@@ -11,6 +11,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * The USC packet header.
  */
@@ -31,18 +33,42 @@ public class UscHeader {
      */
     public static final int PAYLOAD_LENGTH_SIZE = 2;
 
+    /**
+     * Offset to the extended payload length field of a version 2 header in
+     * bytes. This is the byte which is reserved in version 1.
+     */
+    public static final int EXTENDED_LENGTH_OFFSET = 1;
+
     /**
      * USC protocol version number.
      */
     public static final int USC_VERSION = 1;
 
+    /**
+     * USC protocol version number of the header which carries bits [16, 24)
+     * of the payload length in its extended payload length field.
+     */
+    public static final int USC_VERSION_2 = 2;
+
+    /**
+     * Largest payload length of a version 1 header in bytes.
+     */
+    public static final int MAX_PAYLOAD_LENGTH_V1 = 0xFFFF;
+
+    /**
+     * Largest payload length of a version 2 header in bytes.
+     */
+    public static final int MAX_PAYLOAD_LENGTH_V2 = 0xFFFFFF;
+
     /**
      * Types of USC packets.
      */
     public enum OperationType {
         DATA(1),
         CONTROL(2),
-        ERROR(3);
+        ERROR(3),
+        BUNDLE(4),
+        FRAGMENT(5);
         private final int value;
 
         private OperationType(int value) {
@@ -137,6 +163,17 @@ public class UscHeader {
         return (value >>> offset) & ((1 << size) - 1);
     }
 
+    /**
+     * Returns the largest payload length a header of the given version can
+     * carry
+     * 
+     * @param uscVersion
+     * @return the largest payload length in bytes
+     */
+    public static int getMaxPayloadLength(int uscVersion) {
+        return uscVersion >= USC_VERSION_2 ? MAX_PAYLOAD_LENGTH_V2 : MAX_PAYLOAD_LENGTH_V1;
+    }
+
     /**
      * Constructs an USC header from a byte stream
      * 
@@ -151,7 +188,7 @@ public class UscHeader {
         // byte 0, bits [4, 8)
         final OperationType operationType = OperationType.valueOf(getBitsAsInteger(byte0, 4, 4));
 
-        // byte 1 reserved
+        // byte 1 reserved in version 1
 
         // bytes [2, 4)
         final int applicationPort = buf.getChar(2);
@@ -160,7 +197,12 @@ public class UscHeader {
         final int sessionId = buf.getChar(4);
 
         // bytes [6, 8)
-        final int payloadLength = buf.getChar(PAYLOAD_LENGTH_OFFSET);
+        int payloadLength = buf.getChar(PAYLOAD_LENGTH_OFFSET);
+
+        // byte 1, bits [16, 24) of the payload length from version 2 on
+        if (uscVersion >= USC_VERSION_2) {
+            payloadLength |= (buf.get(EXTENDED_LENGTH_OFFSET) & 0xFF) << 16;
+        }
 
         return new UscHeader(uscVersion, operationType, applicationPort, sessionId, payloadLength);
     }
@@ -230,6 +272,53 @@ public class UscHeader {
         return HEADER_LENGTH;
     }
 
+    private byte getByte0(int version) {
+        byte byte0 = 0;
+        byte0 = setBitsAsInteger(byte0, 0, 4, version);
+        if (operationType != null) {
+            byte0 = setBitsAsInteger(byte0, 4, 4, operationType.value);
+        }
+        return byte0;
+    }
+
+    private byte getByte1(int version) {
+        if (payloadLength > getMaxPayloadLength(version)) {
+            throw new IllegalArgumentException("payload length " + payloadLength + " exceeds USC version " + version
+                    + " limit of " + getMaxPayloadLength(version));
+        }
+        return version >= USC_VERSION_2 ? (byte) (payloadLength >>> 16) : 0;
+    }
+
+    /**
+     * Writes the byte stream representation of this USC header into a buffer
+     * without any intermediate allocation
+     * 
+     * @param out
+     *            the buffer to write to, at its writer index
+     */
+    public void writeTo(ByteBuf out) {
+        writeTo(out, uscVersion);
+    }
+
+    /**
+     * Writes the byte stream representation of this USC header into a buffer
+     * using the given protocol version instead of the version of this header
+     * 
+     * @param out
+     *            the buffer to write to, at its writer index
+     * @param version
+     *            the USC version spoken by the receiving peer
+     * @throws IllegalArgumentException
+     *             if the payload is too long for that version
+     */
+    public void writeTo(ByteBuf out, int version) {
+        out.writeByte(getByte0(version));
+        out.writeByte(getByte1(version));
+        out.writeShort(applicationPort);
+        out.writeShort(sessionId);
+        out.writeShort(payloadLength);
+    }
+
     /**
      * Constructs a byte stream representation of this USC header
      * 
@@ -237,14 +326,11 @@ public class UscHeader {
      */
     public ByteBuffer toByteBuffer() {
 
-        byte byte0 = 0;
-        byte0 = setBitsAsInteger(byte0, 0, 4, uscVersion);
-        if (operationType != null) {
-            byte0 = setBitsAsInteger(byte0, 4, 4, operationType.value);
-        }
+        byte byte0 = getByte0(uscVersion);
 
         ByteBuffer buf = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.BIG_ENDIAN);
         buf.put(0, byte0);
+        buf.put(EXTENDED_LENGTH_OFFSET, getByte1(uscVersion));
         buf.putChar(2, (char) applicationPort);
         buf.putChar(4, (char) sessionId);
         buf.putChar(PAYLOAD_LENGTH_OFFSET, (char) payloadLength);
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.TBSCertificate;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.V3TBSCertificateGenerator;
+
+/**
+ * Creates a root certificate, and a client key and certificate signed by it,
+ * in the files the USC configuration expects. The sample certificates under
+ * src/test/resources have expired, so the tests which validate certificates,
+ * like the JDK TLS handshake, create their own.
+ */
+public final class UscTestCertificates {
+
+    private static final long VALIDITY = TimeUnit.DAYS.toMillis(1);
+
+    private UscTestCertificates() {
+    }
+
+    /**
+     * Creates rootCA.pem, client.pem and client.key.pem
+     *
+     * @param directory
+     *            the directory of the files
+     * @throws IOException
+     *             if the files can't be written
+     * @throws GeneralSecurityException
+     *             if the keys can't be generated
+     */
+    public static void create(File directory) throws IOException, GeneralSecurityException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        final KeyPair rootKey = generator.generateKeyPair();
+        final KeyPair clientKey = generator.generateKeyPair();
+        final X500Name root = new X500Name("CN=USC Test Root CA");
+        write(new File(directory, "rootCA.pem"), "CERTIFICATE",
+                sign(root, root, rootKey.getPublic(), rootKey.getPrivate(), true));
+        write(new File(directory, "client.pem"), "CERTIFICATE",
+                sign(root, new X500Name("CN=USC Test Client"), clientKey.getPublic(), rootKey.getPrivate(), false));
+        // PKCS#8
+        write(new File(directory, "client.key.pem"), "PRIVATE KEY", clientKey.getPrivate().getEncoded());
+    }
+
+    private static byte[] sign(X500Name issuer, X500Name subject, PublicKey key, PrivateKey signer, boolean ca)
+            throws IOException, GeneralSecurityException {
+        final AlgorithmIdentifier algorithm = new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption,
+                DERNull.INSTANCE);
+        final long now = System.currentTimeMillis();
+        final V3TBSCertificateGenerator generator = new V3TBSCertificateGenerator();
+        generator.setSerialNumber(new ASN1Integer(System.nanoTime()));
+        generator.setIssuer(issuer);
+        generator.setSubject(subject);
+        generator.setStartDate(new Time(new Date(now - VALIDITY)));
+        generator.setEndDate(new Time(new Date(now + VALIDITY)));
+        generator.setSignature(algorithm);
+        generator.setSubjectPublicKeyInfo(SubjectPublicKeyInfo.getInstance(key.getEncoded()));
+        generator.setExtensions(new Extensions(new Extension(Extension.basicConstraints, true, new BasicConstraints(
+                ca).getEncoded())));
+        final TBSCertificate certificate = generator.generateTBSCertificate();
+
+        final Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(signer);
+        signature.update(certificate.getEncoded(ASN1Encoding.DER));
+        final ASN1EncodableVector sequence = new ASN1EncodableVector();
+        sequence.add(certificate);
+        sequence.add(algorithm);
+        sequence.add(new DERBitString(signature.sign()));
+        return new DERSequence(sequence).getEncoded(ASN1Encoding.DER);
+    }
+
+    private static void write(File file, String type, byte[] der) throws IOException {
+        final String pem = "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, new byte[] { '\n' }).encodeToString(der) + "\n-----END " + type
+                + "-----\n";
+        Files.write(file.toPath(), pem.getBytes(StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.crypto;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opendaylight.usc.crypto.dtls.DtlsClient;
+import org.opendaylight.usc.crypto.dtls.DtlsClientHandler;
+import org.opendaylight.usc.crypto.dtls.DtlsHandshakeExecutor;
+import org.opendaylight.usc.crypto.dtls.DtlsServer;
+import org.opendaylight.usc.crypto.dtls.DtlsServerHandler;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Benchmark of the memory allocated by the DTLS record path, over UDP on the
+ * loopback, which only runs in the benchmark profile.
+ */
+public class DtlsEngineBenchmark extends AbstractTest {
+
+    private static final File CERTIFICATES = new File("src/test/resources/etc/usc/certificates");
+    private static final File KEY = new File(CERTIFICATES, "client.key.pem");
+    private static final File CERT = new File(CERTIFICATES, "client.pem");
+    private static final File TRUST = new File(CERTIFICATES, "rootCA.pem");
+    private static final int BATCHES = 100;
+    private static final int BATCH = 100;
+    private static final int DATAGRAM = 64;
+
+    private static void waitFor(AtomicInteger counter, int count) throws InterruptedException {
+        // UDP on the loopback may still drop a datagram now and then
+        for (int i = 0; i < 100 && counter.get() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Measures the bytes allocated by the event loop running both ends of a
+     * DTLS association for each small datagram
+     */
+    @Test
+    public void testAllocation() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final NioEventLoopGroup group = new NioEventLoopGroup(1);
+        final DtlsHandshakeExecutor executor = new DtlsHandshakeExecutor(2, 10000);
+        final SecureRandom random = new SecureRandom();
+        final AtomicInteger received = new AtomicInteger();
+        try {
+            Channel server = new Bootstrap().group(group).channel(NioDatagramChannel.class)
+                    .handler(new ChannelInitializer<DatagramChannel>() {
+                        @Override
+                        protected void initChannel(DatagramChannel ch) throws Exception {
+                            ch.pipeline().addLast(new DtlsServerHandler(new DtlsServer(TRUST, CERT, KEY), random,
+                                    executor), new SimpleChannelInboundHandler<DatagramPacket>() {
+                                @Override
+                                protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+                                    received.incrementAndGet();
+                                }
+                            });
+                        }
+                    }).bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).sync().channel();
+            final InetSocketAddress serverAddress = (InetSocketAddress) server.localAddress();
+            final Channel client = new Bootstrap().group(group).channel(NioDatagramChannel.class)
+                    .handler(new ChannelInitializer<DatagramChannel>() {
+                        @Override
+                        protected void initChannel(DatagramChannel ch) throws Exception {
+                            ch.pipeline().addLast(
+                                    new DtlsClientHandler(new DtlsClient(null, TRUST, CERT, KEY), random, executor));
+                        }
+                    }).connect(serverAddress).sync().channel();
+
+            // sent once the handshake is done
+            client.writeAndFlush(new DatagramPacket(Unpooled.wrappedBuffer(new byte[DATAGRAM]), serverAddress));
+            for (int i = 0; i < 10 && received.get() == 0; i++) {
+                waitFor(received, 1);
+            }
+            assertTrue(received.get() > 0);
+
+            final long loopThread = group.next().submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return Thread.currentThread().getId();
+                }
+            }).get();
+            final Runnable batch = new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < BATCH; i++) {
+                        client.write(new DatagramPacket(client.alloc().buffer(DATAGRAM).writeZero(DATAGRAM),
+                                serverAddress));
+                    }
+                    client.flush();
+                }
+            };
+            // warm up
+            for (int i = 0; i < BATCHES / 10; i++) {
+                client.eventLoop().execute(batch);
+                waitFor(received, received.get() + BATCH);
+            }
+
+            final int before = received.get();
+            final long allocated = threads.getThreadAllocatedBytes(loopThread);
+            for (int i = 0; i < BATCHES; i++) {
+                client.eventLoop().execute(batch);
+                waitFor(received, before + (i + 1) * BATCH);
+            }
+            final long perDatagram = (threads.getThreadAllocatedBytes(loopThread) - allocated) / (BATCHES * BATCH);
+
+            System.out.println("DTLS datagrams of " + DATAGRAM + " bytes: " + perDatagram
+                    + " bytes allocated per datagram encrypted and decrypted, " + (received.get() - before)
+                    + " of " + BATCHES * BATCH + " received");
+            client.close().sync();
+            server.close().sync();
+        } finally {
+            group.shutdownGracefully().sync();
+        }
+    }
+
+}
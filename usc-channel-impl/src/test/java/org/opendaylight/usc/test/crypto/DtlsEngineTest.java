@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.opendaylight.usc.crypto.dtls.DtlsClient;
+import org.opendaylight.usc.crypto.dtls.DtlsClientHandler;
+import org.opendaylight.usc.crypto.dtls.DtlsHandshakeExecutor;
+import org.opendaylight.usc.crypto.dtls.DtlsServer;
+import org.opendaylight.usc.crypto.dtls.DtlsServerHandler;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for the DTLS record path after the handshake.
+ */
+public class DtlsEngineTest extends AbstractTest {
+
+    private static final File CERTIFICATES = new File("src/test/resources/etc/usc/certificates");
+    private static final File KEY = new File(CERTIFICATES, "client.key.pem");
+    private static final File CERT = new File(CERTIFICATES, "client.pem");
+    private static final File TRUST = new File(CERTIFICATES, "rootCA.pem");
+    private static final InetSocketAddress CLIENT_ADDRESS = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+            1068);
+    private static final InetSocketAddress SERVER_ADDRESS = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+            1069);
+    private static final int MAX_RECORD = 512;
+    private static final long HANDSHAKE_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Takes the datagrams written by a DTLS handler, in place of the socket.
+     * The handshake writes from its own thread, so the datagrams are passed to
+     * the test thread through a queue.
+     */
+    private static final class Wire extends ChannelOutboundHandlerAdapter {
+        private final BlockingQueue<DatagramPacket> packets = new LinkedBlockingQueue<>();
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            packets.add((DatagramPacket) msg);
+            promise.setSuccess();
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            // nothing is buffered
+        }
+    }
+
+    /**
+     * Passes the next datagram written to one wire to the channel at the
+     * other end
+     *
+     * @return whether there was a datagram
+     */
+    private static boolean transfer(Wire wire, EmbeddedChannel peer, InetSocketAddress sender)
+            throws InterruptedException {
+        final DatagramPacket packet = wire.packets.poll(10, TimeUnit.MILLISECONDS);
+        if (packet == null) {
+            return false;
+        }
+        // not writeInbound, which would run the tasks of the peer while a
+        // handshake thread may add to them
+        peer.pipeline().fireChannelRead(new DatagramPacket(packet.content(), packet.recipient(), sender));
+        return true;
+    }
+
+    private static void assertReceived(EmbeddedChannel channel, ByteBuf expected) {
+        final DatagramPacket packet = channel.readInbound();
+        assertEquals(expected, packet.content());
+        packet.release();
+    }
+
+    /**
+     * Runs a handshake between a client and a server channel and passes
+     * datagrams both ways, including one written before the handshake was
+     * done
+     */
+    @Test
+    public void testRecordPath() throws Exception {
+        final DtlsHandshakeExecutor executor = new DtlsHandshakeExecutor(2, 0);
+        final SecureRandom random = new SecureRandom();
+        final Wire clientWire = new Wire();
+        final Wire serverWire = new Wire();
+        final EmbeddedChannel server = new EmbeddedChannel(serverWire, new DtlsServerHandler(new DtlsServer(TRUST,
+                CERT, KEY), random, executor));
+        // the client starts its handshake once it knows the server address,
+        // as a connected datagram channel would
+        final EmbeddedChannel client = new EmbeddedChannel(clientWire);
+        client.pipeline().addLast(new DtlsClientHandler(new DtlsClient(null, TRUST, CERT, KEY), random, executor));
+        client.connect(SERVER_ADDRESS);
+
+        final ByteBuf early = Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 });
+        final ChannelFuture earlyWrite = client.writeAndFlush(new DatagramPacket(early.retainedDuplicate(),
+                SERVER_ADDRESS));
+        assertFalse(earlyWrite.isDone());
+        client.pipeline().fireChannelActive();
+
+        final long deadline = System.nanoTime() + HANDSHAKE_TIMEOUT;
+        while (executor.getCompletedCount() < 2) {
+            assertTrue("DTLS handshake not done", System.nanoTime() < deadline);
+            assertEquals(0, executor.getFailedCount());
+            transfer(clientWire, server, CLIENT_ADDRESS);
+            transfer(serverWire, client, SERVER_ADDRESS);
+        }
+        // hands both channels over to their engines
+        client.runPendingTasks();
+        server.runPendingTasks();
+
+        // the datagram written during the handshake is sent first
+        assertTrue(earlyWrite.isSuccess());
+        assertTrue(transfer(clientWire, server, CLIENT_ADDRESS));
+        assertReceived(server, early);
+
+        // each datagram becomes one record, decrypted as soon as it is read
+        final ByteBuf small = Unpooled.wrappedBuffer(new byte[] { 4 });
+        final ByteBuf large = Unpooled.buffer(400);
+        for (int i = 0; i < large.capacity(); i++) {
+            large.writeByte(i);
+        }
+        client.writeAndFlush(new DatagramPacket(small.retainedDuplicate(), SERVER_ADDRESS));
+        client.writeAndFlush(new DatagramPacket(large.retainedDuplicate(), SERVER_ADDRESS));
+        assertTrue(transfer(clientWire, server, CLIENT_ADDRESS));
+        assertReceived(server, small);
+        assertTrue(transfer(clientWire, server, CLIENT_ADDRESS));
+        assertReceived(server, large);
+        assertNull(server.readInbound());
+
+        // the client asks for records of at most 512 bytes
+        final ChannelFuture oversized = client.writeAndFlush(new DatagramPacket(Unpooled.buffer(MAX_RECORD + 1)
+                .writeZero(MAX_RECORD + 1), SERVER_ADDRESS));
+        assertTrue(oversized.cause() instanceof IOException);
+        assertTrue(clientWire.packets.isEmpty());
+
+        final ByteBuf reply = Unpooled.wrappedBuffer(new byte[] { 5, 6 });
+        assertTrue(server.writeAndFlush(new DatagramPacket(reply.retainedDuplicate(), CLIENT_ADDRESS)).isSuccess());
+        assertTrue(transfer(serverWire, client, SERVER_ADDRESS));
+        assertReceived(client, reply);
+        assertNull(client.readInbound());
+
+        assertEquals(2, executor.getCompletedCount());
+        assertEquals(0, executor.getFailedCount());
+        client.close();
+        server.close();
+    }
+
+}
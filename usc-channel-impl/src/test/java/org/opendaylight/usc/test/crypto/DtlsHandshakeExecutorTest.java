@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.opendaylight.usc.crypto.dtls.DtlsHandshakeExecutor;
+import org.opendaylight.usc.crypto.dtls.DtlsServer;
+import org.opendaylight.usc.crypto.dtls.DtlsServerHandler;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for running DTLS handshakes on shared threads.
+ */
+public class DtlsHandshakeExecutorTest extends AbstractTest {
+
+    private static final File CERTIFICATES = new File("src/test/resources/etc/usc/certificates");
+    private static final InetSocketAddress PEER = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1068);
+
+    private static void waitFor(Callable<Boolean> condition) throws Exception {
+        for (int i = 0; i < 100 && !condition.call(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.call());
+    }
+
+    @Test
+    public void testQueueAndMetrics() throws Exception {
+        final DtlsHandshakeExecutor executor = new DtlsHandshakeExecutor(1, 0);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        Future<?> running = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                started.countDown();
+                finish.await();
+                return null;
+            }
+        });
+        Future<?> queued = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                throw new IllegalStateException("never runs");
+            }
+        });
+        started.await();
+        assertEquals(1, executor.getActiveCount());
+        assertEquals(1, executor.getQueueDepth());
+
+        // a closed channel drops its queued handshake
+        executor.cancel(queued);
+        assertEquals(0, executor.getQueueDepth());
+
+        finish.countDown();
+        running.get();
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                throw new IOException("handshake failed");
+            }
+        });
+        waitFor(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return executor.getFailedCount() == 1;
+            }
+        });
+        assertEquals(1, executor.getCompletedCount());
+        assertTrue(executor.getAverageDuration() <= executor.getMaxDuration());
+    }
+
+    private static DtlsServerHandler newServerHandler(DtlsHandshakeExecutor executor) throws Exception {
+        DtlsServer server = new DtlsServer(new File(CERTIFICATES, "rootCA.pem"), new File(CERTIFICATES,
+                "client.pem"), new File(CERTIFICATES, "client.key.pem"));
+        return new DtlsServerHandler(server, new SecureRandom(), executor);
+    }
+
+    /**
+     * Waits for a free thread, which runs the handshakes queued before in
+     * order
+     */
+    private static void awaitIdle(DtlsHandshakeExecutor executor) throws Exception {
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testIdleListener() throws Exception {
+        final DtlsHandshakeExecutor executor = new DtlsHandshakeExecutor(1, 100);
+        // the server waits for a client hello which never comes, as a
+        // listener waits for its first peer
+        EmbeddedChannel channel = new EmbeddedChannel(newServerHandler(executor));
+        assertEquals(-1, channel.runScheduledPendingTasks());
+        assertTrue(channel.isActive());
+
+        channel.close();
+        awaitIdle(executor);
+        assertEquals(0, executor.getTimedOutCount());
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final DtlsHandshakeExecutor executor = new DtlsHandshakeExecutor(1, 100);
+        final CountDownLatch finish = new CountDownLatch(1);
+        // keeps the handshake in the queue
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                finish.await();
+                return null;
+            }
+        });
+        EmbeddedChannel channel = new EmbeddedChannel(newServerHandler(executor));
+        // a record which isn't a client hello starts the timeout
+        channel.pipeline().fireChannelRead(new DatagramPacket(Unpooled.wrappedBuffer(new byte[] { 0 }),
+                PEER, PEER));
+
+        // the time in the queue doesn't count
+        TimeUnit.NANOSECONDS.sleep(channel.runScheduledPendingTasks());
+        assertTrue(channel.runScheduledPendingTasks() > 0);
+        assertTrue(channel.isActive());
+        assertEquals(0, executor.getTimedOutCount());
+
+        finish.countDown();
+        long delay;
+        while (channel.isOpen() && (delay = channel.runScheduledPendingTasks()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+        assertFalse(channel.isActive());
+        assertEquals(1, executor.getTimedOutCount());
+
+        // closing the channel frees the handshake thread
+        awaitIdle(executor);
+        assertEquals(1, executor.getFailedCount());
+    }
+
+}
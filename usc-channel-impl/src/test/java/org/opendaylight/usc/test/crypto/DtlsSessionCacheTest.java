@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.bouncycastle.crypto.tls.CipherSuite;
+import org.bouncycastle.crypto.tls.CompressionMethod;
+import org.bouncycastle.crypto.tls.SessionParameters;
+import org.bouncycastle.crypto.tls.TlsSession;
+import org.bouncycastle.crypto.tls.TlsUtils;
+import org.junit.Test;
+import org.opendaylight.usc.crypto.dtls.DtlsSessionCache;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for resuming DTLS sessions with reconnecting peers.
+ */
+public class DtlsSessionCacheTest extends AbstractTest {
+
+    private static final InetSocketAddress PEER = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1069);
+    private static final InetSocketAddress OTHER_PEER = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1070);
+
+    private static TlsSession newSession(int id) {
+        SessionParameters parameters = new SessionParameters.Builder()
+                .setCipherSuite(CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256)
+                .setCompressionAlgorithm(CompressionMethod._null).setMasterSecret(new byte[48]).build();
+        byte[] sessionId = new byte[32];
+        sessionId[0] = (byte) id;
+        return TlsUtils.importSession(sessionId, parameters);
+    }
+
+    @Test
+    public void testResumption() {
+        DtlsSessionCache cache = new DtlsSessionCache(10, 3600);
+        // the first handshake is a full one
+        assertNull(cache.get(PEER));
+        TlsSession session = newSession(1);
+        cache.put(PEER, session, false);
+
+        // a reconnect offers the session, which the peer resumes
+        assertSame(session, cache.get(PEER));
+        cache.put(PEER, session, true);
+        assertNull(cache.get(OTHER_PEER));
+
+        assertEquals(3, cache.getRequestCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getResumedCount());
+        assertEquals(1.0 / 3, cache.getHitRate(), 0.001);
+        assertEquals(1.0 / 3, cache.getResumptionRate(), 0.001);
+    }
+
+    @Test
+    public void testInvalidation() {
+        DtlsSessionCache cache = new DtlsSessionCache(10, 3600);
+        TlsSession session = newSession(1);
+        cache.put(PEER, session, false);
+
+        // a peer declining the session replaces it
+        TlsSession replacement = newSession(2);
+        cache.put(PEER, replacement, false);
+        assertSame(replacement, cache.get(PEER));
+
+        // a fatal alert drops it
+        cache.invalidate(PEER);
+        assertNull(cache.get(PEER));
+        assertEquals(0, cache.size());
+
+        // and so does a handshake without a resumable session
+        cache.put(PEER, session, false);
+        cache.put(PEER, null, false);
+        assertNull(cache.get(PEER));
+
+        // a cache of size 0 disables resumption
+        DtlsSessionCache disabled = new DtlsSessionCache(0, 3600);
+        disabled.put(PEER, newSession(3), false);
+        assertNull(disabled.get(PEER));
+    }
+
+}
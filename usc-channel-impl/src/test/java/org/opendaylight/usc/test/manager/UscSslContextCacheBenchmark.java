@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.manager;
+
+import static org.junit.Assert.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.IdentityCipherSuiteFilter;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opendaylight.usc.manager.UscSslContextCache;
+import org.opendaylight.usc.test.AbstractTest;
+import org.opendaylight.usc.test.UscTestCertificates;
+
+/**
+ * Benchmark of TLS handshakes on agent channels, which only runs in the
+ * benchmark profile.
+ */
+public class UscSslContextCacheBenchmark extends AbstractTest {
+
+    private static final int HANDSHAKES = 200;
+    private static final int RECORDS = 2000;
+    private static final int RECORD = 16384;
+
+    @ClassRule
+    public static TemporaryFolder certificates = new TemporaryFolder();
+
+    private static File keyFile;
+    private static File certFile;
+    private static File trustFile;
+
+    @BeforeClass
+    public static void createCertificates() throws Exception {
+        UscTestCertificates.create(certificates.getRoot());
+        keyFile = new File(certificates.getRoot(), "client.key.pem");
+        certFile = new File(certificates.getRoot(), "client.pem");
+        trustFile = new File(certificates.getRoot(), "rootCA.pem");
+    }
+
+    /**
+     * Measures handshakes per second with the shared contexts, against
+     * building the contexts from the files for each channel as before
+     */
+    @Test
+    public void testSharedContexts() throws Exception {
+        UscSslContextCache cache = new UscSslContextCache(keyFile, certFile, trustFile,
+                UscSslContextCache.DEFAULT_CHECK_INTERVAL);
+        // warm up
+        for (int i = 0; i < HANDSHAKES / 4; i++) {
+            UscSslContextCacheTest.handshake(cache.getServerContext(), cache.getClientContext());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < HANDSHAKES; i++) {
+            UscSslContextCacheTest.handshake(cache.getServerContext(), cache.getClientContext());
+        }
+        final long cached = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < HANDSHAKES; i++) {
+            UscSslContextCacheTest.handshake(SslContext.newServerContext(null, trustFile, null, certFile, keyFile, null,
+                    null, null, IdentityCipherSuiteFilter.INSTANCE, null, 0, 0), SslContext.newClientContext(null,
+                    trustFile, null, certFile, keyFile, null, null, null, IdentityCipherSuiteFilter.INSTANCE, null, 0, 0));
+        }
+        final long rebuilt = System.nanoTime() - start;
+
+        System.out.println("TLS handshakes per second: shared contexts " + HANDSHAKES * 1000000000L / cached
+                + ", contexts built per channel " + HANDSHAKES * 1000000000L / rebuilt);
+    }
+
+    /**
+     * Measures, for the JDK provider and, if netty-tcnative is available,
+     * OpenSSL, the handshakes per second of the call home listener with agents
+     * connecting for the first time and with agents resuming their session,
+     * and the bulk throughput once connected
+     */
+    @Test
+    public void testProviders() throws Exception {
+        List<SslProvider> providers = new ArrayList<>();
+        providers.add(UscSslContextCache.parseProvider("jdk"));
+        if (OpenSsl.isAvailable()) {
+            providers.add(UscSslContextCache.parseProvider("openssl"));
+        } else {
+            System.out.println("OpenSSL is not available: " + OpenSsl.unavailabilityCause());
+        }
+        // the agents, which keep the session of their last connection to
+        // offer it when they reconnect
+        UscSslContextCache agents = new UscSslContextCache(keyFile, certFile, trustFile,
+                UscSslContextCache.DEFAULT_CHECK_INTERVAL, SslProvider.JDK, 1000, 3600);
+        for (SslProvider provider : providers) {
+            UscSslContextCache cache = new UscSslContextCache(keyFile, certFile, trustFile,
+                    UscSslContextCache.DEFAULT_CHECK_INTERVAL, provider, 1000, 3600);
+            // warm up
+            for (int i = 0; i < HANDSHAKES / 4; i++) {
+                UscSslContextCacheTest.handshake(cache.getServerContext(), agents.getClientContext());
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < HANDSHAKES; i++) {
+                UscSslContextCacheTest.handshake(cache.getServerContext(), agents.getClientContext());
+            }
+            final long full = System.nanoTime() - start;
+
+            final byte[] session = sessionId(cache, agents, provider.name());
+            int resumed = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < HANDSHAKES; i++) {
+                if (Arrays.equals(session, sessionId(cache, agents, provider.name()))) {
+                    resumed++;
+                }
+            }
+            final long abbreviated = System.nanoTime() - start;
+            assertEquals(HANDSHAKES, resumed);
+
+            EmbeddedChannel[] channels = UscSslContextCacheTest.connect(cache.getServerContext(), cache
+                    .getClientContext().newHandler(ByteBufAllocator.DEFAULT));
+            long bytes = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < RECORDS; i++) {
+                channels[1].writeOutbound(ByteBufAllocator.DEFAULT.buffer(RECORD).writeZero(RECORD));
+                UscSslContextCacheTest.transfer(channels[1], channels[0]);
+                ByteBuf msg;
+                while ((msg = channels[0].readInbound()) != null) {
+                    bytes += msg.readableBytes();
+                    msg.release();
+                }
+            }
+            final long transferred = System.nanoTime() - start;
+            UscSslContextCacheTest.close(channels);
+            assertEquals((long) RECORDS * RECORD, bytes);
+
+            System.out.println("TLS provider " + provider + ": full handshakes per second " + HANDSHAKES
+                    * 1000000000L / full + ", resumed handshakes per second " + HANDSHAKES * 1000000000L
+                    / abbreviated + ", throughput " + bytes * 1000 / transferred + " MB/s");
+        }
+    }
+
+    private static byte[] sessionId(UscSslContextCache server, UscSslContextCache agent, String host)
+            throws Exception {
+        EmbeddedChannel[] channels = UscSslContextCacheTest.connect(server.getServerContext(), agent
+                .getClientContext().newHandler(ByteBufAllocator.DEFAULT, host, 1));
+        final byte[] id = channels[1].pipeline().get(SslHandler.class).engine().getSession().getId();
+        UscSslContextCacheTest.close(channels);
+        return id;
+    }
+
+}
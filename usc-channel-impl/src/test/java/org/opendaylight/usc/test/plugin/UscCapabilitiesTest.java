@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.opendaylight.usc.protocol.UscCapabilities;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscHeader;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for the negotiation of USC capabilities.
+ */
+public class UscCapabilitiesTest extends AbstractTest {
+
+    @Test
+    public void testNegotiateCapabilities() throws Exception {
+        UscCapabilities local = new UscCapabilities(UscHeader.USC_VERSION_2, 0, UscHeader.MAX_PAYLOAD_LENGTH_V2)
+                .with(Feature.BUNDLING).with(Feature.FLOW_CONTROL);
+        UscCapabilities remote = new UscCapabilities(UscHeader.USC_VERSION, Feature.FLOW_CONTROL.getMask()
+                | Feature.COMPRESSION.getMask(), 70000);
+
+        UscCapabilities negotiated = local.negotiate(remote);
+        assertEquals(UscHeader.USC_VERSION, negotiated.getUscVersion());
+        assertEquals(70000, negotiated.getMaxPayloadSize());
+        assertTrue(negotiated.hasFeature(Feature.FLOW_CONTROL));
+        assertFalse(negotiated.hasFeature(Feature.BUNDLING));
+        assertFalse(negotiated.hasFeature(Feature.COMPRESSION));
+        assertEquals(negotiated, remote.negotiate(local));
+    }
+
+}
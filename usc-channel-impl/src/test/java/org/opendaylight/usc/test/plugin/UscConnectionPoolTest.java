@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opendaylight.usc.plugin.UscConnectionPool;
+import org.opendaylight.usc.plugin.UscConnectionPool.Selection;
+import org.opendaylight.usc.plugin.UscSessionTable;
+import org.opendaylight.usc.plugin.model.UscChannel.ChannelType;
+import org.opendaylight.usc.plugin.model.UscChannelImpl;
+import org.opendaylight.usc.plugin.model.UscDevice;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for choosing among several agent channels to one device.
+ */
+public class UscConnectionPoolTest extends AbstractTest {
+
+    /**
+     * A connection reporting a fixed number of sessions
+     */
+    private static class LoadedConnection extends UscChannelImpl {
+        private final int sessions;
+
+        LoadedConnection(UscConnectionPool pool, boolean isCallHome, int sessions) throws Exception {
+            // embedded channels share one ID unless given their own
+            super(null, new UscDevice(InetAddress.getLoopbackAddress()), new EmbeddedChannel(DefaultChannelId
+                    .newInstance()), isCallHome, ChannelType.TCP, pool.getSessionIds());
+            this.sessions = sessions;
+        }
+
+        @Override
+        public int getSessionCount() {
+            return sessions;
+        }
+    }
+
+    private static UscConnectionPool newPool(int size, Selection selection, int... sessions) throws Exception {
+        UscConnectionPool pool = new UscConnectionPool(size, selection);
+        for (int count : sessions) {
+            pool.add(new LoadedConnection(pool, false, count));
+        }
+        return pool;
+    }
+
+    @Test
+    public void testLeastLoaded() throws Exception {
+        UscConnectionPool pool = newPool(3, Selection.LEAST_LOADED, 4, 1, 2);
+        assertSame(pool.getConnections().get(1), pool.select(830));
+        assertEquals(7, pool.getSessionCount());
+        assertTrue(pool.isFull());
+        assertFalse(pool.canGrow());
+        assertFalse(pool.add(new LoadedConnection(pool, false, 0)));
+
+        assertNull(new UscConnectionPool(3, Selection.LEAST_LOADED).select(830));
+    }
+
+    @Test
+    public void testConsistentHash() throws Exception {
+        UscConnectionPool pool = newPool(4, Selection.HASH, 0, 0, 0);
+        Map<Integer, UscChannelImpl> before = new HashMap<>();
+        for (int port = 1; port <= 1000; port++) {
+            UscChannelImpl connection = pool.select(port);
+            assertSame(connection, pool.select(port));
+            before.put(port, connection);
+        }
+
+        // growing the pool only moves the ports of the new connection
+        assertTrue(pool.canGrow());
+        pool.add(new LoadedConnection(pool, false, 0));
+        UscChannelImpl added = pool.getConnections().get(3);
+        int moved = 0;
+        for (int port = 1; port <= 1000; port++) {
+            UscChannelImpl connection = pool.select(port);
+            if (connection != before.get(port)) {
+                assertSame(added, connection);
+                moved++;
+            }
+        }
+        assertTrue(moved > 100 && moved < 400);
+
+        // removing a connection only moves its own ports
+        UscChannelImpl removed = pool.getConnections().get(1);
+        Map<Integer, UscChannelImpl> grown = new HashMap<>();
+        for (int port = 1; port <= 1000; port++) {
+            grown.put(port, pool.select(port));
+        }
+        assertTrue(pool.remove(removed));
+        for (int port = 1; port <= 1000; port++) {
+            UscChannelImpl connection = pool.select(port);
+            if (grown.get(port) == removed) {
+                assertTrue(connection != removed);
+            } else {
+                assertSame(grown.get(port), connection);
+            }
+        }
+    }
+
+    @Test
+    public void testCallHomeAndSessionIds() throws Exception {
+        UscConnectionPool pool = new UscConnectionPool(2, Selection.LEAST_LOADED);
+        pool.add(new LoadedConnection(pool, true, 0));
+        // connections can't be opened to an agent calling home
+        assertFalse(pool.isFull());
+        assertFalse(pool.canGrow());
+        assertTrue(pool.remove(pool.getConnections().get(0)));
+        assertTrue(pool.isEmpty());
+
+        // the connections of a device share their session IDs
+        UscSessionTable first = new UscSessionTable(pool.getSessionIds());
+        UscSessionTable second = new UscSessionTable(pool.getSessionIds());
+        assertEquals(1, first.allocate());
+        assertEquals(2, second.allocate());
+        assertEquals(3, first.allocate());
+    }
+
+}
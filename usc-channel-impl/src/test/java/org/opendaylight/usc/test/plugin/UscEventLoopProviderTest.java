@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.opendaylight.usc.manager.UscConfigurationServiceImpl;
+import org.opendaylight.usc.plugin.UscEventLoopProvider;
+import org.opendaylight.usc.plugin.UscSessionEventLoopGroup;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for sharing event loops between plugins and agents.
+ */
+public class UscEventLoopProviderTest extends AbstractTest {
+
+    @Test
+    public void testSharedEventLoops() {
+        UscConfigurationServiceImpl.setDefaultPropertyFilePath("src/test/resources/etc/usc/usc.properties");
+        UscEventLoopProvider first = UscEventLoopProvider.acquire();
+        UscEventLoopProvider second = UscEventLoopProvider.acquire();
+        assertSame(first, second);
+
+        // the test configuration uses one event loop per processor
+        assertEquals(3 * Runtime.getRuntime().availableProcessors(), first.getThreadCount());
+        assertEquals(first.getThreadCount(), first.getPendingTasks().size());
+        for (int pendingTasks : first.getPendingTasks().values()) {
+            assertEquals(0, pendingTasks);
+        }
+
+        // channel classes match the transport of the groups
+        assertEquals(!first.isNativeTransport(), first.getAgentGroup() instanceof NioEventLoopGroup);
+        assertEquals(!first.isNativeTransport(), first.getSocketChannelClass() == NioSocketChannel.class);
+
+        // the groups stay up until the last user is gone
+        first.release();
+        assertFalse(first.getAgentGroup().isShuttingDown());
+        second.release();
+        assertTrue(first.getAgentGroup().isShuttingDown());
+        assertTrue(first.getDeviceGroup().isShuttingDown());
+        assertTrue(first.getLocalGroup().isShuttingDown());
+
+        UscEventLoopProvider third = UscEventLoopProvider.acquire();
+        assertNotSame(first, third);
+        third.release();
+    }
+
+    @Test
+    public void testSessionEventLoopAffinity() throws Exception {
+        LocalEventLoopGroup localGroup = new LocalEventLoopGroup(2);
+        LocalEventLoopGroup agentGroup = new LocalEventLoopGroup(1);
+        UscSessionEventLoopGroup sessionGroup = new UscSessionEventLoopGroup(localGroup);
+        final LinkedBlockingQueue<Channel> accepted = new LinkedBlockingQueue<>();
+        try {
+            LocalAddress serverAddress = new LocalAddress("usc-affinity-test");
+            ServerBootstrap sb = new ServerBootstrap();
+            sb.group(localGroup, sessionGroup);
+            sb.channel(LocalServerChannel.class);
+            sb.childHandler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    accepted.add(ch);
+                }
+            });
+            Channel server = sb.bind(serverAddress).sync().channel();
+
+            Bootstrap cb = new Bootstrap();
+            cb.group(localGroup);
+            cb.channel(LocalChannel.class);
+            cb.handler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                }
+            });
+
+            // an assigned session runs on the agent event loop on both sides
+            EventLoop agentLoop = agentGroup.next();
+            LocalAddress clientAddress = new LocalAddress("usc-affinity-test-session-1");
+            sessionGroup.assign(clientAddress, agentLoop);
+            Channel client = cb.clone(agentLoop).connect(serverAddress, clientAddress).sync().channel();
+            assertSame(agentLoop, client.eventLoop());
+            assertSame(agentLoop, accepted.poll(5, TimeUnit.SECONDS).eventLoop());
+
+            // other channels stay on the local group
+            Channel other = cb.connect(serverAddress).sync().channel();
+            Channel otherChild = accepted.poll(5, TimeUnit.SECONDS);
+            assertFalse(agentLoop == otherChild.eventLoop());
+            assertTrue(otherChild.eventLoop().parent() == localGroup);
+
+            client.close().sync();
+            other.close().sync();
+            server.close().sync();
+        } finally {
+            agentGroup.shutdownGracefully();
+            localGroup.shutdownGracefully();
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.Test;
+import org.opendaylight.usc.plugin.UscFrameBundler;
+import org.opendaylight.usc.plugin.UscPlugin;
+import org.opendaylight.usc.protocol.UscBundle;
+import org.opendaylight.usc.protocol.UscCapabilities;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscData;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for bundling USC frames.
+ */
+public class UscFrameBundlerTest extends AbstractTest {
+
+    @Test
+    public void testBundlerPacksFrames() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new UscFrameBundler(100, 1000));
+
+        // without the capability each frame is passed through
+        ch.writeAndFlush(new UscData(830, 1, Unpooled.wrappedBuffer(new byte[10])));
+        UscData single = (UscData) ch.readOutbound();
+        assertEquals(1, single.getHeader().getSessionId());
+        single.release();
+
+        UscPlugin.setCapabilities(ch, UscCapabilities.NONE.with(Feature.BUNDLING));
+        for (int i = 0; i < 5; i++) {
+            ch.write(new UscData(830, i, Unpooled.wrappedBuffer(new byte[10])));
+        }
+        // 8 byte bundle header and 18 bytes per frame fit 5 frames into 100
+        // bytes, and nothing is written before the flush
+        assertEquals(null, ch.readOutbound());
+        ch.flush();
+        UscBundle bundle = (UscBundle) ch.readOutbound();
+        assertEquals(5, bundle.getFrames(false).size());
+        bundle.release();
+
+        // the sixth frame exceeds the MTU and starts the next bundle
+        for (int i = 0; i < 6; i++) {
+            ch.write(new UscData(830, i, Unpooled.wrappedBuffer(new byte[10])));
+        }
+        ch.flush();
+        bundle = (UscBundle) ch.readOutbound();
+        assertEquals(5, bundle.getFrames(false).size());
+        bundle.release();
+        single = (UscData) ch.readOutbound();
+        assertEquals(5, single.getHeader().getSessionId());
+        single.release();
+
+        // frames too large for a bundle are written alone
+        ch.writeAndFlush(new UscData(830, 7, Unpooled.wrappedBuffer(new byte[100])));
+        single = (UscData) ch.readOutbound();
+        assertEquals(100, single.getPayload().readableBytes());
+        single.release();
+        assertFalse(ch.finish());
+    }
+
+}
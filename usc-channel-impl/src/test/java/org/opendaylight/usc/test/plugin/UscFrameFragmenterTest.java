@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.opendaylight.usc.plugin.UscFrameFragmenter;
+import org.opendaylight.usc.plugin.UscPlugin;
+import org.opendaylight.usc.protocol.UscCapabilities;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscData;
+import org.opendaylight.usc.protocol.UscFragment;
+import org.opendaylight.usc.protocol.UscFrame;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for fragmenting and reassembling USC frames.
+ */
+public class UscFrameFragmenterTest extends AbstractTest {
+
+    private static ByteBuf filled(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return Unpooled.wrappedBuffer(bytes);
+    }
+
+    @Test
+    public void testFragmentRoundTrip() throws Exception {
+        byte[] bytes = new byte[250];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        EmbeddedChannel sender = new EmbeddedChannel(new UscFrameFragmenter(100, 1000, 1000));
+        UscPlugin.setCapabilities(sender, UscCapabilities.NONE.with(Feature.FRAGMENTATION));
+        sender.writeAndFlush(new UscData(161, 4, Unpooled.wrappedBuffer(bytes)));
+
+        // each fragment carries 100 - 8 - 10 bytes of data and goes over the
+        // wire
+        List<ByteBuf> datagrams = new ArrayList<>();
+        for (Object msg; (msg = sender.readOutbound()) != null;) {
+            UscFragment fragment = (UscFragment) msg;
+            assertTrue(fragment.length() <= 100);
+            assertEquals(bytes.length, fragment.getTotalLength());
+            datagrams.add(fragment.encode(UnpooledByteBufAllocator.DEFAULT));
+            fragment.release();
+        }
+        assertEquals(4, datagrams.size());
+        assertFalse(sender.finish());
+
+        // reassembly copes with reordering and duplicates
+        Collections.reverse(datagrams);
+        datagrams.add(2, datagrams.get(1).copy());
+        UscFrameFragmenter fragmenter = new UscFrameFragmenter(100, 1000, 1000);
+        EmbeddedChannel receiver = new EmbeddedChannel(fragmenter);
+        for (ByteBuf datagram : datagrams) {
+            receiver.writeInbound(UscFrame.getFromByteBuf(datagram, true));
+            datagram.release();
+        }
+        UscData data = (UscData) receiver.readInbound();
+        assertEquals(161, data.getHeader().getApplicationPort());
+        assertEquals(4, data.getHeader().getSessionId());
+        assertEquals(Unpooled.wrappedBuffer(bytes), data.getPayload());
+        assertEquals(null, receiver.readInbound());
+        assertEquals(0, fragmenter.getBufferedBytes());
+        data.release();
+        assertFalse(receiver.finish());
+    }
+
+    @Test
+    public void testReassemblyOverlap() throws Exception {
+        UscFrameFragmenter fragmenter = new UscFrameFragmenter(100, 1000, 1000);
+        EmbeddedChannel receiver = new EmbeddedChannel(fragmenter);
+
+        // overlapping fragments don't add up to a complete payload
+        receiver.writeInbound(new UscFragment(161, 1, 0, 0, 300, filled(100, 1)));
+        receiver.writeInbound(new UscFragment(161, 1, 0, 50, 300, filled(100, 2)));
+        receiver.writeInbound(new UscFragment(161, 1, 0, 150, 300, filled(150, 2)));
+        assertEquals(null, receiver.readInbound());
+
+        // a wrapped message ID with other bytes replaces the stale payload
+        receiver.writeInbound(new UscFragment(161, 2, 7, 0, 300, filled(100, 1)));
+        receiver.writeInbound(new UscFragment(161, 2, 7, 0, 300, filled(100, 3)));
+        receiver.writeInbound(new UscFragment(161, 2, 7, 100, 300, filled(100, 3)));
+        receiver.writeInbound(new UscFragment(161, 2, 7, 100, 300, filled(100, 3)));
+        assertEquals(null, receiver.readInbound());
+        receiver.writeInbound(new UscFragment(161, 2, 7, 200, 300, filled(100, 3)));
+        UscData data = (UscData) receiver.readInbound();
+        assertEquals(filled(300, 3), data.getPayload());
+        data.release();
+        assertEquals(300, fragmenter.getBufferedBytes());
+        receiver.finish();
+        assertEquals(0, fragmenter.getBufferedBytes());
+    }
+
+    @Test
+    public void testReassemblyEviction() throws Exception {
+        UscFrameFragmenter fragmenter = new UscFrameFragmenter(100, 500, 1000);
+        EmbeddedChannel receiver = new EmbeddedChannel(fragmenter);
+
+        receiver.writeInbound(new UscFragment(161, 1, 0, 0, 300, Unpooled.wrappedBuffer(new byte[100])));
+        assertEquals(300, fragmenter.getBufferedBytes());
+
+        // the second payload doesn't fit next to the first one, which is
+        // evicted
+        receiver.writeInbound(new UscFragment(161, 2, 0, 0, 300, Unpooled.wrappedBuffer(new byte[100])));
+        assertEquals(300, fragmenter.getBufferedBytes());
+
+        // a payload larger than the buffer is dropped at once
+        receiver.writeInbound(new UscFragment(161, 3, 0, 0, 600, Unpooled.wrappedBuffer(new byte[100])));
+        assertEquals(300, fragmenter.getBufferedBytes());
+        assertEquals(null, receiver.readInbound());
+        receiver.finish();
+        assertEquals(0, fragmenter.getBufferedBytes());
+    }
+
+}
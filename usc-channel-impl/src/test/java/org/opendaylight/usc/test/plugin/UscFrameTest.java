@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.DecoderException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.opendaylight.usc.plugin.UscFrameDecoderTcp;
+import org.opendaylight.usc.plugin.UscFrameDecoderUdp;
+import org.opendaylight.usc.plugin.UscFrameEncoderTcp;
+import org.opendaylight.usc.plugin.UscMultiplexer;
+import org.opendaylight.usc.plugin.UscPlugin;
+import org.opendaylight.usc.protocol.UscBundle;
+import org.opendaylight.usc.protocol.UscCapabilities;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscControl;
+import org.opendaylight.usc.protocol.UscData;
+import org.opendaylight.usc.protocol.UscFrame;
+import org.opendaylight.usc.protocol.UscHeader;
+import org.opendaylight.usc.protocol.UscHeader.OperationType;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for encoding and decoding USC frames.
+ */
+public class UscFrameTest extends AbstractTest {
+
+    private static ByteBuf dataFrame(byte[] payload) {
+        return dataFrame(UscHeader.USC_VERSION, payload);
+    }
+
+    private static ByteBuf dataFrame(int version, byte[] payload) {
+        UscHeader header = new UscHeader(version, OperationType.DATA, 830, 1, payload.length);
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes(header.toByteBuffer());
+        buf.writeBytes(payload);
+        return buf;
+    }
+
+    @Test
+    public void testDecodeCopiesPayload() throws Exception {
+        ByteBuf buf = dataFrame(new byte[] { 1, 2, 3 });
+
+        UscFrame frame = UscFrame.getFromByteBuf(buf);
+        assertTrue(frame instanceof UscData);
+        assertEquals(3, frame.getPayload().readableBytes());
+        assertEquals(1, buf.refCnt());
+
+        // the copy is independent of the inbound buffer
+        buf.release();
+        assertEquals(1, ((UscData) frame).refCnt());
+        assertEquals(2, frame.getPayload().getByte(1));
+        ((UscData) frame).release();
+    }
+
+    @Test
+    public void testDecodeRetainsPayload() throws Exception {
+        ByteBuf buf = dataFrame(new byte[] { 1, 2, 3 });
+
+        UscFrame frame = UscFrame.getFromByteBuf(buf, true);
+        assertTrue(frame instanceof UscData);
+        assertEquals(3, frame.getPayload().readableBytes());
+        assertEquals(1, frame.getPayload().getByte(0));
+
+        // the payload shares the inbound buffer and holds its own reference
+        assertEquals(2, buf.refCnt());
+        buf.release();
+        assertEquals(1, ((UscData) frame).refCnt());
+        assertEquals(3, frame.getPayload().getByte(2));
+
+        assertTrue(((UscData) frame).release());
+        assertEquals(0, buf.refCnt());
+    }
+
+    @Test
+    public void testEncodeSmallFrame() throws Exception {
+        UscData data = new UscData(830, 1, Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 }));
+
+        ByteBuf buf = data.encode(UnpooledByteBufAllocator.DEFAULT);
+        assertFalse(buf instanceof CompositeByteBuf);
+        assertEquals(data.length(), buf.readableBytes());
+        assertEquals(3, buf.getUnsignedShort(UscHeader.PAYLOAD_LENGTH_OFFSET));
+        assertEquals(1, buf.getByte(UscHeader.HEADER_LENGTH));
+        data.release();
+        buf.release();
+
+        UscControl control = new UscControl(830, 1, UscControl.ControlCode.ECHO.getCode());
+        buf = control.encode(UnpooledByteBufAllocator.DEFAULT);
+        assertEquals(UscHeader.HEADER_LENGTH + 2, buf.readableBytes());
+        assertEquals(UscControl.ControlCode.ECHO.getCode(), buf.getUnsignedShort(UscHeader.HEADER_LENGTH));
+        buf.release();
+    }
+
+    @Test
+    public void testEncodeLargeFrame() throws Exception {
+        ByteBuf payload = Unpooled.buffer(UscData.COMPOSITE_THRESHOLD);
+        payload.writerIndex(UscData.COMPOSITE_THRESHOLD);
+        UscData data = new UscData(830, 1, payload);
+
+        ByteBuf buf = data.encode(UnpooledByteBufAllocator.DEFAULT);
+        assertTrue(buf instanceof CompositeByteBuf);
+        assertEquals(data.length(), buf.readableBytes());
+
+        // the payload is shared, not copied, and outlives the UscData
+        assertEquals(2, payload.refCnt());
+        data.release();
+        assertEquals(1, payload.refCnt());
+        buf.release();
+        assertEquals(0, payload.refCnt());
+    }
+
+    @Test
+    public void testSegmentReferenceCounts() throws Exception {
+        final int maxPayloadSize = 100;
+        ByteBuf payload = Unpooled.buffer(250);
+        for (int i = 0; i < 250; ++i) {
+            payload.writeByte(i);
+        }
+        payload.readerIndex(10);
+
+        List<UscData> frames = UscData.segment(830, 1, payload, maxPayloadSize);
+        assertEquals(3, frames.size());
+        assertEquals(100, frames.get(0).getHeader().getPayloadLength());
+        assertEquals(100, frames.get(1).getHeader().getPayloadLength());
+        assertEquals(40, frames.get(2).getHeader().getPayloadLength());
+        assertEquals(10, frames.get(0).getPayload().getByte(0));
+        assertEquals(110, frames.get(1).getPayload().getByte(0));
+
+        // segmenting neither copies nor consumes the original buffer
+        assertEquals(10, payload.readerIndex());
+        assertEquals(4, payload.refCnt());
+
+        // the caller releases its own reference once all segments are written
+        payload.release();
+        assertEquals(3, payload.refCnt());
+        for (UscData frame : frames) {
+            assertEquals(frame.getPayload().refCnt(), payload.refCnt());
+            frame.release();
+        }
+        assertEquals(0, payload.refCnt());
+    }
+
+    @Test
+    public void testSegmentEmptyPayload() throws Exception {
+        ByteBuf payload = Unpooled.buffer(0);
+
+        assertTrue(UscData.segment(830, 1, payload, 100).isEmpty());
+        assertEquals(1, payload.refCnt());
+        payload.release();
+    }
+
+    @Test
+    public void testDecodeMixedVersions() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new UscFrameDecoderTcp(true));
+        byte[] large = new byte[UscHeader.MAX_PAYLOAD_LENGTH_V1 + 2];
+        large[large.length - 1] = 9;
+
+        // a version 2 frame longer than 64K between two version 1 frames,
+        // delivered in one read
+        ByteBuf in = Unpooled.buffer();
+        in.writeBytes(dataFrame(new byte[] { 1 }));
+        in.writeBytes(dataFrame(UscHeader.USC_VERSION_2, large));
+        in.writeBytes(dataFrame(new byte[] { 2 }));
+        assertTrue(ch.writeInbound(in));
+
+        UscData first = (UscData) ch.readInbound();
+        assertEquals(1, first.getPayload().getByte(0));
+        UscData second = (UscData) ch.readInbound();
+        assertEquals(UscHeader.USC_VERSION_2, second.getHeader().getUscVersion());
+        assertEquals(large.length, second.getPayload().readableBytes());
+        assertEquals(9, second.getPayload().getByte(large.length - 1));
+        UscData third = (UscData) ch.readInbound();
+        assertEquals(2, third.getPayload().getByte(0));
+        assertEquals(null, ch.readInbound());
+
+        // the channel is raised to the newest version received
+        assertEquals(UscHeader.USC_VERSION_2, UscPlugin.getPeerVersion(ch));
+        first.release();
+        second.release();
+        third.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testEncodePeerVersion() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(UscFrameEncoderTcp.getInstance());
+        assertEquals(UscMultiplexer.MAX_PAYLOAD_SIZE, UscPlugin.getMaxPayloadSize(ch));
+
+        UscPlugin.updatePeerVersion(ch, UscHeader.USC_VERSION_2);
+        assertEquals(UscMultiplexer.MAX_PAYLOAD_SIZE_V2, UscPlugin.getMaxPayloadSize(ch));
+        assertTrue(ch.writeOutbound(new UscData(830, 1, Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 }))));
+
+        ByteBuf buf = (ByteBuf) ch.readOutbound();
+        assertEquals(UscHeader.USC_VERSION_2, UscHeader.fromByteBuffer(buf.nioBuffer()).getUscVersion());
+        buf.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testHelloRoundTrip() throws Exception {
+        UscCapabilities capabilities = new UscCapabilities(UscHeader.USC_VERSION_2, Feature.BUNDLING.getMask(),
+                100000);
+        UscControl hello = new UscControl(0, 0, UscControl.ControlCode.HELLO_REQUEST.getCode(), capabilities);
+        ByteBuf buf = hello.encode(UnpooledByteBufAllocator.DEFAULT);
+        assertEquals(UscHeader.HEADER_LENGTH + 2 + UscCapabilities.PAYLOAD_LENGTH, buf.readableBytes());
+
+        UscControl frame = (UscControl) UscFrame.getFromByteBuf(buf);
+        assertEquals(UscControl.ControlCode.HELLO_REQUEST, frame.getControlCode());
+        assertEquals(capabilities, frame.getCapabilities());
+        buf.release();
+
+        // other control messages carry no capabilities
+        buf = new UscControl(830, 1, UscControl.ControlCode.ECHO.getCode()).encode(UnpooledByteBufAllocator.DEFAULT);
+        assertEquals(null, ((UscControl) UscFrame.getFromByteBuf(buf)).getCapabilities());
+        buf.release();
+    }
+
+    @Test
+    public void testWindowUpdateRoundTrip() throws Exception {
+        ByteBuf buf = UscControl.windowUpdate(830, 1, 70000).encode(UnpooledByteBufAllocator.DEFAULT);
+        assertEquals(UscHeader.HEADER_LENGTH + 2 + UscControl.WINDOW_INCREMENT_LENGTH, buf.readableBytes());
+
+        UscControl frame = (UscControl) UscFrame.getFromByteBuf(buf);
+        assertEquals(UscControl.ControlCode.WINDOW_UPDATE, frame.getControlCode());
+        assertEquals(1, frame.getHeader().getSessionId());
+        assertEquals(70000, frame.getWindowIncrement());
+        buf.release();
+    }
+
+    @Test
+    public void testBundleRoundTrip() throws Exception {
+        List<UscFrame> frames = Arrays.asList(new UscData(830, 1, Unpooled.wrappedBuffer(new byte[] { 1, 2 })),
+                new UscControl(830, 2, UscControl.ControlCode.ECHO.getCode()), new UscData(161, 3,
+                        Unpooled.wrappedBuffer(new byte[] { 3 })));
+        UscBundle bundle = UscBundle.create(UnpooledByteBufAllocator.DEFAULT, frames, UscHeader.USC_VERSION);
+        assertEquals(0, ((UscData) frames.get(0)).refCnt());
+
+        InetSocketAddress address = new InetSocketAddress(1069);
+        EmbeddedChannel ch = new EmbeddedChannel(new UscFrameDecoderUdp(true));
+        assertTrue(ch.writeInbound(new DatagramPacket(bundle.encode(UnpooledByteBufAllocator.DEFAULT), address)));
+        bundle.release();
+
+        UscData first = (UscData) ch.readInbound();
+        assertEquals(1, first.getHeader().getSessionId());
+        assertEquals(2, first.getPayload().getByte(1));
+        UscControl second = (UscControl) ch.readInbound();
+        assertEquals(UscControl.ControlCode.ECHO, second.getControlCode());
+        UscData third = (UscData) ch.readInbound();
+        assertEquals(161, third.getHeader().getApplicationPort());
+        assertEquals(3, third.getPayload().getByte(0));
+        assertEquals(null, ch.readInbound());
+        first.release();
+        third.release();
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testDecodeTruncatedFragment() throws Exception {
+        // the datagram ends within the fragment header
+        UscHeader header = new UscHeader(UscHeader.USC_VERSION, OperationType.FRAGMENT, 161, 4, 4);
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes(header.toByteBuffer());
+        buf.writeInt(0);
+        EmbeddedChannel ch = new EmbeddedChannel(UscFrameDecoderUdp.getInstance(true));
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1068);
+        try {
+            ch.writeInbound(new DatagramPacket(buf, address, address));
+            fail("truncated fragment decoded");
+        } catch (DecoderException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(0, buf.refCnt());
+        assertNull(ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
+}
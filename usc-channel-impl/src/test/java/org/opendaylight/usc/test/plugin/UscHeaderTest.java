@@ -9,6 +9,8 @@ package org.opendaylight.usc.test.plugin;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 import org.junit.Test;
 import org.opendaylight.usc.protocol.UscHeader;
@@ -169,6 +171,44 @@ public class UscHeaderTest extends AbstractTest {
         assertArrayEquals(new byte[] { 0x12, 0x0, 0x3, 0x4, 0x5, 0x6, 0x7, 0x8 }, bytes);
     }
 
+    @Test
+    public void testWriteTo() {
+        UscHeader header = new UscHeader(2, OperationType.DATA, 0x0304, 0x0506, 0x0708);
+        ByteBuf buf = Unpooled.buffer(UscHeader.HEADER_LENGTH);
+        header.writeTo(buf);
+        byte[] bytes = new byte[8];
+        buf.readBytes(bytes);
+
+        assertArrayEquals(new byte[] { 0x12, 0x0, 0x3, 0x4, 0x5, 0x6, 0x7, 0x8 }, bytes);
+    }
+
+    @Test
+    public void testWriteToExtendedLength() {
+        UscHeader header = new UscHeader(1, OperationType.DATA, 0x0304, 0x0506, 0x090708);
+        ByteBuf buf = Unpooled.buffer(UscHeader.HEADER_LENGTH);
+        header.writeTo(buf, UscHeader.USC_VERSION_2);
+        byte[] bytes = new byte[8];
+        buf.readBytes(bytes);
+
+        assertArrayEquals(new byte[] { 0x12, 0x9, 0x3, 0x4, 0x5, 0x6, 0x7, 0x8 }, bytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriteToLengthTooLong() {
+        UscHeader header = new UscHeader(1, OperationType.DATA, 0x0304, 0x0506, 0x090708);
+        header.writeTo(Unpooled.buffer(UscHeader.HEADER_LENGTH), UscHeader.USC_VERSION);
+    }
+
+    @Test
+    public void testFromBytesExtendedLength() {
+        byte[] bytes = new byte[] { 0x12, 0x9, 0x3, 0x4, 0x5, 0x6, 0x7, 0x8 };
+        assertEquals(0x090708, UscHeader.getFromBytes(bytes).getPayloadLength());
+
+        // the reserved byte is ignored in version 1
+        bytes[0] = 0x11;
+        assertEquals(0x0708, UscHeader.getFromBytes(bytes).getPayloadLength());
+    }
+
     @Test
     public void testFromBytes() {
         byte[] bytes = new byte[] { 0x12, 0x0, 0x3, 0x4, 0x5, 0x6, 0x7, 0x8 };
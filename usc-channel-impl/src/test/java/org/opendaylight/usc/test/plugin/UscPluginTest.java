@@ -8,8 +8,11 @@
 package org.opendaylight.usc.test.plugin;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
@@ -43,10 +46,15 @@ import org.opendaylight.usc.manager.monitor.evt.UscChannelCreateEvent;
 import org.opendaylight.usc.manager.monitor.evt.UscSessionCloseEvent;
 import org.opendaylight.usc.manager.monitor.evt.UscSessionCreateEvent;
 import org.opendaylight.usc.manager.monitor.evt.UscSessionTransactionEvent;
+import org.opendaylight.usc.plugin.UscDirectSession;
 import org.opendaylight.usc.plugin.UscPlugin;
+import org.opendaylight.usc.plugin.UscReactiveSession;
+import org.opendaylight.usc.plugin.UscSessionListener;
 import org.opendaylight.usc.plugin.model.UscDevice;
 import org.opendaylight.usc.plugin.model.UscSessionImpl;
 import org.opendaylight.usc.test.AbstractUscTest;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 //import org.slf4j.impl.SimpleLogger;
@@ -243,6 +251,112 @@ public abstract class UscPluginTest extends AbstractUscTest {
         }
     }
 
+    @Test
+    public void testDirectSession() throws Exception {
+        try (AutoCloseable echoServer = startEchoServer(false);
+                AutoCloseable agent = startAgent(false);
+                UscPlugin plugin = getPlugin()) {
+
+            final SettableFuture<String> received = SettableFuture.create();
+            final SettableFuture<Boolean> closed = SettableFuture.create();
+            UscDirectSession session = plugin.openSession(new InetSocketAddress(HOST, PORT),
+                    new UscSessionListener() {
+                        @Override
+                        public void onData(UscDirectSession session, ByteBuf data) {
+                            received.set(data.toString(CharsetUtil.UTF_8));
+                        }
+
+                        @Override
+                        public void onError(UscDirectSession session, Throwable cause) {
+                            received.setException(cause);
+                        }
+
+                        @Override
+                        public void onClose(UscDirectSession session) {
+                            closed.set(true);
+                        }
+                    }).get(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertEquals(1, session.getSessionId());
+            assertTrue(session.isWritable());
+
+            String message = "test1\n";
+            session.writeAndFlush(Unpooled.copiedBuffer(message, CharsetUtil.UTF_8));
+
+            // wait for response
+            assertEquals(message, received.get(TIMEOUT, TimeUnit.MILLISECONDS));
+
+            session.close();
+            assertTrue(closed.get(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertFalse(session.isOpen());
+            assertEquals(0, session.getChannel().getSessionCount());
+        }
+    }
+
+    @Test
+    public void testReactiveSession() throws Exception {
+        try (AutoCloseable echoServer = startEchoServer(false);
+                AutoCloseable agent = startAgent(false);
+                UscPlugin plugin = getPlugin()) {
+
+            final UscReactiveSession session = plugin.openReactiveSession(new InetSocketAddress(HOST, PORT)).get(
+                    TIMEOUT, TimeUnit.MILLISECONDS);
+            final String message = "test1\n";
+
+            final SettableFuture<String> received = SettableFuture.create();
+            final SettableFuture<Subscription> inbound = SettableFuture.create();
+            session.getPublisher().subscribe(new Subscriber<ByteBuf>() {
+                @Override
+                public void onSubscribe(Subscription s) {
+                    inbound.set(s);
+                    s.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuf data) {
+                    received.set(data.toString(CharsetUtil.UTF_8));
+                    data.release();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    received.setException(t);
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+
+            // a publisher of one message, which the session cancels once it
+            // has closed
+            final SettableFuture<Boolean> outbound = SettableFuture.create();
+            session.getSubscriber().onSubscribe(new Subscription() {
+                private boolean sent;
+
+                @Override
+                public void request(long n) {
+                    if (!sent) {
+                        sent = true;
+                        session.getSubscriber().onNext(Unpooled.copiedBuffer(message, CharsetUtil.UTF_8));
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    outbound.set(true);
+                }
+            });
+
+            // wait for response
+            assertEquals(message, received.get(TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // cancelling closes the session
+            inbound.get().cancel();
+            assertTrue(outbound.get(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertFalse(session.getSession().isOpen());
+        }
+    }
+
     public void testConnectionEvents() throws Exception {
         // start the Node.js echo server
         // start the Node.js USC Agent
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.opendaylight.usc.plugin.UscSessionScheduler;
+import org.opendaylight.usc.protocol.UscControl;
+import org.opendaylight.usc.protocol.UscData;
+import org.opendaylight.usc.protocol.UscFrame;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for the scheduling of USC session frames.
+ */
+public class UscSessionSchedulerTest extends AbstractTest {
+
+    @Test
+    public void testSchedulerWeights() throws Exception {
+        assertEquals(Collections.singletonMap(830, 2), UscSessionScheduler.parseWeights("830:2, 514:0,x:1,22"));
+
+        // every frame is 18 bytes, so a session of weight 1 sends one frame
+        // per round
+        EmbeddedChannel ch = new EmbeddedChannel(new UscSessionScheduler(18, Collections.singletonMap(830, 2)));
+        for (int i = 0; i < 3; i++) {
+            ch.write(new UscData(514, 1, Unpooled.wrappedBuffer(new byte[10])));
+        }
+        for (int i = 0; i < 3; i++) {
+            ch.write(new UscData(830, 2, Unpooled.wrappedBuffer(new byte[10])));
+        }
+        UscSessionScheduler scheduler = ch.pipeline().get(UscSessionScheduler.class);
+        assertEquals(3, scheduler.getQueuedFrames(1));
+        assertEquals(3 * 18, scheduler.getQueuedBytes(2));
+
+        // control frames are not queued behind data
+        ch.write(new UscControl(514, 1, UscControl.ControlCode.ECHO.getCode()));
+        ch.flush();
+        assertTrue(ch.readOutbound() instanceof UscControl);
+        for (int sessionId : new int[] { 1, 2, 2, 1, 2, 1 }) {
+            UscData frame = (UscData) ch.readOutbound();
+            assertEquals(sessionId, frame.getHeader().getSessionId());
+            frame.release();
+        }
+        assertEquals(0, scheduler.getQueuedFrames(1));
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testSchedulerTermination() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new UscSessionScheduler(18,
+                Collections.<Integer, Integer> emptyMap()));
+        for (int i = 0; i < 2; i++) {
+            ch.write(new UscData(514, 1, Unpooled.wrappedBuffer(new byte[10])));
+        }
+        ch.write(new UscData(830, 2, Unpooled.wrappedBuffer(new byte[10])));
+
+        // the termination of a session waits for its data, while the
+        // termination of a session without queued data goes out at once
+        ch.write(new UscControl(514, 1, UscControl.ControlCode.TERMINATION_REQUEST.getCode()));
+        ch.write(new UscControl(22, 3, UscControl.ControlCode.TERMINATION_REQUEST.getCode()));
+        UscSessionScheduler scheduler = ch.pipeline().get(UscSessionScheduler.class);
+        assertEquals(3, scheduler.getQueuedFrames(1));
+        assertEquals(0, scheduler.getQueuedFrames(3));
+        ch.flush();
+
+        UscControl termination = (UscControl) ch.readOutbound();
+        assertEquals(3, termination.getHeader().getSessionId());
+        int sessionOneData = 0;
+        for (Object msg; (msg = ch.readOutbound()) != null;) {
+            UscFrame frame = (UscFrame) msg;
+            if (frame.getHeader().getSessionId() != 1) {
+                ((UscData) frame).release();
+            } else if (frame instanceof UscData) {
+                sessionOneData++;
+                ((UscData) frame).release();
+            } else {
+                assertEquals(2, sessionOneData);
+                assertEquals(UscControl.ControlCode.TERMINATION_REQUEST, ((UscControl) frame).getControlCode());
+                sessionOneData = -1;
+            }
+        }
+        assertEquals(-1, sessionOneData);
+        assertFalse(ch.finish());
+    }
+
+}
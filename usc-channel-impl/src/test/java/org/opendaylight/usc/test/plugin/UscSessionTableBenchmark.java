@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.opendaylight.usc.plugin.UscSessionIdAllocator;
+import org.opendaylight.usc.plugin.UscSessionTable;
+import org.opendaylight.usc.plugin.model.UscSessionImpl;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Benchmark of allocating session IDs and looking up sessions, which only
+ * runs in the benchmark profile.
+ */
+public class UscSessionTableBenchmark extends AbstractTest {
+
+    private static final int ITERATIONS = 1000;
+    private static final int LOOKUPS = 1000000;
+
+    private static UscSessionImpl add(UscSessionTable table) {
+        final UscSessionImpl session = new UscSessionImpl(null, table.allocate(), 830, null);
+        table.put(session);
+        return session;
+    }
+
+    /**
+     * Compares the cost of opening a session with all lower IDs in use, and of
+     * looking up sessions, with the former linear scan over a map
+     */
+    @Test
+    public void testAllocateAndLookup() {
+        for (int sessions : new int[] { 10, 1000, 60000 }) {
+            // table
+            UscSessionTable table = new UscSessionTable();
+            for (int i = 0; i < sessions; i++) {
+                add(table);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                table.remove(sessions);
+                add(table);
+            }
+            final long tableAllocate = (System.nanoTime() - start) / ITERATIONS;
+
+            Random random = new Random(sessions);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                assertSame(table.get(1 + random.nextInt(sessions)).getChannel(), null);
+            }
+            final long tableLookup = (System.nanoTime() - start) / (LOOKUPS / 1000);
+
+            // the former session manager
+            ConcurrentHashMap<Integer, UscSessionImpl> map = new ConcurrentHashMap<>();
+            for (int i = 1; i <= sessions; i++) {
+                map.put(i, new UscSessionImpl(null, i, 830, null));
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                map.remove(sessions);
+                for (int sessionId = 1; sessionId <= UscSessionIdAllocator.MAX_SESSION_ID; ++sessionId) {
+                    if (!map.containsKey(sessionId)) {
+                        if (map.putIfAbsent(sessionId, new UscSessionImpl(null, sessionId, 830, null)) == null) {
+                            break;
+                        }
+                    }
+                }
+            }
+            final long mapAllocate = (System.nanoTime() - start) / ITERATIONS;
+
+            random = new Random(sessions);
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                assertSame(map.get(1 + random.nextInt(sessions)).getChannel(), null);
+            }
+            final long mapLookup = (System.nanoTime() - start) / (LOOKUPS / 1000);
+
+            System.out.println("UscSessionTable with " + sessions + " sessions: allocate " + tableAllocate
+                    + " ns, 1000 lookups " + tableLookup + " ns; linear scan: allocate " + mapAllocate
+                    + " ns, 1000 lookups " + mapLookup + " ns");
+        }
+    }
+
+}
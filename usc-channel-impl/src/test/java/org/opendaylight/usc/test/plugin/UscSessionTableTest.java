@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opendaylight.usc.plugin.UscSessionIdAllocator;
+import org.opendaylight.usc.plugin.UscSessionTable;
+import org.opendaylight.usc.plugin.model.UscSessionImpl;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for allocating session IDs and looking up sessions.
+ */
+public class UscSessionTableTest extends AbstractTest {
+
+    private static UscSessionImpl add(UscSessionTable table) {
+        final UscSessionImpl session = new UscSessionImpl(null, table.allocate(), 830, null);
+        table.put(session);
+        return session;
+    }
+
+    @Test
+    public void testSequentialAllocation() {
+        UscSessionTable table = new UscSessionTable();
+        for (int i = 1; i <= 600; i++) {
+            assertEquals(i, add(table).getSessionId());
+        }
+        assertEquals(600, table.size());
+
+        // the lowest closed ID is reused first
+        assertEquals(300, table.remove(300).getSessionId());
+        assertEquals(7, table.remove(7).getSessionId());
+        assertNull(table.remove(7));
+        assertNull(table.get(7));
+        assertEquals(7, add(table).getSessionId());
+        assertEquals(300, add(table).getSessionId());
+        assertEquals(601, add(table).getSessionId());
+        assertEquals(601, table.values().size());
+        assertNull(table.get(0));
+        assertNull(table.get(70000));
+    }
+
+    @Test
+    public void testExhaustion() {
+        UscSessionIdAllocator allocator = new UscSessionIdAllocator();
+        for (int i = 1; i <= UscSessionIdAllocator.MAX_SESSION_ID; i++) {
+            assertEquals(i, allocator.allocate());
+        }
+        assertEquals(0, allocator.allocate());
+        allocator.free(4711);
+        assertFalse(allocator.isAllocated(4711));
+        assertEquals(4711, allocator.allocate());
+        assertTrue(allocator.isAllocated(4711));
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        final UscSessionIdAllocator allocator = new UscSessionIdAllocator();
+        final ConcurrentSkipListSet<Integer> ids = new ConcurrentSkipListSet<>();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 5000; i++) {
+                        final int id = allocator.allocate();
+                        if (!ids.add(id)) {
+                            duplicates.incrementAndGet();
+                        }
+                        if (i % 3 == 0) {
+                            ids.remove(id);
+                            allocator.free(id);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, duplicates.get());
+        for (int id : ids) {
+            assertTrue(allocator.isAllocated(id));
+        }
+        // no ID was lost, so the next one is the lowest free
+        int free = 1;
+        while (ids.contains(free)) {
+            free++;
+        }
+        assertEquals(free, allocator.allocate());
+    }
+
+}
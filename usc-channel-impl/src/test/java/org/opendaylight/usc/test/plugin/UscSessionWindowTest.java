@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015 Huawei, Inc and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.usc.test.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.opendaylight.usc.plugin.UscSessionCreditHandler;
+import org.opendaylight.usc.plugin.UscSessionWindow;
+import org.opendaylight.usc.plugin.model.UscChannel.ChannelType;
+import org.opendaylight.usc.plugin.model.UscChannelImpl;
+import org.opendaylight.usc.plugin.model.UscDevice;
+import org.opendaylight.usc.plugin.model.UscSessionImpl;
+import org.opendaylight.usc.protocol.UscCapabilities;
+import org.opendaylight.usc.protocol.UscCapabilities.Feature;
+import org.opendaylight.usc.protocol.UscControl;
+import org.opendaylight.usc.test.AbstractTest;
+
+/**
+ * Test suite for the flow control windows of USC sessions.
+ */
+public class UscSessionWindowTest extends AbstractTest {
+
+    @Test
+    public void testSessionWindow() throws Exception {
+        EmbeddedChannel source = new EmbeddedChannel();
+        EmbeddedChannel sink = new EmbeddedChannel();
+        UscSessionWindow sender = new UscSessionWindow();
+        UscSessionWindow receiver = new UscSessionWindow();
+
+        sender.consume(UscSessionWindow.INITIAL_WINDOW - 1);
+        sender.update(source, sink);
+        assertTrue(source.config().isAutoRead());
+        sender.consume(1000);
+        sender.update(source, sink);
+        assertFalse(source.config().isAutoRead());
+
+        // credits are returned in batches
+        assertEquals(0, receiver.received(UscSessionWindow.UPDATE_THRESHOLD - 1));
+        int increment = receiver.received(500);
+        assertEquals(UscSessionWindow.UPDATE_THRESHOLD + 499, increment);
+        assertEquals(0, receiver.received(1));
+
+        sender.replenish(increment);
+        sender.update(source, sink);
+        assertTrue(source.config().isAutoRead());
+        assertEquals(UscSessionWindow.UPDATE_THRESHOLD - 500, sender.getSendCredits());
+
+        // reading also stops while the sink is backed up
+        sink.config().setWriteBufferWaterMark(new WriteBufferWaterMark(1, 2));
+        sink.write(Unpooled.wrappedBuffer(new byte[10]));
+        assertFalse(sink.isWritable());
+        sender.update(source, sink);
+        assertFalse(source.config().isAutoRead());
+        sink.flush();
+        assertTrue(sink.isWritable());
+        sender.update(source, sink);
+        assertTrue(source.config().isAutoRead());
+        ((ByteBuf) sink.readOutbound()).release();
+        source.finish();
+        sink.finish();
+    }
+
+    @Test
+    public void testSessionCredits() throws Exception {
+        EmbeddedChannel agent = new EmbeddedChannel();
+        UscChannelImpl connection = new UscChannelImpl(null, new UscDevice(InetAddress.getLoopbackAddress()), agent,
+                false, ChannelType.TCP);
+        connection.setCapabilities(UscCapabilities.NONE.with(Feature.FLOW_CONTROL));
+        UscSessionImpl session = new UscSessionImpl(connection, 1, 830, null);
+        final List<ByteBuf> pending = new ArrayList<>();
+        EmbeddedChannel client = new EmbeddedChannel(new UscSessionCreditHandler(session),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        pending.add((ByteBuf) msg);
+                    }
+                });
+
+        // no credits go back before the client has read the data
+        assertNull(agent.readOutbound());
+        client.writeInbound(Unpooled.wrappedBuffer(new byte[UscSessionWindow.UPDATE_THRESHOLD - 1]));
+        assertNull(agent.readOutbound());
+        client.writeInbound(Unpooled.wrappedBuffer(new byte[1]));
+        UscControl update = (UscControl) agent.readOutbound();
+        assertEquals(UscControl.ControlCode.WINDOW_UPDATE, update.getControlCode());
+        assertEquals(1, update.getHeader().getSessionId());
+        assertEquals(UscSessionWindow.UPDATE_THRESHOLD, update.getWindowIncrement());
+        assertEquals(2, pending.size());
+        for (ByteBuf buf : pending) {
+            buf.release();
+        }
+        assertFalse(client.finish());
+        assertFalse(agent.finish());
+    }
+
+}
@@ -9,8 +9,7 @@
 package org.opendaylight.usc.client.netconf;
 
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.EventExecutor;
@@ -29,6 +28,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 
 @ThreadSafe
 final class ProtocolSessionPromise<S> extends DefaultPromise<S> {
@@ -64,11 +65,25 @@ final class ProtocolSessionPromise<S> extends DefaultPromise<S> {
 
             // final ChannelFuture connectFuture = this.b.connect(this.address);
 
-            final ChannelFuture connectFuture = plugin.connect(b, this.address);
-            LOG.warn("Connect finished");
+            final Promise<Channel> connectFuture = executor().newPromise();
+            this.pending = connectFuture;
             // Add listener that attempts reconnect by invoking this method again.
             connectFuture.addListener(new BootstrapConnectListener(lock));
-            this.pending = connectFuture;
+            Futures.addCallback(plugin.connectAsync(b, this.address), new FutureCallback<Channel>() {
+                @Override
+                public void onSuccess(Channel channel) {
+                    LOG.debug("Connect finished");
+                    if (!connectFuture.trySuccess(channel)) {
+                        // cancelled meanwhile
+                        channel.close();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    connectFuture.tryFailure(t);
+                }
+            });
         } catch (final Exception e) {
             LOG.info("Failed to connect to {}", address, e);
             setFailure(e);
@@ -92,7 +107,7 @@ final class ProtocolSessionPromise<S> extends DefaultPromise<S> {
         return super.setSuccess(result);
     }
 
-    private class BootstrapConnectListener implements ChannelFutureListener {
+    private class BootstrapConnectListener implements FutureListener<Channel> {
         private final Object lock;
 
         public BootstrapConnectListener(final Object lock) {
@@ -100,7 +115,7 @@ final class ProtocolSessionPromise<S> extends DefaultPromise<S> {
         }
 
         @Override
-        public void operationComplete(final ChannelFuture cf) throws Exception {
+        public void operationComplete(final Future<Channel> cf) throws Exception {
             synchronized (lock) {
 
                 LOG.debug("Promise {} connection resolved", lock);
@@ -117,7 +132,7 @@ final class ProtocolSessionPromise<S> extends DefaultPromise<S> {
                 if (isCancelled()) {
                     if (cf.isSuccess()) {
                         LOG.debug("Closing channel for cancelled promise {}", lock);
-                        cf.channel().close();
+                        cf.getNow().close();
                     }
                     return;
                 }
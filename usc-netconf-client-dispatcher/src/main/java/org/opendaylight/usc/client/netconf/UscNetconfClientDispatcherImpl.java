@@ -12,7 +12,6 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.local.LocalChannel;
-import io.netty.channel.local.LocalEventLoopGroup;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GlobalEventExecutor;
@@ -31,6 +30,7 @@ import org.opendaylight.netconf.client.conf.NetconfReconnectingClientConfigurati
 import org.opendaylight.protocol.framework.ReconnectStrategy;
 import org.opendaylight.protocol.framework.SessionNegotiatorFactory;
 import org.opendaylight.usc.manager.UscManagerService;
+import org.opendaylight.usc.plugin.UscEventLoopProvider;
 import org.opendaylight.usc.plugin.UscPluginTcp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,7 +46,9 @@ public class UscNetconfClientDispatcherImpl implements NetconfClientDispatcher,
 
     private final UscPluginTcp plugin;
 
-    private final LocalEventLoopGroup group = new LocalEventLoopGroup();
+    private final UscEventLoopProvider eventLoops = UscEventLoopProvider.acquire();
+
+    private final EventLoopGroup group = eventLoops.getLocalGroup();
 
     private final Timer timer;
 
@@ -236,7 +238,7 @@ public class UscNetconfClientDispatcherImpl implements NetconfClientDispatcher,
 
     @Override
     public void close() {
-        group.shutdownGracefully();
+        eventLoops.release();
     }
 
     private NetconfClientSessionNegotiatorFactory getNegotiatorFactory(final NetconfClientConfiguration cfg) {